@@ -58,5 +58,10 @@ public class IntegrationTestModule extends AbstractTestModule {
 
     @Override
     public void invalidateCacheFor(Import anImport) {}
+
+    @Override
+    public long epoch() {
+      return 0;
+    }
   }
 }
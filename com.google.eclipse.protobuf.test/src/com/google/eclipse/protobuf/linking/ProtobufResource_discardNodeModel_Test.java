@@ -0,0 +1,90 @@
+/*
+ * Copyright (c) 2016 Google Inc.
+ *
+ * All rights reserved. This program and the accompanying materials are made available under the terms of the Eclipse
+ * Public License v1.0 which accompanies this distribution, and is available at
+ *
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package com.google.eclipse.protobuf.linking;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import static com.google.eclipse.protobuf.junit.core.UnitTestModule.unitTestModule;
+import static com.google.eclipse.protobuf.junit.core.XtextRule.overrideRuntimeModuleWith;
+
+import org.eclipse.xtext.nodemodel.util.NodeModelUtils;
+import org.eclipse.xtext.resource.ILocationInFileProvider;
+import org.eclipse.xtext.util.ITextRegion;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+import com.google.eclipse.protobuf.junit.core.XtextRule;
+import com.google.eclipse.protobuf.protobuf.Message;
+import com.google.eclipse.protobuf.resource.ContentHashes;
+
+/**
+ * Tests for <code>{@link ProtobufResource#discardNodeModel()}</code>.
+ */
+public class ProtobufResource_discardNodeModel_Test {
+  @Rule public XtextRule xtext = overrideRuntimeModuleWith(unitTestModule());
+
+  private ProtobufResource resource;
+  private ILocationInFileProvider locationInFileProvider;
+  private ContentHashes contentHashes;
+
+  @Before public void setUp() {
+    resource = (ProtobufResource) xtext.resource();
+    locationInFileProvider = xtext.injector().getInstance(ILocationInFileProvider.class);
+    contentHashes = xtext.injector().getInstance(ContentHashes.class);
+  }
+
+  // syntax = "proto2";
+  //
+  // message Person {
+  //   optional string name = 1;
+  // }
+  @Test public void should_discard_node_model_and_keep_AST() {
+    Message message = xtext.find("Person", " {", Message.class);
+    resource.discardNodeModel();
+    assertTrue(resource.isNodeModelDiscarded());
+    assertNull(resource.getParseResult().getRootNode());
+    assertNull(NodeModelUtils.getNode(message));
+    assertEquals("Person", message.getName());
+  }
+
+  // syntax = "proto2";
+  //
+  // message Person {
+  //   optional string name = 1;
+  // }
+  @Test public void should_keep_text_regions_of_elements() {
+    Message message = xtext.find("Person", " {", Message.class);
+    ITextRegion significant = locationInFileProvider.getSignificantTextRegion(message);
+    ITextRegion full = locationInFileProvider.getFullTextRegion(message);
+    resource.discardNodeModel();
+    assertSameRegion(significant, locationInFileProvider.getSignificantTextRegion(message));
+    assertSameRegion(full, locationInFileProvider.getFullTextRegion(message));
+  }
+
+  // syntax = "proto2";
+  //
+  // message Person {}
+  @Test public void should_keep_content_hash_and_source_length() {
+    String hash = contentHashes.hashOf(resource);
+    int length = resource.sourceLength();
+    resource.discardNodeModel();
+    assertNotNull(hash);
+    assertEquals(hash, resource.discardedContentHash());
+    assertEquals(length, resource.sourceLength());
+  }
+
+  private static void assertSameRegion(ITextRegion expected, ITextRegion actual) {
+    assertEquals(expected.getOffset(), actual.getOffset());
+    assertEquals(expected.getLength(), actual.getLength());
+  }
+}
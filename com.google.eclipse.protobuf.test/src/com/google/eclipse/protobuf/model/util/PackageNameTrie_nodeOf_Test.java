@@ -0,0 +1,51 @@
+/*
+ * Copyright (c) 2016 Google Inc.
+ *
+ * All rights reserved. This program and the accompanying materials are made available under the terms of the Eclipse
+ * Public License v1.0 which accompanies this distribution, and is available at
+ *
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package com.google.eclipse.protobuf.model.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import static com.google.eclipse.protobuf.junit.core.UnitTestModule.unitTestModule;
+import static com.google.eclipse.protobuf.junit.core.XtextRule.overrideRuntimeModuleWith;
+
+import static java.util.Arrays.asList;
+
+import org.junit.Rule;
+import org.junit.Test;
+
+import com.google.eclipse.protobuf.junit.core.XtextRule;
+import com.google.eclipse.protobuf.model.util.PackageNameTrie.Node;
+import com.google.inject.Inject;
+
+/**
+ * Tests for <code>{@link PackageNameTrie#nodeOf(String)}</code>.
+ */
+public class PackageNameTrie_nodeOf_Test {
+  @Rule public XtextRule xtext = overrideRuntimeModuleWith(unitTestModule());
+
+  @Inject private PackageNameTrie trie;
+
+  @Test public void should_return_same_node_for_same_name() {
+    Node node = trie.nodeOf("may.the.force");
+    assertSame(node, trie.nodeOf("may.the.force"));
+    assertEquals(asList("may", "the", "force"), node.segments());
+  }
+
+  @Test public void should_share_nodes_of_common_segments() {
+    Node force = trie.nodeOf("may.the.force");
+    Node forceBeWithYou = trie.nodeOf("may.the.force.be.with.you");
+    assertSame(force, forceBeWithYou.parent.parent.parent);
+    assertSame(trie.nodeOf("may.the"), force.parent);
+  }
+
+  @Test public void should_return_null_for_empty_name() {
+    assertNull(trie.nodeOf(""));
+  }
+}
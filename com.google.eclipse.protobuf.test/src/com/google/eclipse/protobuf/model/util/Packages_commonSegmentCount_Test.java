@@ -0,0 +1,75 @@
+/*
+ * Copyright (c) 2016 Google Inc.
+ *
+ * All rights reserved. This program and the accompanying materials are made available under the terms of the Eclipse
+ * Public License v1.0 which accompanies this distribution, and is available at
+ *
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package com.google.eclipse.protobuf.model.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import static com.google.eclipse.protobuf.junit.core.UnitTestModule.unitTestModule;
+import static com.google.eclipse.protobuf.junit.core.XtextRule.overrideRuntimeModuleWith;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+import com.google.eclipse.protobuf.junit.core.XtextRule;
+import com.google.eclipse.protobuf.protobuf.Package;
+import com.google.inject.Inject;
+
+/**
+ * Tests for <code>{@link Packages#commonSegmentCount(Package, Package)}</code>.
+ */
+public class Packages_commonSegmentCount_Test {
+  @Rule public XtextRule xtext = overrideRuntimeModuleWith(unitTestModule());
+
+  @Inject private Packages packages;
+
+  private Package p1;
+  private Package p2;
+
+  @Before public void setUp() {
+    p1 = mock(Package.class);
+    when(p1.getName()).thenReturn("may.the.force.be.with.you");
+    p2 = mock(Package.class);
+  }
+
+  @Test public void should_return_segment_count_if_packages_are_equal() {
+    when(p2.getName()).thenReturn("may.the.force.be.with.you");
+    assertEquals(6, packages.commonSegmentCount(p1, p2));
+  }
+
+  @Test public void should_return_segment_count_of_parent_package() {
+    when(p2.getName()).thenReturn("may.the.force");
+    assertEquals(3, packages.commonSegmentCount(p1, p2));
+    assertEquals(3, packages.commonSegmentCount(p2, p1));
+  }
+
+  @Test public void should_return_count_of_leading_segments_in_common() {
+    when(p2.getName()).thenReturn("may.the.ring");
+    assertEquals(2, packages.commonSegmentCount(p1, p2));
+    assertEquals(2, packages.commonSegmentCount(p2, p1));
+  }
+
+  @Test public void should_ignore_whitespace_around_delimiters() {
+    when(p2.getName()).thenReturn("may . the . ring");
+    assertEquals(2, packages.commonSegmentCount(p1, p2));
+  }
+
+  @Test public void should_return_zero_if_names_are_completely_different() {
+    when(p2.getName()).thenReturn("peace.dog");
+    assertEquals(0, packages.commonSegmentCount(p1, p2));
+  }
+
+  @Test public void should_return_zero_if_package_does_not_have_name() {
+    when(p2.getName()).thenReturn("");
+    assertEquals(0, packages.commonSegmentCount(p1, p2));
+    assertEquals(0, packages.commonSegmentCount(p1, null));
+  }
+}
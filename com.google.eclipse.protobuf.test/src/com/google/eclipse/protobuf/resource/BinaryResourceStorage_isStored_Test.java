@@ -0,0 +1,69 @@
+/*
+ * Copyright (c) 2016 Google Inc.
+ *
+ * All rights reserved. This program and the accompanying materials are made available under the terms of the Eclipse
+ * Public License v1.0 which accompanies this distribution, and is available at
+ *
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package com.google.eclipse.protobuf.resource;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+import static com.google.eclipse.protobuf.junit.core.UnitTestModule.unitTestModule;
+import static com.google.eclipse.protobuf.junit.core.XtextRule.overrideRuntimeModuleWith;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+
+import org.eclipse.emf.common.util.URI;
+import org.eclipse.xtext.resource.XtextResourceSet;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.google.eclipse.protobuf.junit.core.XtextRule;
+import com.google.inject.Inject;
+import com.google.inject.Provider;
+
+/**
+ * Tests for <code>{@link BinaryResourceStorage#isStored(URI, String)}</code>.
+ */
+public class BinaryResourceStorage_isStored_Test {
+  @Rule public XtextRule xtext = overrideRuntimeModuleWith(unitTestModule());
+  @Rule public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  @Inject private BinaryResourceStorage binaryStorage;
+  @Inject private ContentHashes contentHashes;
+  @Inject private Provider<XtextResourceSet> resourceSetProvider;
+
+  private URI uri;
+  private String hash;
+
+  @Before public void setUp() throws IOException {
+    String contents = "syntax = \"proto2\";\nmessage Type {}\n";
+    File file = temporaryFolder.newFile("types.proto");
+    try (Writer writer = new FileWriter(file)) {
+      writer.write(contents);
+    }
+    uri = URI.createFileURI(file.getAbsolutePath());
+    hash = contentHashes.hashOf(contents);
+    assumeTrue(binaryStorage.isAvailableFor(uri));
+  }
+
+  @Test public void should_know_that_file_parsed_before_is_stored() {
+    assertFalse(binaryStorage.isStored(uri, hash));
+    resourceSetProvider.get().getResource(uri, true);
+    assertTrue(binaryStorage.isStored(uri, hash));
+  }
+
+  @Test public void should_not_find_file_stored_with_other_contents() {
+    resourceSetProvider.get().getResource(uri, true);
+    assertFalse(binaryStorage.isStored(uri, contentHashes.hashOf("syntax = \"proto2\";\n")));
+  }
+}
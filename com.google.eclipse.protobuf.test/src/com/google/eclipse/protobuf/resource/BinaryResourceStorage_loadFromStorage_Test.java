@@ -0,0 +1,81 @@
+/*
+ * Copyright (c) 2016 Google Inc.
+ *
+ * All rights reserved. This program and the accompanying materials are made available under the terms of the Eclipse
+ * Public License v1.0 which accompanies this distribution, and is available at
+ *
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package com.google.eclipse.protobuf.resource;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+import static com.google.eclipse.protobuf.junit.core.UnitTestModule.unitTestModule;
+import static com.google.eclipse.protobuf.junit.core.XtextRule.overrideRuntimeModuleWith;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+
+import org.eclipse.emf.common.util.URI;
+import org.eclipse.xtext.resource.XtextResourceSet;
+import org.eclipse.xtext.resource.persistence.StorageAwareResource;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.google.eclipse.protobuf.junit.core.XtextRule;
+import com.google.eclipse.protobuf.linking.ProtobufResource;
+import com.google.inject.Inject;
+import com.google.inject.Provider;
+
+/**
+ * Tests for <code>{@link BinaryResourceStorage#loadFromStorage(StorageAwareResource, String)}</code>.
+ */
+public class BinaryResourceStorage_loadFromStorage_Test {
+  private static final String CONTENTS = "syntax = \"proto2\";\nmessage Type {}\n";
+
+  @Rule public XtextRule xtext = overrideRuntimeModuleWith(unitTestModule());
+  @Rule public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  @Inject private BinaryResourceStorage binaryStorage;
+  @Inject private Provider<XtextResourceSet> resourceSetProvider;
+
+  private URI first;
+  private URI second;
+
+  @Before public void setUp() throws IOException {
+    // Contents not stored by previous runs.
+    String contents = CONTENTS + "// " + System.nanoTime() + "\n";
+    first = newFile("first.proto", contents);
+    second = newFile("second.proto", contents);
+    assumeTrue(binaryStorage.isAvailableFor(first));
+  }
+
+  @Test public void should_load_file_parsed_before_from_storage() {
+    assertFalse(load(first).isLoadedFromStorage());
+    assertTrue(load(first).isLoadedFromStorage());
+  }
+
+  @Test public void should_not_load_file_with_same_contents_as_other_file_from_storage() {
+    load(first);
+    ProtobufResource resource = load(second);
+    assertFalse(resource.isLoadedFromStorage());
+  }
+
+  private ProtobufResource load(URI uri) {
+    return (ProtobufResource) resourceSetProvider.get().getResource(uri, true);
+  }
+
+  private URI newFile(String name, String contents) throws IOException {
+    File file = temporaryFolder.newFile(name);
+    try (Writer writer = new FileWriter(file)) {
+      writer.write(contents);
+    }
+    return URI.createFileURI(file.getAbsolutePath());
+  }
+}
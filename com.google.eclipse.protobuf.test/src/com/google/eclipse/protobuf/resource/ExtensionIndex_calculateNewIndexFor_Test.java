@@ -0,0 +1,95 @@
+/*
+ * Copyright (c) 2016 Google Inc.
+ *
+ * All rights reserved. This program and the accompanying materials are made available under the terms of the Eclipse
+ * Public License v1.0 which accompanies this distribution, and is available at
+ *
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package com.google.eclipse.protobuf.resource;
+
+import static org.junit.Assert.assertEquals;
+
+import static com.google.eclipse.protobuf.junit.core.UnitTestModule.unitTestModule;
+import static com.google.eclipse.protobuf.junit.core.XtextRule.overrideRuntimeModuleWith;
+
+import java.util.List;
+
+import org.eclipse.xtext.resource.IResourceDescriptions;
+import org.eclipse.xtext.resource.impl.ResourceSetBasedResourceDescriptions;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+import com.google.eclipse.protobuf.junit.core.XtextRule;
+import com.google.eclipse.protobuf.protobuf.TypeExtension;
+import com.google.inject.Inject;
+
+/**
+ * Tests for <code>{@link ExtensionIndex#calculateNewIndexFor(TypeExtension)}</code>.
+ */
+public class ExtensionIndex_calculateNewIndexFor_Test {
+  @Rule public XtextRule xtext = overrideRuntimeModuleWith(unitTestModule());
+
+  @Inject private ExtensionIndex index;
+
+  @Before public void setUp() {
+    IResourceDescriptions xtextIndex = index.getXtextIndex();
+    if (xtextIndex instanceof ResourceSetBasedResourceDescriptions) {
+      ((ResourceSetBasedResourceDescriptions) xtextIndex).setContext(xtext.resource());
+    }
+  }
+
+  // syntax = "proto2";
+  //
+  // message Options {
+  //   extensions 1000 to max;
+  // }
+  //
+  // extend Options {
+  //   optional int32 first = 1000;
+  // }
+  //
+  // extend Options {
+  //   optional int32 second = 1005;
+  // }
+  @Test public void should_return_number_after_largest_number_used_by_known_extensions_of_same_type() {
+    List<TypeExtension> extensions = xtext.findAll(TypeExtension.class);
+    assertEquals(1006, index.calculateNewIndexFor(extensions.get(0)));
+    assertEquals(1006, index.calculateNewIndexFor(extensions.get(1)));
+  }
+
+  // syntax = "proto2";
+  //
+  // message Options {
+  //   extensions 1000 to max;
+  // }
+  //
+  // message Other {
+  //   extensions 100 to 199;
+  // }
+  //
+  // extend Other {
+  //   optional int32 other = 150;
+  // }
+  //
+  // extend Options {
+  //   optional int32 first = 1000;
+  // }
+  @Test public void should_ignore_extensions_of_other_types() {
+    List<TypeExtension> extensions = xtext.findAll(TypeExtension.class);
+    assertEquals(151, index.calculateNewIndexFor(extensions.get(0)));
+    assertEquals(1001, index.calculateNewIndexFor(extensions.get(1)));
+  }
+
+  // syntax = "proto2";
+  //
+  // message Options {
+  //   extensions 1000 to max;
+  // }
+  //
+  // extend Options {}
+  @Test public void should_return_first_number_of_extension_ranges_if_there_are_no_known_extensions() {
+    assertEquals(1000, index.calculateNewIndexFor(xtext.findFirst(TypeExtension.class)));
+  }
+}
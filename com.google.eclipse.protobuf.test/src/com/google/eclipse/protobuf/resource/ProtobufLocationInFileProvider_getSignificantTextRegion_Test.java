@@ -0,0 +1,75 @@
+/*
+ * Copyright (c) 2016 Google Inc.
+ *
+ * All rights reserved. This program and the accompanying materials are made available under the terms of the Eclipse
+ * Public License v1.0 which accompanies this distribution, and is available at
+ *
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package com.google.eclipse.protobuf.resource;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import static com.google.eclipse.protobuf.junit.core.UnitTestModule.unitTestModule;
+import static com.google.eclipse.protobuf.junit.core.XtextRule.overrideRuntimeModuleWith;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+
+import org.eclipse.emf.common.util.URI;
+import org.eclipse.emf.ecore.EStructuralFeature;
+import org.eclipse.xtext.resource.XtextResourceSet;
+import org.eclipse.xtext.util.ITextRegion;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.google.eclipse.protobuf.junit.core.XtextRule;
+import com.google.eclipse.protobuf.linking.ProtobufResource;
+import com.google.eclipse.protobuf.protobuf.Message;
+import com.google.eclipse.protobuf.protobuf.Protobuf;
+import com.google.inject.Inject;
+import com.google.inject.Provider;
+
+/**
+ * Tests for <code>{@link ProtobufLocationInFileProvider#getSignificantTextRegion(org.eclipse.emf.ecore.EObject,
+ * EStructuralFeature, int)}</code>.
+ */
+public class ProtobufLocationInFileProvider_getSignificantTextRegion_Test {
+  @Rule public XtextRule xtext = overrideRuntimeModuleWith(unitTestModule());
+  @Rule public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  @Inject private ProtobufLocationInFileProvider locationInFileProvider;
+  @Inject private Provider<XtextResourceSet> resourceSetProvider;
+
+  private ProtobufResource resource;
+  private Message message;
+
+  @Before public void setUp() throws IOException {
+    File file = temporaryFolder.newFile("types.proto");
+    try (Writer writer = new FileWriter(file)) {
+      writer.write("syntax = \"proto2\";\n\nmessage Person {\n  optional string name = 1;\n}\n");
+    }
+    URI uri = URI.createFileURI(file.getAbsolutePath());
+    resource = (ProtobufResource) resourceSetProvider.get().getResource(uri, true);
+    Protobuf root = (Protobuf) resource.getContents().get(0);
+    message = (Message) root.getElements().get(0);
+  }
+
+  @Test public void should_return_region_of_feature_after_node_model_is_discarded() {
+    EStructuralFeature name = message.eClass().getEStructuralFeature("name");
+    ITextRegion expected = locationInFileProvider.getSignificantTextRegion(message, name, 0);
+    resource.discardNodeModel();
+    assertTrue(resource.isNodeModelDiscarded());
+    ITextRegion actual = locationInFileProvider.getSignificantTextRegion(message, name, 0);
+    assertFalse(resource.isNodeModelDiscarded());
+    assertEquals(expected.getOffset(), actual.getOffset());
+    assertEquals(expected.getLength(), actual.getLength());
+    assertEquals("Person".length(), actual.getLength());
+  }
+}
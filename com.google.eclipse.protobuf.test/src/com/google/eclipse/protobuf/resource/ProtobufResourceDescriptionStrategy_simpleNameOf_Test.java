@@ -0,0 +1,33 @@
+/*
+ * Copyright (c) 2016 Google Inc.
+ *
+ * All rights reserved. This program and the accompanying materials are made available under the terms of the Eclipse
+ * Public License v1.0 which accompanies this distribution, and is available at
+ *
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package com.google.eclipse.protobuf.resource;
+
+import static org.junit.Assert.assertEquals;
+
+import static com.google.eclipse.protobuf.resource.ProtobufResourceDescriptionStrategy.simpleNameOf;
+
+import org.junit.Test;
+
+/**
+ * Tests for <code>{@link ProtobufResourceDescriptionStrategy#simpleNameOf(String)}</code>.
+ */
+public class ProtobufResourceDescriptionStrategy_simpleNameOf_Test {
+  @Test public void should_return_name_if_it_is_not_qualified() {
+    assertEquals("FieldOptions", simpleNameOf("FieldOptions"));
+  }
+
+  @Test public void should_return_last_segment_of_qualified_name() {
+    assertEquals("FieldOptions", simpleNameOf("google.protobuf.FieldOptions"));
+    assertEquals("FieldOptions", simpleNameOf(".google.protobuf.FieldOptions"));
+  }
+
+  @Test public void should_ignore_whitespace_around_last_segment() {
+    assertEquals("FieldOptions", simpleNameOf("google.protobuf. FieldOptions "));
+  }
+}
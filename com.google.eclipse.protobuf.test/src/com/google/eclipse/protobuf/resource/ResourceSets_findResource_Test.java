@@ -0,0 +1,97 @@
+/*
+ * Copyright (c) 2016 Google Inc.
+ *
+ * All rights reserved. This program and the accompanying materials are made available under the terms of the Eclipse
+ * Public License v1.0 which accompanies this distribution, and is available at
+ *
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package com.google.eclipse.protobuf.resource;
+
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import static com.google.eclipse.protobuf.junit.core.UnitTestModule.unitTestModule;
+import static com.google.eclipse.protobuf.junit.core.XtextRule.overrideRuntimeModuleWith;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+
+import org.eclipse.core.runtime.OperationCanceledException;
+import org.eclipse.emf.common.util.URI;
+import org.eclipse.emf.ecore.resource.Resource;
+import org.eclipse.emf.ecore.resource.ResourceSet;
+import org.eclipse.xtext.resource.XtextResourceSet;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.google.eclipse.protobuf.junit.core.AbstractTestModule;
+import com.google.eclipse.protobuf.junit.core.XtextRule;
+import com.google.inject.Inject;
+import com.google.inject.Provider;
+
+/**
+ * Tests for <code>{@link ResourceSets#findResource(ResourceSet, URI)}</code>.
+ */
+public class ResourceSets_findResource_Test {
+  @Rule public XtextRule xtext = overrideRuntimeModuleWith(unitTestModule(), new TestModule());
+  @Rule public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  @Inject private IResourceLoadFailures loadFailures;
+  @Inject private Provider<XtextResourceSet> resourceSetProvider;
+  @Inject private ResourceSets resourceSets;
+
+  private URI uri;
+
+  @Before public void setUp() throws IOException {
+    File file = temporaryFolder.newFile("imported.proto");
+    try (Writer writer = new FileWriter(file)) {
+      writer.write("syntax = \"proto2\";\nmessage Type {}\n");
+    }
+    uri = URI.createFileURI(file.getAbsolutePath());
+  }
+
+  @Test public void should_load_resource_that_is_in_resource_set_but_not_loaded() {
+    ResourceSet resourceSet = resourceSetProvider.get();
+    Resource registered = resourceSet.createResource(uri);
+    Resource found = resourceSets.findResource(resourceSet, uri);
+    assertSame(registered, found);
+    assertTrue(found.isLoaded());
+  }
+
+  @Test public void should_remember_resource_that_fails_to_load() {
+    ResourceSet resourceSet = mock(ResourceSet.class);
+    when(resourceSet.getResource(uri, false)).thenThrow(new IllegalStateException());
+    assertNull(resourceSets.findResource(resourceSet, uri));
+    verify(loadFailures).loadFailed(uri);
+  }
+
+  @Test(expected = OperationCanceledException.class)
+  public void should_propagate_cancellation() {
+    ResourceSet resourceSet = mock(ResourceSet.class);
+    when(resourceSet.getResource(uri, false)).thenThrow(new OperationCanceledException());
+    resourceSets.findResource(resourceSet, uri);
+  }
+
+  @Test(expected = StackOverflowError.class)
+  public void should_propagate_errors() {
+    ResourceSet resourceSet = mock(ResourceSet.class);
+    when(resourceSet.getResource(uri, false)).thenThrow(new StackOverflowError());
+    resourceSets.findResource(resourceSet, uri);
+  }
+
+  private static class TestModule extends AbstractTestModule {
+    @Override protected void configure() {
+      mockAndBind(IResourceLoadFailures.class);
+      mockAndBind(ISharedResourceStore.class);
+    }
+  }
+}
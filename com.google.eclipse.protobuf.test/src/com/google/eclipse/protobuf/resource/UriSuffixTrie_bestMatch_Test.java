@@ -0,0 +1,53 @@
+/*
+ * Copyright (c) 2016 Google Inc.
+ *
+ * All rights reserved. This program and the accompanying materials are made available under the terms of the Eclipse
+ * Public License v1.0 which accompanies this distribution, and is available at
+ *
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package com.google.eclipse.protobuf.resource;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import org.eclipse.emf.common.util.URI;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests for <code>{@link UriSuffixTrie#bestMatch(String[])}</code>.
+ */
+public class UriSuffixTrie_bestMatch_Test {
+  private URI person;
+  private URI address;
+  private UriSuffixTrie trie;
+
+  @Before public void setUp() {
+    person = URI.createPlatformResourceURI("/project/src/protos/person.proto", true);
+    address = URI.createPlatformResourceURI("/project/src/protos/address.proto", true);
+    trie = new UriSuffixTrie();
+    trie.add(person);
+    trie.add(address);
+  }
+
+  @Test public void should_find_URI_ending_with_path() {
+    assertEquals(person, trie.bestMatch(new String[] { "protos", "person.proto" }));
+  }
+
+  @Test public void should_find_URI_if_path_ends_with_URI_segments() {
+    String[] segments = { "home", "user", "workspace", "resource", "project", "src", "protos", "address.proto" };
+    assertEquals(address, trie.bestMatch(segments));
+  }
+
+  @Test public void should_return_null_if_last_segments_do_not_match() {
+    assertNull(trie.bestMatch(new String[] { "other", "person.proto" }));
+    assertNull(trie.bestMatch(new String[] { "phone.proto" }));
+  }
+
+  @Test public void should_not_find_removed_URI() {
+    trie.remove(person);
+    assertNull(trie.bestMatch(new String[] { "person.proto" }));
+    assertEquals(address, trie.bestMatch(new String[] { "address.proto" }));
+  }
+}
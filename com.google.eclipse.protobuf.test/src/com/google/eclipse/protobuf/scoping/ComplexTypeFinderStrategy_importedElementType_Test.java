@@ -0,0 +1,53 @@
+/*
+ * Copyright (c) 2016 Google Inc.
+ *
+ * All rights reserved. This program and the accompanying materials are made available under the terms of the Eclipse
+ * Public License v1.0 which accompanies this distribution, and is available at
+ *
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package com.google.eclipse.protobuf.scoping;
+
+import static org.junit.Assert.assertSame;
+
+import static com.google.eclipse.protobuf.junit.core.UnitTestModule.unitTestModule;
+import static com.google.eclipse.protobuf.junit.core.XtextRule.overrideRuntimeModuleWith;
+import static com.google.eclipse.protobuf.protobuf.ProtobufPackage.Literals.COMPLEX_TYPE;
+import static com.google.eclipse.protobuf.protobuf.ProtobufPackage.Literals.ENUM;
+import static com.google.eclipse.protobuf.protobuf.ProtobufPackage.Literals.EXTENSIBLE_TYPE;
+import static com.google.eclipse.protobuf.protobuf.ProtobufPackage.Literals.GROUP;
+import static com.google.eclipse.protobuf.protobuf.ProtobufPackage.Literals.MESSAGE;
+
+import org.junit.Rule;
+import org.junit.Test;
+
+import com.google.eclipse.protobuf.junit.core.XtextRule;
+import com.google.eclipse.protobuf.protobuf.ComplexType;
+import com.google.eclipse.protobuf.protobuf.Enum;
+import com.google.eclipse.protobuf.protobuf.ExtensibleType;
+import com.google.eclipse.protobuf.protobuf.Group;
+import com.google.eclipse.protobuf.protobuf.Message;
+import com.google.inject.Inject;
+
+/**
+ * Tests for <code>{@link ComplexTypeFinderStrategy#importedElementType(Class)}</code>.
+ */
+public class ComplexTypeFinderStrategy_importedElementType_Test {
+  @Rule public XtextRule xtext = overrideRuntimeModuleWith(unitTestModule());
+
+  @Inject private ComplexTypeFinderStrategy strategy;
+
+  @Test public void should_return_EClass_of_each_complex_type() {
+    assertSame(COMPLEX_TYPE, strategy.importedElementType(ComplexType.class));
+    assertSame(EXTENSIBLE_TYPE, strategy.importedElementType(ExtensibleType.class));
+    assertSame(MESSAGE, strategy.importedElementType(Message.class));
+    assertSame(GROUP, strategy.importedElementType(Group.class));
+    assertSame(ENUM, strategy.importedElementType(Enum.class));
+  }
+
+  @Test public void should_return_EClass_of_all_complex_types_if_type_is_unknown() {
+    assertSame(COMPLEX_TYPE, strategy.importedElementType(CustomMessage.class));
+  }
+
+  private static interface CustomMessage extends Message {}
+}
@@ -0,0 +1,62 @@
+/*
+ * Copyright (c) 2016 Google Inc.
+ *
+ * All rights reserved. This program and the accompanying materials are made available under the terms of the Eclipse
+ * Public License v1.0 which accompanies this distribution, and is available at
+ *
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package com.google.eclipse.protobuf.scoping;
+
+import static java.util.Arrays.asList;
+import static java.util.Collections.singletonList;
+import static org.hamcrest.core.IsEqual.equalTo;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertThat;
+
+import java.util.LinkedHashSet;
+import java.util.List;
+
+import org.eclipse.emf.common.util.URI;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests for <code>{@link ImportedUrisCache#get(URI, List, long)}</code>.
+ */
+public class ImportedUrisCache_get_Test {
+  private static final URI IMPORTING_FILE = URI.createURI("platform:/resource/project/importer.proto");
+  private static final URI IMPORTED_FILE = URI.createURI("platform:/resource/project/imported.proto");
+
+  private ImportedUrisCache cache;
+  private List<String> importPaths;
+
+  @Before public void setUp() {
+    cache = new ImportedUrisCache();
+    importPaths = singletonList("imported.proto");
+    cache.put(IMPORTING_FILE, importPaths, 1, singletonList(IMPORTED_FILE));
+  }
+
+  @Test public void should_return_URIs_stored_for_same_file_import_paths_and_epoch() {
+    LinkedHashSet<URI> expected = new LinkedHashSet<>(singletonList(IMPORTED_FILE));
+    assertThat(cache.get(IMPORTING_FILE, singletonList("imported.proto"), 1), equalTo(expected));
+  }
+
+  @Test public void should_return_null_if_epoch_changed() {
+    assertNull(cache.get(IMPORTING_FILE, importPaths, 2));
+  }
+
+  @Test public void should_return_null_if_import_paths_changed() {
+    assertNull(cache.get(IMPORTING_FILE, asList("imported.proto", "other.proto"), 1));
+  }
+
+  @Test public void should_return_null_for_other_importing_file() {
+    assertNull(cache.get(URI.createURI("platform:/resource/project/other.proto"), importPaths, 1));
+  }
+
+  @Test public void should_return_a_copy_of_the_stored_URIs() {
+    cache.get(IMPORTING_FILE, importPaths, 1).clear();
+    LinkedHashSet<URI> expected = new LinkedHashSet<>(singletonList(IMPORTED_FILE));
+    assertThat(cache.get(IMPORTING_FILE, importPaths, 1), equalTo(expected));
+  }
+}
@@ -0,0 +1,79 @@
+/*
+ * Copyright (c) 2016 Google Inc.
+ *
+ * All rights reserved. This program and the accompanying materials are made available under the terms of the Eclipse
+ * Public License v1.0 which accompanies this distribution, and is available at
+ *
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package com.google.eclipse.protobuf.scoping;
+
+import static java.util.Arrays.asList;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.mockito.Mockito.mock;
+
+import static org.eclipse.xtext.resource.EObjectDescription.create;
+
+import java.util.Collections;
+
+import org.eclipse.emf.ecore.EObject;
+import org.eclipse.xtext.naming.QualifiedName;
+import org.eclipse.xtext.resource.IEObjectDescription;
+import org.eclipse.xtext.scoping.IScope;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.base.Suppliers;
+
+/**
+ * Tests for <code>{@link OutwardResolvingScope#getSingleElement(QualifiedName)}</code>
+ */
+public class OutwardResolvingScope_getSingleElement_Test {
+  private EObject outerStatus;
+  private EObject innerStatus;
+  private EObject address;
+  private OutwardResolvingScope scope;
+
+  @Before public void setUp() {
+    outerStatus = mock(EObject.class);
+    innerStatus = mock(EObject.class);
+    address = mock(EObject.class);
+    IScope fullyQualifiedNames = new ProtobufScope(asList(
+        create(QualifiedName.create("com", "Status"), outerStatus),
+        create(QualifiedName.create("com", "test", "Person", "Status"), innerStatus)));
+    IEObjectDescription partialName = create(QualifiedName.create("Address"), address);
+    IScope allNames = new ProtobufScope(Collections.singletonList(partialName));
+    scope = new OutwardResolvingScope(
+        asList(QualifiedName.create("com", "test", "Person"), QualifiedName.create("com", "test"),
+            QualifiedName.create("com"), QualifiedName.EMPTY),
+        fullyQualifiedNames, Suppliers.ofInstance(allNames));
+  }
+
+  @Test public void should_find_closest_element() {
+    IEObjectDescription description = scope.getSingleElement(QualifiedName.create("Status"));
+    assertSame(innerStatus, description.getEObjectOrProxy());
+    assertEquals(QualifiedName.create("Status"), description.getName());
+  }
+
+  @Test public void should_find_element_in_enclosing_package() {
+    IEObjectDescription description = scope.getSingleElement(QualifiedName.create("com", "Status"));
+    assertSame(outerStatus, description.getEObjectOrProxy());
+  }
+
+  @Test public void should_find_element_by_name_with_leading_dot() {
+    IEObjectDescription description = scope.getSingleElement(QualifiedName.create("", "com", "Status"));
+    assertSame(outerStatus, description.getEObjectOrProxy());
+  }
+
+  @Test public void should_fall_back_to_all_names_if_name_cannot_be_resolved_outwards() {
+    IEObjectDescription description = scope.getSingleElement(QualifiedName.create("Address"));
+    assertSame(address, description.getEObjectOrProxy());
+  }
+
+  @Test public void should_return_null_if_name_is_not_in_scope() {
+    assertNull(scope.getSingleElement(QualifiedName.create("Phone")));
+  }
+}
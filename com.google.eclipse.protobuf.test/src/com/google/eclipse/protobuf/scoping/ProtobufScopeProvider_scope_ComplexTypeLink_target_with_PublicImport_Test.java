@@ -0,0 +1,86 @@
+/*
+ * Copyright (c) 2016 Google Inc.
+ *
+ * All rights reserved. This program and the accompanying materials are made available under the terms of the Eclipse
+ * Public License v1.0 which accompanies this distribution, and is available at
+ *
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package com.google.eclipse.protobuf.scoping;
+
+import static org.hamcrest.core.IsNot.not;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+import static com.google.eclipse.protobuf.junit.IEObjectDescriptions.descriptionsIn;
+import static com.google.eclipse.protobuf.junit.core.IntegrationTestModule.integrationTestModule;
+import static com.google.eclipse.protobuf.junit.core.XtextRule.overrideRuntimeModuleWith;
+import static com.google.eclipse.protobuf.junit.matchers.ContainNames.contain;
+
+import org.eclipse.emf.ecore.EReference;
+import org.eclipse.emf.ecore.resource.Resource;
+import org.eclipse.xtext.resource.XtextResource;
+import org.eclipse.xtext.scoping.IScope;
+import org.junit.Rule;
+import org.junit.Test;
+
+import com.google.eclipse.protobuf.junit.core.XtextRule;
+import com.google.eclipse.protobuf.protobuf.ComplexTypeLink;
+import com.google.eclipse.protobuf.protobuf.MessageField;
+import com.google.inject.Inject;
+
+/**
+ * Tests for <code>{@link ProtobufScopeProvider#scope_ComplexTypeLink_target(ComplexTypeLink, EReference)}</code>, when
+ * types are imported through "import public" statements.
+ */
+public class ProtobufScopeProvider_scope_ComplexTypeLink_target_with_PublicImport_Test {
+  @Rule public XtextRule xtext = overrideRuntimeModuleWith(integrationTestModule());
+
+  @Inject private EReference reference;
+  @Inject private ProtobufScopeProvider scopeProvider;
+
+  // // Create file publicly-imported-types.proto
+  //
+  // syntax = "proto2";
+  // package com.google.proto;
+  //
+  // message Type {}
+
+  // // Create file public-import.proto
+  //
+  // syntax = "proto2";
+  // package com.google.proto;
+  //
+  // import public "publicly-imported-types.proto";
+
+  // syntax = "proto2";
+  // package com.google.proto;
+  //
+  // import "public-import.proto";
+  //
+  // message Person {
+  //   optional Type type = 1;
+  // }
+  @Test public void should_reflect_changes_in_publicly_imported_file() throws Exception {
+    MessageField field = xtext.find("type", " =", MessageField.class);
+    assertThat(descriptionsIn(scopeOf(field)), contain("Type"));
+    XtextResource publiclyImported = resourceNamed("publicly-imported-types.proto");
+    publiclyImported.reparse("syntax = \"proto2\";\npackage com.google.proto;\n\nmessage Renamed {}\n");
+    assertThat(descriptionsIn(scopeOf(field)), contain("Renamed"));
+    assertThat(descriptionsIn(scopeOf(field)), not(contain("Type")));
+  }
+
+  private IScope scopeOf(MessageField field) {
+    return scopeProvider.scope_ComplexTypeLink_target((ComplexTypeLink) field.getType(), reference);
+  }
+
+  private XtextResource resourceNamed(String fileName) {
+    for (Resource resource : xtext.resource().getResourceSet().getResources()) {
+      if (fileName.equals(resource.getURI().lastSegment())) {
+        return (XtextResource) resource;
+      }
+    }
+    fail("Resource not loaded: " + fileName);
+    return null;
+  }
+}
@@ -0,0 +1,89 @@
+/*
+ * Copyright (c) 2016 Google Inc.
+ *
+ * All rights reserved. This program and the accompanying materials are made available under the terms of the Eclipse
+ * Public License v1.0 which accompanies this distribution, and is available at
+ *
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package com.google.eclipse.protobuf.scoping;
+
+import static org.hamcrest.core.IsNot.not;
+import static org.junit.Assert.assertThat;
+
+import static com.google.eclipse.protobuf.junit.IEObjectDescriptions.descriptionsIn;
+import static com.google.eclipse.protobuf.junit.core.IntegrationTestModule.integrationTestModule;
+import static com.google.eclipse.protobuf.junit.core.XtextRule.overrideRuntimeModuleWith;
+import static com.google.eclipse.protobuf.junit.matchers.ContainNames.contain;
+
+import java.io.File;
+
+import org.eclipse.emf.common.util.URI;
+import org.eclipse.emf.ecore.EReference;
+import org.eclipse.emf.ecore.resource.Resource;
+import org.eclipse.xtext.EcoreUtil2;
+import org.eclipse.xtext.scoping.IScope;
+import org.junit.Rule;
+import org.junit.Test;
+
+import com.google.eclipse.protobuf.junit.core.XtextRule;
+import com.google.eclipse.protobuf.protobuf.ComplexTypeLink;
+import com.google.eclipse.protobuf.protobuf.MessageField;
+import com.google.inject.Inject;
+
+/**
+ * Tests for <code>{@link ProtobufScopeProvider#scope_ComplexTypeLink_target(ComplexTypeLink, EReference)}</code>, when
+ * files in different packages import the same file.
+ */
+public class ProtobufScopeProvider_scope_ComplexTypeLink_target_with_importers_in_different_packages_Test {
+  @Rule public XtextRule xtext = overrideRuntimeModuleWith(integrationTestModule());
+
+  @Inject private EReference reference;
+  @Inject private ProtobufScopeProvider scopeProvider;
+
+  // // Create file shared-types.proto
+  //
+  // syntax = "proto2";
+  // package com.google.proto.base.shared;
+  //
+  // enum Type {
+  //   ONE = 1;
+  // }
+
+  // // Create file other-importer.proto
+  //
+  // syntax = "proto2";
+  // package com.google.other;
+  //
+  // import "shared-types.proto";
+  //
+  // message Other {
+  //   optional proto.base.shared.Type type = 1;
+  // }
+
+  // syntax = "proto2";
+  // package com.google.proto.project.shared;
+  //
+  // import "shared-types.proto";
+  //
+  // message Summary {
+  //   optional base.shared.Type type = 1;
+  // }
+  @Test public void should_describe_imported_types_relative_to_package_of_each_importer() {
+    MessageField field = xtext.find("type", " =", MessageField.class);
+    assertThat(descriptionsIn(scopeOf(field)), contain("base.shared.Type", "proto.base.shared.Type"));
+    Resource otherImporter = xtext.resource().getResourceSet().getResource(uriOf("other-importer.proto"), true);
+    MessageField otherField = EcoreUtil2.getAllContentsOfType(otherImporter.getContents().get(0), MessageField.class)
+        .get(0);
+    assertThat(descriptionsIn(scopeOf(otherField)), contain("proto.base.shared.Type"));
+    assertThat(descriptionsIn(scopeOf(otherField)), not(contain("base.shared.Type")));
+  }
+
+  private IScope scopeOf(MessageField field) {
+    return scopeProvider.scope_ComplexTypeLink_target((ComplexTypeLink) field.getType(), reference);
+  }
+
+  private static URI uriOf(String fileName) {
+    return URI.createURI(new File("test-protos", fileName).toURI().toString());
+  }
+}
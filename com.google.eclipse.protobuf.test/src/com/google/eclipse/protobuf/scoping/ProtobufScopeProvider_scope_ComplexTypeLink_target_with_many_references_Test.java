@@ -0,0 +1,77 @@
+/*
+ * Copyright (c) 2016 Google Inc.
+ *
+ * All rights reserved. This program and the accompanying materials are made available under the terms of the Eclipse
+ * Public License v1.0 which accompanies this distribution, and is available at
+ *
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package com.google.eclipse.protobuf.scoping;
+
+import static java.util.Collections.newSetFromMap;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+
+import static com.google.eclipse.protobuf.junit.core.IntegrationTestModule.integrationTestModule;
+import static com.google.eclipse.protobuf.junit.core.XtextRule.overrideRuntimeModuleWith;
+import static com.google.eclipse.protobuf.protobuf.ProtobufPackage.Literals.COMPLEX_TYPE_LINK__TARGET;
+
+import java.util.IdentityHashMap;
+import java.util.Set;
+
+import org.eclipse.emf.ecore.EReference;
+import org.eclipse.xtext.naming.QualifiedName;
+import org.eclipse.xtext.scoping.IScope;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+import com.google.eclipse.protobuf.junit.core.XtextRule;
+import com.google.eclipse.protobuf.model.util.INodes;
+import com.google.eclipse.protobuf.protobuf.ComplexTypeLink;
+import com.google.eclipse.protobuf.protobuf.MessageField;
+import com.google.inject.Inject;
+
+/**
+ * Tests for <code>{@link ProtobufScopeProvider#scope_ComplexTypeLink_target(ComplexTypeLink, EReference)}</code>, in
+ * a file with many references.
+ */
+public class ProtobufScopeProvider_scope_ComplexTypeLink_target_with_many_references_Test {
+  private static final int MESSAGE_COUNT = 200;
+  private static final int FIELD_COUNT = 10;
+
+  @Rule public XtextRule xtext = overrideRuntimeModuleWith(integrationTestModule());
+
+  @Inject private EReference reference;
+  @Inject private INodes nodes;
+  @Inject private ProtobufScopeProvider scopeProvider;
+
+  @Before public void setUp() {
+    StringBuilder text = new StringBuilder("syntax = \"proto2\";\npackage com.google.proto;\n");
+    for (int i = 0; i < MESSAGE_COUNT; i++) {
+      text.append("message Type").append(i).append(" {\n");
+      for (int j = 0; j < FIELD_COUNT; j++) {
+        text.append("  optional Type").append((i + j) % MESSAGE_COUNT).append(" field").append(j).append(" = ")
+            .append(j + 1).append(";\n");
+      }
+      text.append("}\n");
+    }
+    xtext.parseText(text.toString());
+  }
+
+  @Test public void should_create_one_scope_per_message_containing_references() {
+    Set<IScope> scopes = newSetFromMap(new IdentityHashMap<IScope, Boolean>());
+    for (MessageField field : xtext.findAll(MessageField.class)) {
+      ComplexTypeLink type = (ComplexTypeLink) field.getType();
+      IScope scope = scopeProvider.scope_ComplexTypeLink_target(type, reference);
+      assertNotNull(scope.getSingleElement(QualifiedName.create(nameOf(type))));
+      scopes.add(scope);
+    }
+    assertEquals(MESSAGE_COUNT, scopes.size());
+  }
+
+  private String nameOf(ComplexTypeLink type) {
+    return nodes.textOf(nodes.firstNodeForFeature(type, COMPLEX_TYPE_LINK__TARGET));
+  }
+}
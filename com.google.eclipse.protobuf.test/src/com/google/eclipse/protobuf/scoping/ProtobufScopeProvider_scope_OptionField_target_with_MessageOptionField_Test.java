@@ -17,6 +17,8 @@ import static com.google.eclipse.protobuf.junit.core.XtextRule.overrideRuntimeMo
 import static com.google.eclipse.protobuf.junit.matchers.ContainAllFieldsInMessage.containAllFieldsIn;
 import static com.google.eclipse.protobuf.junit.matchers.ContainAllNames.containAll;
 
+import java.util.List;
+
 import org.eclipse.emf.ecore.EReference;
 import org.eclipse.xtext.scoping.IScope;
 import org.junit.Rule;
@@ -90,6 +92,49 @@ public class ProtobufScopeProvider_scope_OptionField_target_with_MessageOptionFi
     assertThat(descriptionsIn(scope), containAllFieldsIn(codeMessage));
   }
 
+  // syntax = "proto2";
+  //
+  // import 'google/protobuf/descriptor.proto';
+  //
+  // message Last {
+  //   optional double number = 1;
+  // }
+  //
+  // message Third {
+  //   optional Last last = 1;
+  // }
+  //
+  // message Second {
+  //   optional Third third = 1;
+  // }
+  //
+  // message First {
+  //   optional Second second = 1;
+  // }
+  //
+  // extend google.protobuf.FileOptions {
+  //   optional First first = 1000;
+  // }
+  //
+  // option (first).second.third.last.number = 68;
+  // option (first).second.third.last.number = 86;
+  @Test public void should_provide_message_fields_for_each_field_in_long_custom_option() {
+    List<CustomOption> options = xtext.findAll(CustomOption.class);
+    List<OptionField> fields = options.get(0).getFields();
+    // fields are not necessarily resolved in order (e.g. when only one of them is being edited.)
+    assertThat(descriptionsIn(scopeOf(fields.get(3))), containAllFieldsIn(xtext.find("Last", " {", Message.class)));
+    assertThat(descriptionsIn(scopeOf(fields.get(1))), containAllFieldsIn(xtext.find("Second", " {", Message.class)));
+    assertThat(descriptionsIn(scopeOf(fields.get(2))), containAllFieldsIn(xtext.find("Third", " {", Message.class)));
+    assertThat(descriptionsIn(scopeOf(fields.get(0))), containAllFieldsIn(xtext.find("First", " {", Message.class)));
+    // options going through the same elements are resolved the same way.
+    OptionField last = options.get(1).getFields().get(3);
+    assertThat(descriptionsIn(scopeOf(last)), containAllFieldsIn(xtext.find("Last", " {", Message.class)));
+  }
+
+  private IScope scopeOf(OptionField field) {
+    return scopeProvider.scope_OptionField_target(field, reference);
+  }
+
   // syntax = "proto2";
   //
   // import 'google/protobuf/descriptor.proto';
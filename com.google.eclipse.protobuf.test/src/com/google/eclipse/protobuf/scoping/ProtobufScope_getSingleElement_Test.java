@@ -0,0 +1,56 @@
+/*
+ * Copyright (c) 2016 Google Inc.
+ *
+ * All rights reserved. This program and the accompanying materials are made available under the terms of the Eclipse
+ * Public License v1.0 which accompanies this distribution, and is available at
+ *
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package com.google.eclipse.protobuf.scoping;
+
+import static java.util.Arrays.asList;
+
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.mockito.Mockito.mock;
+
+import static org.eclipse.xtext.resource.EObjectDescription.create;
+
+import org.eclipse.emf.ecore.EObject;
+import org.eclipse.xtext.naming.QualifiedName;
+import org.eclipse.xtext.resource.IEObjectDescription;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests for <code>{@link ProtobufScope#getSingleElement(QualifiedName)}</code>
+ */
+public class ProtobufScope_getSingleElement_Test {
+  private IEObjectDescription person;
+  private IEObjectDescription qualifiedPerson;
+  private IEObjectDescription duplicatePerson;
+  private ProtobufScope scope;
+
+  @Before public void setUp() {
+    person = create(QualifiedName.create("Person"), mock(EObject.class));
+    qualifiedPerson = create(QualifiedName.create("test", "Person"), mock(EObject.class));
+    duplicatePerson = create(QualifiedName.create("Person"), mock(EObject.class));
+    scope = new ProtobufScope(asList(person, qualifiedPerson, duplicatePerson));
+  }
+
+  @Test public void should_return_description_with_matching_name() {
+    assertSame(qualifiedPerson, scope.getSingleElement(QualifiedName.create("test", "Person")));
+  }
+
+  @Test public void should_return_first_description_if_more_than_one_have_the_same_name() {
+    assertSame(person, scope.getSingleElement(QualifiedName.create("Person")));
+  }
+
+  @Test public void should_return_null_if_name_is_not_in_scope() {
+    assertNull(scope.getSingleElement(QualifiedName.create("Address")));
+  }
+
+  @Test public void should_be_case_sensitive() {
+    assertNull(scope.getSingleElement(QualifiedName.create("person")));
+  }
+}
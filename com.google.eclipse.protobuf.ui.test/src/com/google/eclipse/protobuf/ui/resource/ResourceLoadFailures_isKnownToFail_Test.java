@@ -0,0 +1,79 @@
+/*
+ * Copyright (c) 2016 Google Inc.
+ *
+ * All rights reserved. This program and the accompanying materials are made available under the terms of the Eclipse
+ * Public License v1.0 which accompanies this distribution, and is available at
+ *
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package com.google.eclipse.protobuf.ui.resource;
+
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+import static org.hamcrest.core.IsEqual.equalTo;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+import static com.google.eclipse.protobuf.junit.core.UnitTestModule.unitTestModule;
+import static com.google.eclipse.protobuf.junit.core.XtextRule.overrideRuntimeModuleWith;
+
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.emf.common.util.URI;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+import com.google.common.base.Ticker;
+import com.google.eclipse.protobuf.junit.core.XtextRule;
+
+/**
+ * Tests for <code>{@link ResourceLoadFailures#isKnownToFail(URI)}</code>.
+ */
+public class ResourceLoadFailures_isKnownToFail_Test {
+  private static final URI URI_OF_FILE = URI.createFileURI("/protos/broken.proto");
+
+  @Rule public XtextRule xtext = overrideRuntimeModuleWith(unitTestModule());
+
+  private FakeTicker ticker;
+  private ResourceLoadFailures failures;
+
+  @Before public void setUp() {
+    ticker = new FakeTicker();
+    failures = new ResourceLoadFailures(ticker);
+    xtext.injector().injectMembers(failures);
+  }
+
+  @Test public void should_know_resource_failed_to_load() {
+    failures.loadFailed(URI_OF_FILE);
+    ticker.advance(29, SECONDS);
+    assertTrue(failures.isKnownToFail(URI_OF_FILE));
+    assertThat(failures.suppressedRetries(), equalTo(1L));
+  }
+
+  @Test public void should_forget_failure_once_it_expires() {
+    failures.loadFailed(URI_OF_FILE);
+    ticker.advance(30, SECONDS);
+    assertFalse(failures.isKnownToFail(URI_OF_FILE));
+    assertThat(failures.suppressedRetries(), equalTo(0L));
+  }
+
+  @Test public void should_forget_failures_when_cleared() {
+    failures.loadFailed(URI_OF_FILE);
+    failures.clear();
+    assertFalse(failures.isKnownToFail(URI_OF_FILE));
+  }
+
+  private static class FakeTicker extends Ticker {
+    private long nanos;
+
+    @Override public long read() {
+      return nanos;
+    }
+
+    void advance(long duration, TimeUnit unit) {
+      nanos += unit.toNanos(duration);
+    }
+  }
+}
@@ -0,0 +1,117 @@
+/*
+ * Copyright (c) 2016 Google Inc.
+ *
+ * All rights reserved. This program and the accompanying materials are made available under the terms of the Eclipse
+ * Public License v1.0 which accompanies this distribution, and is available at
+ *
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package com.google.eclipse.protobuf.ui.scoping;
+
+import static com.google.eclipse.protobuf.junit.core.UnitTestModule.unitTestModule;
+import static com.google.eclipse.protobuf.junit.core.XtextRule.overrideRuntimeModuleWith;
+import static org.hamcrest.core.IsEqual.equalTo;
+import static org.hamcrest.core.IsNot.not;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.google.eclipse.protobuf.junit.core.AbstractTestModule;
+import com.google.eclipse.protobuf.junit.core.XtextRule;
+import com.google.eclipse.protobuf.protobuf.Import;
+import com.google.eclipse.protobuf.scoping.IUriResolver;
+import com.google.eclipse.protobuf.scoping.ProtoDescriptorProvider;
+import com.google.inject.Inject;
+
+import org.eclipse.core.resources.IProject;
+import org.eclipse.emf.common.util.URI;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+/**
+ * Tests for <code>{@link ImportResolver#invalidateCacheFor(Import)}</code>.
+ */
+public class ImportResolver_invalidateCacheFor_Test {
+  private static final String IMPORTED = "imported.proto";
+  private static final String FIRST_LOCATION = "file:/protos/first/imported.proto";
+  private static final String SECOND_LOCATION = "file:/protos/second/imported.proto";
+
+  @Rule public XtextRule xtext = overrideRuntimeModuleWith(unitTestModule(), new TestModule());
+
+  @Inject private IUriResolver uriResolver;
+  @Inject private ImportResolver importResolver;
+
+  private Import anImport;
+
+  @Before public void setUp() {
+    xtext.parseText("syntax = \"proto2\";\nimport \"" + IMPORTED + "\";");
+    anImport = xtext.findFirst(Import.class);
+  }
+
+  @Test public void should_resolve_import_once_until_its_cached_result_is_invalidated() {
+    resolveImportTo(FIRST_LOCATION);
+    importResolver.resolve(anImport);
+    importResolver.resolve(anImport);
+    verify(uriResolver, times(1)).resolveUri(eq(IMPORTED), any(URI.class), any(IProject.class));
+    importResolver.invalidateCacheFor(anImport);
+    importResolver.resolve(anImport);
+    verify(uriResolver, times(2)).resolveUri(eq(IMPORTED), any(URI.class), any(IProject.class));
+  }
+
+  @Test public void should_keep_epoch_if_import_resolves_to_the_same_file() {
+    resolveImportTo(FIRST_LOCATION);
+    importResolver.resolve(anImport);
+    long epoch = importResolver.epoch();
+    importResolver.invalidateCacheFor(anImport);
+    assertThat(importResolver.epoch(), equalTo(epoch));
+    assertThat(importResolver.resolve(anImport), equalTo(FIRST_LOCATION));
+  }
+
+  @Test public void should_keep_epoch_if_import_still_cannot_be_resolved() {
+    resolveImportTo(null);
+    importResolver.resolve(anImport);
+    long epoch = importResolver.epoch();
+    importResolver.invalidateCacheFor(anImport);
+    assertThat(importResolver.epoch(), equalTo(epoch));
+  }
+
+  @Test public void should_change_epoch_if_import_resolves_to_a_different_file() {
+    resolveImportTo(FIRST_LOCATION);
+    importResolver.resolve(anImport);
+    long epoch = importResolver.epoch();
+    resolveImportTo(SECOND_LOCATION);
+    importResolver.invalidateCacheFor(anImport);
+    assertThat(importResolver.epoch(), not(equalTo(epoch)));
+    assertThat(importResolver.resolve(anImport), equalTo(SECOND_LOCATION));
+  }
+
+  @Test public void should_change_epoch_if_unresolved_import_can_now_be_resolved() {
+    resolveImportTo(null);
+    importResolver.resolve(anImport);
+    long epoch = importResolver.epoch();
+    resolveImportTo(FIRST_LOCATION);
+    importResolver.invalidateCacheFor(anImport);
+    assertThat(importResolver.epoch(), not(equalTo(epoch)));
+  }
+
+  @Test public void should_change_epoch_if_nothing_is_known_about_import() {
+    long epoch = importResolver.epoch();
+    importResolver.invalidateCacheFor(anImport);
+    assertThat(importResolver.epoch(), not(equalTo(epoch)));
+  }
+
+  private void resolveImportTo(String location) {
+    when(uriResolver.resolveUri(eq(IMPORTED), any(URI.class), any(IProject.class))).thenReturn(location);
+  }
+
+  private static class TestModule extends AbstractTestModule {
+    @Override protected void configure() {
+      mockAndBind(IUriResolver.class);
+      mockAndBind(ProtoDescriptorProvider.class);
+    }
+  }
+}
@@ -0,0 +1,127 @@
+/*
+ * Copyright (c) 2016 Google Inc.
+ *
+ * All rights reserved. This program and the accompanying materials are made available under the terms of the Eclipse
+ * Public License v1.0 which accompanies this distribution, and is available at
+ *
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package com.google.eclipse.protobuf.ui.scoping;
+
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+import static com.google.eclipse.protobuf.junit.core.UnitTestModule.unitTestModule;
+import static com.google.eclipse.protobuf.junit.core.XtextRule.overrideRuntimeModuleWith;
+import static org.hamcrest.core.IsEqual.equalTo;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.when;
+
+import com.google.common.base.Ticker;
+import com.google.eclipse.protobuf.junit.core.AbstractTestModule;
+import com.google.eclipse.protobuf.junit.core.XtextRule;
+import com.google.eclipse.protobuf.protobuf.Import;
+import com.google.eclipse.protobuf.scoping.IUriResolver;
+import com.google.eclipse.protobuf.scoping.ProtoDescriptorProvider;
+import com.google.inject.Inject;
+
+import org.eclipse.core.resources.IProject;
+import org.eclipse.emf.common.util.URI;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tests for <code>{@link ImportResolver#resolve(Import)}</code>.
+ */
+public class ImportResolver_resolve_Test {
+  private static final String IMPORTED = "imported.proto";
+  private static final String FIRST_LOCATION = "file:/protos/first/imported.proto";
+  private static final String SECOND_LOCATION = "file:/protos/second/imported.proto";
+
+  @Rule public XtextRule xtext = overrideRuntimeModuleWith(unitTestModule(), new TestModule());
+
+  @Inject private IUriResolver uriResolver;
+
+  private FakeTicker ticker;
+  private ImportResolver importResolver;
+  private Import anImport;
+
+  @Before public void setUp() {
+    ticker = new FakeTicker();
+    importResolver = new ImportResolver(ticker);
+    xtext.injector().injectMembers(importResolver);
+    xtext.parseText("syntax = \"proto2\";\nimport \"" + IMPORTED + "\";");
+    anImport = xtext.findFirst(Import.class);
+  }
+
+  @Test public void should_resolve_import_again_after_a_file_shadows_the_resolved_one() {
+    resolveImportTo(SECOND_LOCATION);
+    assertThat(importResolver.resolve(anImport), equalTo(SECOND_LOCATION));
+    // a file with the same name is added to an import root that is searched first
+    resolveImportTo(FIRST_LOCATION);
+    importResolver.invalidateAll();
+    assertThat(importResolver.resolve(anImport), equalTo(FIRST_LOCATION));
+  }
+
+  @Test public void should_not_resolve_import_after_the_resolved_file_is_deleted() {
+    resolveImportTo(FIRST_LOCATION);
+    assertThat(importResolver.resolve(anImport), equalTo(FIRST_LOCATION));
+    resolveImportTo(null);
+    importResolver.invalidateAll();
+    assertNull(importResolver.resolve(anImport));
+  }
+
+  @Test public void should_resolve_import_after_the_missing_file_is_added() {
+    resolveImportTo(null);
+    assertNull(importResolver.resolve(anImport));
+    resolveImportTo(FIRST_LOCATION);
+    importResolver.invalidateAll();
+    assertThat(importResolver.resolve(anImport), equalTo(FIRST_LOCATION));
+  }
+
+  @Test public void should_not_resolve_import_again_while_failure_is_remembered() {
+    resolveImportTo(null);
+    assertNull(importResolver.resolve(anImport));
+    resolveImportTo(FIRST_LOCATION);
+    ticker.advance(29, SECONDS);
+    assertNull(importResolver.resolve(anImport));
+    assertThat(importResolver.suppressedRetries(), equalTo(1L));
+  }
+
+  @Test public void should_resolve_import_again_once_failure_expires() {
+    resolveImportTo(null);
+    assertNull(importResolver.resolve(anImport));
+    // e.g. the file was added to an import root outside of the workspace.
+    resolveImportTo(FIRST_LOCATION);
+    ticker.advance(30, SECONDS);
+    assertThat(importResolver.resolve(anImport), equalTo(FIRST_LOCATION));
+  }
+
+  private void resolveImportTo(String location) {
+    when(uriResolver.resolveUri(eq(IMPORTED), any(URI.class), any(IProject.class))).thenReturn(location);
+  }
+
+  private static class FakeTicker extends Ticker {
+    private long nanos;
+
+    @Override public long read() {
+      return nanos;
+    }
+
+    void advance(long duration, TimeUnit unit) {
+      nanos += unit.toNanos(duration);
+    }
+  }
+
+  private static class TestModule extends AbstractTestModule {
+    @Override protected void configure() {
+      mockAndBind(IUriResolver.class);
+      mockAndBind(ProtoDescriptorProvider.class);
+    }
+  }
+}
@@ -0,0 +1,65 @@
+/*
+ * Copyright (c) 2016 Google Inc.
+ *
+ * All rights reserved. This program and the accompanying materials are made available under the terms of the Eclipse
+ * Public License v1.0 which accompanies this distribution, and is available at
+ *
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package com.google.eclipse.protobuf.ui.scoping;
+
+import static java.util.Arrays.asList;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.Map;
+
+import org.junit.Test;
+
+/**
+ * Tests for <code>{@link ImportRootIndexFile#read(Reader)}</code>.
+ */
+public class ImportRootIndexFile_read_Test {
+  @Test public void should_read_index_generated_offline() throws IOException {
+    String index = "protobuf-dt-index 1\n"
+        + "# generated by a script\n"
+        + "file google/api/http.proto\n"
+        + "hash abc123\n"
+        // keywords that are not known (e.g. written by another tool) are ignored.
+        + "import google/protobuf/descriptor.proto\n"
+        + "export google.api.HttpRule\n"
+        + "\n"
+        + "file google/api/empty.proto\n"
+        + "hash def456\n";
+    Map<String, IndexedProtoFile> files = ImportRootIndexFile.read(new StringReader(index));
+    assertEquals(asList("google/api/http.proto", "google/api/empty.proto"), asList(files.keySet().toArray()));
+    IndexedProtoFile http = files.get("google/api/http.proto");
+    assertEquals("abc123", http.hash());
+    assertEquals(0, http.lastModified());
+    assertEquals("def456", files.get("google/api/empty.proto").hash());
+  }
+
+  @Test public void should_read_what_was_written() throws IOException {
+    IndexedProtoFile file = new IndexedProtoFile("a/b.proto", 1234L, 56L, "abc123");
+    StringWriter writer = new StringWriter();
+    ImportRootIndexFile.write(asList(file), writer);
+    IndexedProtoFile read = ImportRootIndexFile.read(new StringReader(writer.toString())).get("a/b.proto");
+    assertEquals(1234L, read.lastModified());
+    assertEquals(56L, read.size());
+    assertEquals("abc123", read.hash());
+  }
+
+  @Test(expected = IOException.class)
+  public void should_reject_unknown_format() throws IOException {
+    ImportRootIndexFile.read(new StringReader("some other index\nfile a.proto\nhash abc\n"));
+  }
+
+  @Test(expected = IOException.class)
+  public void should_reject_file_without_hash() throws IOException {
+    ImportRootIndexFile.read(new StringReader("protobuf-dt-index 1\nfile a.proto\nsize 10\n"));
+  }
+}
@@ -0,0 +1,91 @@
+/*
+ * Copyright (c) 2016 Google Inc.
+ *
+ * All rights reserved. This program and the accompanying materials are made available under the terms of the Eclipse
+ * Public License v1.0 which accompanies this distribution, and is available at
+ *
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package com.google.eclipse.protobuf.ui.scoping;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.when;
+
+import static com.google.eclipse.protobuf.junit.core.UnitTestModule.unitTestModule;
+import static com.google.eclipse.protobuf.junit.core.XtextRule.overrideRuntimeModuleWith;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.google.eclipse.protobuf.junit.core.AbstractTestModule;
+import com.google.eclipse.protobuf.junit.core.XtextRule;
+import com.google.eclipse.protobuf.ui.scoping.ImportRootIndex.FileSystemDirectory;
+import com.google.inject.Inject;
+
+/**
+ * Tests for <code>{@link ImportRootIndex#fileSystemDirectory(String)}</code>.
+ */
+public class ImportRootIndex_fileSystemDirectory_Test {
+  private static final String INDEXED = "protos/imported.proto";
+  private static final String ABSENT = "protos/absent.proto";
+
+  @Rule public XtextRule xtext = overrideRuntimeModuleWith(unitTestModule(), new TestModule());
+  @Rule public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  @Inject private ExternalImportRootIndex externalImportRootIndex;
+  @Inject private ImportRootIndex index;
+
+  private String root;
+
+  @Before public void setUp() throws IOException {
+    File folder = temporaryFolder.newFolder("protos");
+    new File(folder, "imported.proto").createNewFile();
+    temporaryFolder.newFile("other.proto");
+    root = temporaryFolder.getRoot().getAbsolutePath();
+    when(externalImportRootIndex.contains(anyString(), anyString())).thenReturn(null);
+    when(externalImportRootIndex.contains(anyString(), eq(INDEXED))).thenReturn(true);
+    when(externalImportRootIndex.contains(anyString(), eq(ABSENT))).thenReturn(false);
+    index.clear();
+  }
+
+  @Test public void should_find_indexed_proto_file() {
+    FileSystemDirectory directory = index.fileSystemDirectory(root);
+    assertEquals(Boolean.TRUE, directory.contains(INDEXED));
+  }
+
+  @Test public void should_report_proto_file_missing_from_a_fully_indexed_directory() {
+    FileSystemDirectory directory = index.fileSystemDirectory(root);
+    assertEquals(Boolean.FALSE, directory.contains(ABSENT));
+  }
+
+  @Test public void should_not_answer_for_proto_files_missing_from_the_index() {
+    FileSystemDirectory directory = index.fileSystemDirectory(root);
+    // the file exists, but was not indexed yet: callers check the file system instead.
+    assertNull(directory.contains("other.proto"));
+    assertNull(directory.contains("protos/missing.proto"));
+  }
+
+  @Test public void should_not_answer_for_paths_that_are_not_indexed() {
+    FileSystemDirectory directory = index.fileSystemDirectory(root);
+    assertNull(directory.contains("protos/../other.proto"));
+    assertNull(directory.contains("protos/readme.txt"));
+  }
+
+  @Test public void should_return_null_if_path_is_not_a_directory() {
+    assertNull(index.fileSystemDirectory(new File(root, "other.proto").getAbsolutePath()));
+  }
+
+  private static class TestModule extends AbstractTestModule {
+    @Override protected void configure() {
+      mockAndBind(ExternalImportRootIndex.class);
+    }
+  }
+}
@@ -12,7 +12,9 @@ import static com.google.inject.name.Names.named;
 import static org.eclipse.ui.PlatformUI.isWorkbenchRunning;
 
 import com.google.eclipse.protobuf.preferences.general.GeneralPreferences;
+import com.google.eclipse.protobuf.resource.IResourceLoadFailures;
 import com.google.eclipse.protobuf.resource.IResourceVerifier;
+import com.google.eclipse.protobuf.resource.ISharedResourceStore;
 import com.google.eclipse.protobuf.scoping.IImportResolver;
 import com.google.eclipse.protobuf.scoping.IUriResolver;
 import com.google.eclipse.protobuf.ui.builder.nature.ProtobufEditorCallback;
@@ -34,7 +36,9 @@ import com.google.eclipse.protobuf.ui.preferences.editor.save.SaveActionsPrefere
 import com.google.eclipse.protobuf.ui.preferences.misc.MiscellaneousPreferences;
 import com.google.eclipse.protobuf.ui.preferences.paths.PathsPreferences;
 import com.google.eclipse.protobuf.ui.resource.ProtobufServiceProvider;
+import com.google.eclipse.protobuf.ui.resource.ResourceLoadFailures;
 import com.google.eclipse.protobuf.ui.resource.ResourceVerifier;
+import com.google.eclipse.protobuf.ui.resource.SharedResourceStore;
 import com.google.eclipse.protobuf.ui.scoping.ImportResolver;
 import com.google.eclipse.protobuf.ui.scoping.UriResolver;
 import com.google.inject.Binder;
@@ -107,6 +111,14 @@ public class ProtobufUiModule extends AbstractProtobufUiModule {
     return ResourceVerifier.class;
   }
 
+  public Class<? extends IResourceLoadFailures> bindIResourceLoadFailures() {
+    return ResourceLoadFailures.class;
+  }
+
+  public Class<? extends ISharedResourceStore> bindISharedResourceStore() {
+    return SharedResourceStore.class;
+  }
+
   public Class<? extends ISemanticHighlightingCalculator> bindISemanticHighlightingCalculator() {
     return ProtobufSemanticHighlightingCalculator.class;
   }
@@ -8,22 +8,31 @@
  */
 package com.google.eclipse.protobuf.ui.builder.nature;
 
+import java.util.Map;
+import java.util.WeakHashMap;
+
 import com.google.eclipse.protobuf.preferences.general.GeneralPreferences;
+import com.google.eclipse.protobuf.resource.ImportPrefetcher;
+import com.google.eclipse.protobuf.ui.resource.SharedResourceStore;
 import com.google.eclipse.protobuf.ui.validation.ProtobufValidation;
 import com.google.inject.Inject;
 
 import org.eclipse.core.resources.IProject;
 import org.eclipse.core.resources.IResource;
+import org.eclipse.emf.common.util.URI;
 import org.eclipse.xtext.builder.nature.ToggleXtextNatureAction;
 import org.eclipse.xtext.builder.nature.XtextNature;
 import org.eclipse.xtext.ui.editor.IXtextEditorCallback;
 import org.eclipse.xtext.ui.editor.XtextEditor;
+import org.eclipse.xtext.ui.editor.model.IXtextDocument;
 import org.eclipse.xtext.ui.editor.preferences.IPreferenceStoreAccess;
 
 
 /**
  * Automatically adds {@link XtextNature} to a project if needed (e.g. when opening a 'Protocol
- * Buffer' editor for the first time) and performs validation on a protobuf file when it is opened.
+ * Buffer' editor for the first time) and performs validation on a protobuf file when it is opened. Also tells the
+ * {@link SharedResourceStore} which files are being edited, so they are not shared, and asks the
+ * {@link ImportPrefetcher} to load the files imported by an opened file in the background.
  *
  * @author alruiz@google.com (Alex Ruiz)
  */
@@ -32,17 +41,40 @@ public class ProtobufEditorCallback extends IXtextEditorCallback.NullImpl {
   @Inject private ToggleXtextNatureAction xtext;
   @Inject private IPreferenceStoreAccess storeAccess;
   @Inject private ProtobufValidation validator;
+  @Inject private SharedResourceStore sharedResources;
+  @Inject private ImportPrefetcher importPrefetcher;
+
+  private final Map<XtextEditor, URI> editedUris = new WeakHashMap<>();
 
   @Override public void afterCreatePartControl(XtextEditor editor) {
+    IXtextDocument document = editor.getDocument();
+    if (document != null) {
+      importPrefetcher.prefetchImportsOf(document);
+    }
     IResource resource = editor.getResource();
     if (resource == null) {
       return;
     }
+    URI uri = URI.createPlatformResourceURI(resource.getFullPath().toString(), true);
+    synchronized (editedUris) {
+      editedUris.put(editor, uri);
+    }
+    sharedResources.editingStarted(uri);
     IProject project = resource.getProject();
     addXtextNatureToProject(project);
     validateEditorIfEnabled(editor, project);
   }
 
+  @Override public void beforeDispose(XtextEditor editor) {
+    URI uri;
+    synchronized (editedUris) {
+      uri = editedUris.remove(editor);
+    }
+    if (uri != null) {
+      sharedResources.editingFinished(uri);
+    }
+  }
+
   private void addXtextNatureToProject(IProject project) {
     if (!project.isAccessible() || project.isHidden()) {
       return;
@@ -64,6 +64,7 @@ import com.google.eclipse.protobuf.protobuf.Rpc;
 import com.google.eclipse.protobuf.protobuf.SimpleValueField;
 import com.google.eclipse.protobuf.protobuf.Stream;
 import com.google.eclipse.protobuf.protobuf.TypeExtension;
+import com.google.eclipse.protobuf.resource.ExtensionIndex;
 import com.google.eclipse.protobuf.scoping.ProtoDescriptor;
 import com.google.eclipse.protobuf.scoping.ProtoDescriptorProvider;
 import com.google.eclipse.protobuf.scoping.ProtobufScopeProvider;
@@ -100,6 +101,7 @@ import java.util.List;
 public class ProtobufProposalProvider extends AbstractProtobufProposalProvider {
   @Inject private IEObjectDescriptionChooser descriptionChooser;
   @Inject private ProtoDescriptorProvider descriptorProvider;
+  @Inject private ExtensionIndex extensionIndex;
   @Inject private Images images;
   @Inject private IndexedElements indexedElements;
   @Inject private PluginImageHelper imageHelper;
@@ -368,7 +370,13 @@ public class ProtobufProposalProvider extends AbstractProtobufProposalProvider {
 
   @Override public void completeMessageField_Index(EObject model, Assignment assignment, ContentAssistContext context,
       ICompletionProposalAcceptor acceptor) {
-    long index = indexedElements.calculateNewIndexFor((MessageField) model);
+    MessageField field = (MessageField) model;
+    long index;
+    if (field.eContainer() instanceof TypeExtension) {
+      index = extensionIndex.calculateNewIndexFor((TypeExtension) field.eContainer());
+    } else {
+      index = indexedElements.calculateNewIndexFor(field);
+    }
     proposeIndex(index, context, acceptor);
   }
 
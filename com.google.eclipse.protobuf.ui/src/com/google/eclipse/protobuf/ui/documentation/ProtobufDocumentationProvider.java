@@ -15,8 +15,10 @@ import static com.google.common.collect.Lists.newArrayList;
 import java.util.List;
 
 import org.eclipse.emf.ecore.EObject;
+import org.eclipse.emf.ecore.resource.Resource;
 import org.eclipse.xtext.documentation.IEObjectDocumentationProvider;
 
+import com.google.eclipse.protobuf.linking.ProtobufResource;
 import com.google.inject.Inject;
 import com.google.inject.Singleton;
 
@@ -35,6 +37,11 @@ import com.google.inject.Singleton;
 
   /** {@inheritDoc} */
   @Override public String getDocumentation(EObject o) {
+    Resource resource = o.eResource();
+    if (resource instanceof ProtobufResource) {
+      // Comments are only available in the node model.
+      ((ProtobufResource) resource).ensureNodeModel();
+    }
     for (IEObjectDocumentationProvider p : delegates) {
       String documentation = p.getDocumentation(o);
       if (!(isEmpty(documentation))) {
@@ -0,0 +1,56 @@
+/*
+ * Copyright (c) 2016 Google Inc.
+ *
+ * All rights reserved. This program and the accompanying materials are made available under the terms of the Eclipse
+ * Public License v1.0 which accompanies this distribution, and is available at
+ *
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package com.google.eclipse.protobuf.ui.plugin;
+
+import static com.google.eclipse.protobuf.ui.plugin.ProtobufEditorPlugIn.protobufLanguageName;
+
+import org.osgi.framework.BundleContext;
+
+import com.google.eclipse.protobuf.resource.ImportPrefetcher;
+import com.google.eclipse.protobuf.resource.WorkspaceChangeDispatcher;
+import com.google.eclipse.protobuf.ui.internal.ProtobufActivator;
+import com.google.inject.Injector;
+
+/**
+ * Activator of this plug-in. Starts forwarding workspace changes to the singletons of the 'Protocol Buffer' language
+ * once their injector is created, and releases the resources they hold (e.g. background threads, the workspace
+ * listener) when the plug-in stops.
+ */
+public class ProtobufEditorActivator extends ProtobufActivator {
+  private volatile Injector protobufInjector;
+
+  @Override public Injector getInjector(String language) {
+    Injector injector = super.getInjector(language);
+    if (protobufInjector == null && protobufLanguageName().equals(language)) {
+      injectorCreated(injector);
+    }
+    return injector;
+  }
+
+  private synchronized void injectorCreated(Injector injector) {
+    if (protobufInjector == null) {
+      injector.getInstance(WorkspaceChangeDispatcher.class).start();
+      protobufInjector = injector;
+    }
+  }
+
+  @Override public void stop(BundleContext context) throws Exception {
+    try {
+      // Only release what was created; stopping should not create the injector.
+      Injector injector = protobufInjector;
+      if (injector != null) {
+        injector.getInstance(WorkspaceChangeDispatcher.class).stop();
+        injector.getInstance(ImportPrefetcher.class).shutdown();
+      }
+    } finally {
+      protobufInjector = null;
+      super.stop(context);
+    }
+  }
+}
@@ -35,6 +35,9 @@ import com.google.eclipse.protobuf.ui.preferences.pages.binding.Binding;
 import com.google.eclipse.protobuf.ui.preferences.pages.binding.Preference;
 import com.google.eclipse.protobuf.ui.preferences.pages.binding.PreferenceBinder;
 import com.google.eclipse.protobuf.ui.preferences.pages.binding.PreferenceFactory;
+import com.google.eclipse.protobuf.ui.resource.ResourceLoadFailures;
+import com.google.eclipse.protobuf.ui.scoping.ExternalImportRootIndex;
+import com.google.eclipse.protobuf.ui.scoping.ImportResolver;
 import com.google.eclipse.protobuf.ui.validation.ValidationTrigger;
 import com.google.inject.Inject;
 
@@ -71,6 +74,9 @@ public class PathsPreferencePage extends PreferenceAndPropertyPage {
 
   @Inject private PluginImageHelper imageHelper;
   @Inject private ValidationTrigger validation;
+  @Inject private ExternalImportRootIndex externalImportRootIndex;
+  @Inject private ImportResolver importResolver;
+  @Inject private ResourceLoadFailures resourceLoadFailures;
 
   private boolean stateChanged;
 
@@ -195,6 +201,10 @@ public class PathsPreferencePage extends PreferenceAndPropertyPage {
       return;
     }
     stateChanged = false;
+    // Imports may resolve to different files in the new import paths, and ones that could not be resolved may be found.
+    importResolver.invalidateAll();
+    resourceLoadFailures.clear();
+    externalImportRootIndex.scheduleRefresh();
     if (shouldRebuild()) {
       rebuildProject();
       return;
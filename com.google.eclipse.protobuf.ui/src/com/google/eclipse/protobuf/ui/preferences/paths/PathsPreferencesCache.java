@@ -0,0 +1,116 @@
+/*
+ * Copyright (c) 2016 Google Inc.
+ *
+ * All rights reserved. This program and the accompanying materials are made available under the terms of the Eclipse
+ * Public License v1.0 which accompanies this distribution, and is available at
+ *
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package com.google.eclipse.protobuf.ui.preferences.paths;
+
+import static java.util.Collections.unmodifiableList;
+
+import static com.google.eclipse.protobuf.util.Workspaces.workspaceRoot;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.eclipse.core.resources.IProject;
+import org.eclipse.core.resources.IResourceChangeEvent;
+import org.eclipse.core.resources.IResourceChangeListener;
+import org.eclipse.core.resources.IResourceDelta;
+import org.eclipse.xtext.ui.XtextProjectHelper;
+import org.eclipse.xtext.ui.editor.preferences.IPreferenceStoreAccess;
+
+import com.google.eclipse.protobuf.resource.WorkspaceChangeDispatcher;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+
+/**
+ * Caches the <code>{@link PathsPreferences}</code> of the projects in the workspace.
+ * <p>
+ * The preferences of a project are read from its preference store every time they are used, so only the list of
+ * projects with the Xtext nature needs to be invalidated: it is discarded every time a project is added, removed,
+ * opened, closed, or has its description (and therefore its natures) changed.
+ * </p>
+ */
+@Singleton public class PathsPreferencesCache {
+  private static final int PROJECT_CHANGES = IResourceDelta.OPEN | IResourceDelta.DESCRIPTION;
+
+  @Inject private IPreferenceStoreAccess storeAccess;
+  @Inject private WorkspaceChangeDispatcher workspaceChanges;
+
+  private final Map<IProject, PathsPreferences> preferencesByProject = new ConcurrentHashMap<>();
+  private volatile List<PathsPreferences> preferencesOfAllProjects;
+  private volatile boolean listeningToWorkspaceChanges;
+
+  /**
+   * Returns the "paths" preferences of the given project.
+   * @param project the given project.
+   * @return the "paths" preferences of the given project.
+   */
+  public PathsPreferences preferencesOf(IProject project) {
+    startListeningToWorkspaceChanges();
+    PathsPreferences preferences = preferencesByProject.get(project);
+    if (preferences == null) {
+      preferences = new PathsPreferences(storeAccess, project);
+      preferencesByProject.put(project, preferences);
+    }
+    return preferences;
+  }
+
+  /**
+   * Returns the "paths" preferences of all the accessible projects in the workspace that have the Xtext nature, in
+   * the order the workspace returns the projects.
+   * @return the "paths" preferences of all the projects in the workspace that have the Xtext nature.
+   */
+  public List<PathsPreferences> preferencesOfAllProjects() {
+    startListeningToWorkspaceChanges();
+    List<PathsPreferences> allPreferences = preferencesOfAllProjects;
+    if (allPreferences == null) {
+      allPreferences = new ArrayList<>();
+      for (IProject project : workspaceRoot().getProjects()) {
+        if (project.isHidden() || !project.isAccessible() || !XtextProjectHelper.hasNature(project)) {
+          continue;
+        }
+        allPreferences.add(preferencesOf(project));
+      }
+      allPreferences = unmodifiableList(allPreferences);
+      preferencesOfAllProjects = allPreferences;
+    }
+    return allPreferences;
+  }
+
+  private void startListeningToWorkspaceChanges() {
+    if (listeningToWorkspaceChanges) {
+      return;
+    }
+    synchronized (this) {
+      if (!listeningToWorkspaceChanges) {
+        workspaceChanges.addListener(new ProjectChangeListener());
+        listeningToWorkspaceChanges = true;
+      }
+    }
+  }
+
+  private class ProjectChangeListener implements IResourceChangeListener {
+    @Override public void resourceChanged(IResourceChangeEvent event) {
+      IResourceDelta delta = event.getDelta();
+      if (delta == null) {
+        return;
+      }
+      for (IResourceDelta projectDelta : delta.getAffectedChildren()) {
+        int kind = projectDelta.getKind();
+        if (kind == IResourceDelta.ADDED || kind == IResourceDelta.REMOVED
+            || (projectDelta.getFlags() & PROJECT_CHANGES) != 0) {
+          if (kind == IResourceDelta.REMOVED) {
+            preferencesByProject.remove(projectDelta.getResource());
+          }
+          preferencesOfAllProjects = null;
+        }
+      }
+    }
+  }
+}
@@ -0,0 +1,136 @@
+/*
+ * Copyright (c) 2016 Google Inc.
+ *
+ * All rights reserved. This program and the accompanying materials are made available under the terms of the Eclipse
+ * Public License v1.0 which accompanies this distribution, and is available at
+ *
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package com.google.eclipse.protobuf.ui.resource;
+
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.eclipse.core.resources.IResource;
+import org.eclipse.core.resources.IResourceChangeEvent;
+import org.eclipse.core.resources.IResourceChangeListener;
+import org.eclipse.core.resources.IResourceDelta;
+import org.eclipse.core.resources.IResourceDeltaVisitor;
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.emf.common.util.URI;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Ticker;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.eclipse.protobuf.resource.IResourceLoadFailures;
+import com.google.eclipse.protobuf.resource.WorkspaceChangeDispatcher;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+
+/**
+ * Remembers the .proto files that could not be loaded, so they are not read again on every scope request, validation
+ * pass or keystroke.
+ * <p>
+ * All the failures are forgotten when a .proto file or a project is added to, removed from or changed in the
+ * workspace, or when <code>{@link #clear()}</code> is called (e.g. when the import paths change.) Since not every
+ * change is noticed (e.g. files outside of the workspace,) each failure is also forgotten
+ * {@value #FAILURE_EXPIRATION_SECONDS} seconds after it happened. The number of loads that were not attempted again is
+ * available through <code>{@link #suppressedRetries()}</code>.
+ * </p>
+ */
+@Singleton public class ResourceLoadFailures implements IResourceLoadFailures {
+  private static final int FAILURE_EXPIRATION_SECONDS = 30;
+  private static final int MAXIMUM_SIZE = 10000;
+
+  @Inject private WorkspaceChangeDispatcher workspaceChanges;
+
+  private final Cache<URI, Boolean> failures;
+  private final AtomicLong suppressedRetries = new AtomicLong();
+  private volatile boolean listeningToWorkspaceChanges;
+
+  public ResourceLoadFailures() {
+    this(Ticker.systemTicker());
+  }
+
+  @VisibleForTesting ResourceLoadFailures(Ticker ticker) {
+    failures = CacheBuilder.newBuilder().maximumSize(MAXIMUM_SIZE).expireAfterWrite(FAILURE_EXPIRATION_SECONDS, SECONDS)
+        .ticker(ticker).build();
+  }
+
+  @Override public boolean isKnownToFail(URI uri) {
+    if (failures.getIfPresent(uri) == null) {
+      return false;
+    }
+    suppressedRetries.incrementAndGet();
+    return true;
+  }
+
+  @Override public void loadFailed(URI uri) {
+    startListeningToWorkspaceChanges();
+    failures.put(uri, true);
+  }
+
+  /**
+   * Forgets all the failures.
+   */
+  public void clear() {
+    failures.invalidateAll();
+  }
+
+  /**
+   * Returns the number of times loading a resource was not attempted because it was known to fail.
+   * @return the number of times loading a resource was not attempted because it was known to fail.
+   */
+  public long suppressedRetries() {
+    return suppressedRetries.get();
+  }
+
+  private void startListeningToWorkspaceChanges() {
+    if (listeningToWorkspaceChanges) {
+      return;
+    }
+    synchronized (this) {
+      if (!listeningToWorkspaceChanges) {
+        workspaceChanges.addListener(new WorkspaceChangeListener());
+        listeningToWorkspaceChanges = true;
+      }
+    }
+  }
+
+  private class WorkspaceChangeListener implements IResourceChangeListener {
+    @Override public void resourceChanged(IResourceChangeEvent event) {
+      IResourceDelta delta = event.getDelta();
+      if (delta == null || failures.size() == 0) {
+        return;
+      }
+      final boolean[] filesMayLoad = { false };
+      try {
+        delta.accept(new IResourceDeltaVisitor() {
+          @Override public boolean visit(IResourceDelta delta) {
+            if (filesMayLoad[0]) {
+              return false;
+            }
+            IResource resource = delta.getResource();
+            if (resource.getType() == IResource.FILE) {
+              filesMayLoad[0] = "proto".equals(resource.getFileExtension());
+              return false;
+            }
+            if (resource.getType() == IResource.PROJECT
+                && (delta.getKind() != IResourceDelta.CHANGED || (delta.getFlags() & IResourceDelta.OPEN) != 0)) {
+              filesMayLoad[0] = true;
+              return false;
+            }
+            return true;
+          }
+        });
+      } catch (CoreException e) {
+        filesMayLoad[0] = true;
+      }
+      if (filesMayLoad[0]) {
+        clear();
+      }
+    }
+  }
+}
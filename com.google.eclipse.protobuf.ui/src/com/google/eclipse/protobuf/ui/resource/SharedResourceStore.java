@@ -0,0 +1,549 @@
+/*
+ * Copyright (c) 2016 Google Inc.
+ *
+ * All rights reserved. This program and the accompanying materials are made available under the terms of the Eclipse
+ * Public License v1.0 which accompanies this distribution, and is available at
+ *
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package com.google.eclipse.protobuf.ui.resource;
+
+import static java.util.Collections.emptyList;
+
+import static com.google.eclipse.protobuf.util.SystemProperties.sharedResourcesBudget;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.log4j.Logger;
+import org.eclipse.core.resources.IResource;
+import org.eclipse.core.resources.IResourceChangeEvent;
+import org.eclipse.core.resources.IResourceChangeListener;
+import org.eclipse.core.resources.IResourceDelta;
+import org.eclipse.core.resources.IResourceDeltaVisitor;
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.emf.common.util.URI;
+import org.eclipse.emf.ecore.resource.Resource;
+import org.eclipse.emf.ecore.resource.ResourceSet;
+import org.eclipse.emf.ecore.util.EcoreUtil;
+import org.eclipse.xtext.parser.IParseResult;
+import org.eclipse.xtext.resource.XtextResource;
+import org.eclipse.xtext.resource.XtextResourceSet;
+import org.eclipse.xtext.util.IResourceScopeCache;
+
+import com.google.eclipse.protobuf.linking.ProtobufResource;
+import com.google.eclipse.protobuf.model.util.Imports;
+import com.google.eclipse.protobuf.model.util.Protobufs;
+import com.google.eclipse.protobuf.model.util.Resources;
+import com.google.eclipse.protobuf.protobuf.Import;
+import com.google.eclipse.protobuf.protobuf.Protobuf;
+import com.google.eclipse.protobuf.resource.ISharedResourceStore;
+import com.google.eclipse.protobuf.resource.WorkspaceChangeDispatcher;
+import com.google.eclipse.protobuf.util.Uris;
+import com.google.inject.Inject;
+import com.google.inject.Provider;
+import com.google.inject.Singleton;
+
+/**
+ * Store of the imported .proto files that are not open in an editor, shared by the resource sets of all editors.
+ * <p>
+ * Resources are loaded into a resource set owned by this store and are fully linked as soon as they are loaded, so
+ * they are not modified afterwards. Their node models are then discarded. Shared resources are read by the threads of
+ * several editors and builds at the same time; anything that still modifies them (e.g. caching values in their
+ * adapters, or rebuilding their node models) holds the lock of this store. Loading and linking a resource only holds
+ * a separate lock, which serializes the changes to the resource set of this store, so threads reading resources that
+ * are already shared do not wait for a resource being loaded.
+ * </p>
+ * <p>
+ * Files can also be parsed ahead of time, by several threads at the same time (see <code>{@link #preload(URI)}</code>.)
+ * A parsed file is kept, up to {@value #MAXIMUM_PRELOADED_RESOURCES} of them, until it is requested; it is then moved
+ * into the resource set of this store and linked, without being parsed again.
+ * </p>
+ * <p>
+ * Files open in an editor are never served from this store, since their contents may differ from the ones on disk.
+ * Because shared resources refer to each other, when a .proto file changes, is removed, or is opened in an editor, its
+ * shared resource is unloaded together with the shared resources that import it, directly or indirectly. When a .proto
+ * file is added, the shared resources importing a file with the same name are unloaded as well, since their imports
+ * may now resolve to the new file.
+ * </p>
+ * <p>
+ * A shared resource is in use while a resource set that requested it (e.g. the one of an open editor or of a build)
+ * is still reachable, or while another shared resource that imports it is loaded. Resources that are not in use are
+ * unloaded, least recently used first, once the total length of the source of the shared resources exceeds
+ * <code>{@link com.google.eclipse.protobuf.util.SystemProperties#sharedResourcesBudget()}</code>. Unloaded resources
+ * are loaded again the next time they are requested.
+ * </p>
+ */
+@Singleton public class SharedResourceStore implements ISharedResourceStore {
+  private static Logger logger = Logger.getLogger(SharedResourceStore.class);
+  private static final int MAXIMUM_PRELOADED_RESOURCES = 256;
+
+  @Inject private Provider<XtextResourceSet> resourceSetProvider;
+  @Inject private Imports imports;
+  @Inject private Protobufs protobufs;
+  @Inject private Resources resources;
+  @Inject private Uris uris;
+  @Inject private WorkspaceChangeDispatcher workspaceChanges;
+  @Inject private final IResourceScopeCache cache = IResourceScopeCache.NullImpl.INSTANCE;
+
+  private final Map<URI, Integer> editedUris = new ConcurrentHashMap<>();
+  // Guards the entries and the shared resources.
+  private final Object lock = new Object();
+  // Guards the resource set of this store; always taken before the lock of the entries, never while holding it.
+  private final Object loadLock = new Object();
+
+  // Iterates from the least recently used resource to the most recently used one.
+  private final LinkedHashMap<URI, SharedEntry> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+  // Parsed resources that are not linked yet, in the order they were parsed.
+  @SuppressWarnings("serial")
+  private final LinkedHashMap<URI, Resource> preloaded = new LinkedHashMap<URI, Resource>() {
+    @Override protected boolean removeEldestEntry(Map.Entry<URI, Resource> eldest) {
+      return size() > MAXIMUM_PRELOADED_RESOURCES;
+    }
+  };
+
+  private XtextResourceSet resourceSet;
+  private SharedEntry resolving;
+  private long totalLength;
+  private volatile boolean listeningToWorkspaceChanges;
+
+  @Override public boolean isShareable(URI uri) {
+    return uri != null && (uri.isPlatformResource() || uri.isFile()) && uris.hasProtoExtension(uri)
+        && !editedUris.containsKey(uri);
+  }
+
+  @Override public Resource sharedResource(URI uri, ResourceSet requester) {
+    if (!isShareable(uri)) {
+      return null;
+    }
+    startListeningToWorkspaceChanges();
+    SharedEntry entry = sharedEntry(uri, requester);
+    if (entry != null) {
+      return entry.resource;
+    }
+    synchronized (loadLock) {
+      // Another thread may have loaded the resource while this one was waiting.
+      entry = sharedEntry(uri, requester);
+      if (entry != null) {
+        return entry.resource;
+      }
+      synchronized (lock) {
+        if (resourceSet == null) {
+          resourceSet = resourceSetProvider.get();
+        }
+      }
+      entry = load(uri);
+      if (entry == null) {
+        return null;
+      }
+      synchronized (lock) {
+        addRequester(entry, requester);
+        if (resolving == null) {
+          unloadLeastRecentlyUsed(entry);
+        }
+      }
+      return entry.resource;
+    }
+  }
+
+  @Override public List<URI> preload(URI uri) {
+    if (!isShareable(uri)) {
+      return emptyList();
+    }
+    startListeningToWorkspaceChanges();
+    synchronized (lock) {
+      if (entries.containsKey(uri) || preloaded.containsKey(uri)) {
+        return emptyList();
+      }
+    }
+    // Parsed in a resource set of its own, without holding any lock.
+    Resource resource;
+    try {
+      resource = resourceSetProvider.get().getResource(uri, true);
+    } catch (RuntimeException e) {
+      logger.debug("Unable to preload " + uri, e);
+      return emptyList();
+    }
+    if (resource == null) {
+      return emptyList();
+    }
+    // Read before the resource is published: once it is, another thread may link it.
+    List<URI> importedUris = importedUrisOf(resource);
+    synchronized (lock) {
+      if (entries.containsKey(uri) || preloaded.containsKey(uri) || !isShareable(uri)) {
+        return emptyList();
+      }
+      preloaded.put(uri, resource);
+    }
+    return importedUris;
+  }
+
+  private List<URI> importedUrisOf(Resource resource) {
+    List<URI> importedUris = new ArrayList<>();
+    Protobuf root = resources.rootOf(resource);
+    if (root == null) {
+      return importedUris;
+    }
+    for (Import anImport : protobufs.importsIn(root)) {
+      if (imports.isImportingDescriptor(anImport)) {
+        continue;
+      }
+      URI importedUri = imports.resolvedUriOf(anImport);
+      if (importedUri != null) {
+        importedUris.add(importedUri);
+      }
+    }
+    return importedUris;
+  }
+
+  /*
+   * Returns the entry of the given URI if its resource can be read, i.e. if it is fully linked, or if it is being
+   * linked and is requested while linking another shared resource (by the thread holding the load lock.)
+   */
+  private SharedEntry sharedEntry(URI uri, ResourceSet requester) {
+    synchronized (lock) {
+      SharedEntry entry = entries.get(uri);
+      boolean requestedWhileLinking = requester != null && requester == resourceSet;
+      if (entry == null || !(entry.linked || requestedWhileLinking)) {
+        return null;
+      }
+      addRequester(entry, requester);
+      return entry;
+    }
+  }
+
+  private void addRequester(SharedEntry entry, ResourceSet requester) {
+    if (requester == resourceSet) {
+      // Requested while linking another shared resource.
+      if (resolving != null && resolving != entry && resolving.imports.add(entry)) {
+        entry.importers.add(resolving);
+      }
+    } else if (requester != null) {
+      entry.requesters.add(requester);
+    }
+  }
+
+  // Called while holding the load lock only.
+  private SharedEntry load(URI uri) {
+    Resource resource = resourceSet.getResource(uri, false);
+    if (resource == null) {
+      resource = takePreloaded(uri);
+    }
+    if (resource == null) {
+      try {
+        resource = resourceSet.getResource(uri, true);
+      } catch (RuntimeException e) {
+        logger.debug("Unable to load " + uri, e);
+        // The resource set keeps resources that failed to load; remove it so it can be loaded once the file is fixed.
+        Resource failed = resourceSet.getResource(uri, false);
+        if (failed != null) {
+          resourceSet.getResources().remove(failed);
+        }
+        return null;
+      }
+    }
+    if (resource == null) {
+      return null;
+    }
+    SharedEntry entry = new SharedEntry(uri, resource, sourceLengthOf(resource), importedFileNamesOf(resource));
+    synchronized (lock) {
+      // Registered before linking, so shared resources importing this one, directly or indirectly, find it.
+      entries.put(uri, entry);
+      totalLength += entry.length;
+    }
+    SharedEntry previous = resolving;
+    resolving = entry;
+    boolean linked = false;
+    try {
+      EcoreUtil.resolveAll(resource);
+      if (resource instanceof ProtobufResource) {
+        // Nothing in the shared resource needs to be linked anymore.
+        ProtobufResource protobufResource = (ProtobufResource) resource;
+        protobufResource.discardNodeModel();
+        protobufResource.share(lock);
+      }
+      // Adds the adapter of the cache to the elements of the resource before other threads can read them.
+      cache.get(SharedResourceStore.class, resource, new Provider<Boolean>() {
+        @Override public Boolean get() {
+          return true;
+        }
+      });
+      linked = true;
+    } finally {
+      resolving = previous;
+      synchronized (lock) {
+        entry.linked = linked;
+        if (!linked) {
+          evict(entry);
+        }
+      }
+    }
+    synchronized (lock) {
+      // Evicted while linking, e.g. because a shared resource it imports failed to link.
+      return (entries.get(uri) == entry) ? entry : null;
+    }
+  }
+
+  // Called while holding the load lock only.
+  private Resource takePreloaded(URI uri) {
+    Resource resource;
+    synchronized (lock) {
+      resource = preloaded.remove(uri);
+    }
+    if (resource != null) {
+      // Moves the resource out of the resource set it was parsed in.
+      resourceSet.getResources().add(resource);
+    }
+    return resource;
+  }
+
+  private Set<String> importedFileNamesOf(Resource resource) {
+    Set<String> names = new HashSet<>();
+    Protobuf root = resources.rootOf(resource);
+    if (root == null) {
+      return names;
+    }
+    for (Import anImport : protobufs.importsIn(root)) {
+      String path = imports.getPath(anImport);
+      if (path != null) {
+        names.add(path.substring(path.lastIndexOf('/') + 1));
+      }
+    }
+    return names;
+  }
+
+  private static int sourceLengthOf(Resource resource) {
+    if (resource instanceof ProtobufResource) {
+      return ((ProtobufResource) resource).sourceLength();
+    }
+    if (resource instanceof XtextResource) {
+      IParseResult parseResult = ((XtextResource) resource).getParseResult();
+      if (parseResult != null && parseResult.getRootNode() != null) {
+        return parseResult.getRootNode().getTotalLength();
+      }
+    }
+    return 0;
+  }
+
+  // Called while holding both locks.
+  private void unloadLeastRecentlyUsed(SharedEntry requested) {
+    long budget = sharedResourcesBudget();
+    boolean unloaded = true;
+    // Unloading a resource may leave the resources it imports unused, so keep going until nothing else is unloaded.
+    while (totalLength > budget && unloaded) {
+      unloaded = false;
+      Iterator<SharedEntry> iterator = entries.values().iterator();
+      while (totalLength > budget && iterator.hasNext()) {
+        SharedEntry entry = iterator.next();
+        if (entry == requested || entry.isInUse()) {
+          continue;
+        }
+        iterator.remove();
+        unload(entry);
+        unloaded = true;
+      }
+    }
+  }
+
+  // Called while holding both locks.
+  private void evict(SharedEntry entry) {
+    if (entries.get(entry.uri) != entry) {
+      return;
+    }
+    entries.remove(entry.uri);
+    // The resources importing the evicted one refer to its elements.
+    for (SharedEntry importer : new ArrayList<>(entry.importers)) {
+      evict(importer);
+    }
+    // Not unloaded: resource sets that still use the evicted resource keep reading it until they are linked again.
+    discard(entry);
+  }
+
+  private void unload(SharedEntry entry) {
+    discard(entry);
+    entry.resource.unload();
+  }
+
+  private void discard(SharedEntry entry) {
+    totalLength -= entry.length;
+    for (SharedEntry imported : entry.imports) {
+      imported.importers.remove(entry);
+    }
+    entry.imports.clear();
+    resourceSet.getResources().remove(entry.resource);
+  }
+
+  /**
+   * Indicates that the file with the given URI has been opened in an editor.
+   * @param uri the URI of the file.
+   */
+  public void editingStarted(URI uri) {
+    synchronized (lock) {
+      Integer editorCount = editedUris.get(uri);
+      editedUris.put(uri, editorCount == null ? 1 : editorCount + 1);
+    }
+    evict(uri);
+  }
+
+  /**
+   * Indicates that an editor showing the file with the given URI has been closed.
+   * @param uri the URI of the file.
+   */
+  public void editingFinished(URI uri) {
+    synchronized (lock) {
+      Integer editorCount = editedUris.get(uri);
+      if (editorCount == null || editorCount <= 1) {
+        editedUris.remove(uri);
+      } else {
+        editedUris.put(uri, editorCount - 1);
+      }
+    }
+  }
+
+  /**
+   * Unloads the shared resource with the given URI, if any, and the shared resources that import it, directly or
+   * indirectly.
+   * @param uri the URI of the shared resource.
+   */
+  public void evict(URI uri) {
+    synchronized (loadLock) {
+      synchronized (lock) {
+        preloaded.remove(uri);
+        SharedEntry entry = entries.get(uri);
+        if (entry != null) {
+          evict(entry);
+        }
+      }
+    }
+  }
+
+  /**
+   * Unloads the shared resources that import a file with the given name (e.g. because a file with that name was added,
+   * and their imports may now resolve to it,) and the shared resources that import them, directly or indirectly.
+   * @param fileName the name of the imported file.
+   */
+  public void evictImportersOf(String fileName) {
+    synchronized (loadLock) {
+      synchronized (lock) {
+        for (SharedEntry entry : new ArrayList<>(entries.values())) {
+          if (entry.importedFileNames.contains(fileName)) {
+            evict(entry);
+          }
+        }
+      }
+    }
+  }
+
+  /**
+   * Discards all the shared resources.
+   */
+  public void clear() {
+    synchronized (loadLock) {
+      synchronized (lock) {
+        entries.clear();
+        preloaded.clear();
+        totalLength = 0;
+        resourceSet = null;
+      }
+    }
+  }
+
+  /**
+   * Returns the number of resources in this store.
+   * @return the number of resources in this store.
+   */
+  public int size() {
+    synchronized (lock) {
+      return entries.size();
+    }
+  }
+
+  private boolean isEmpty() {
+    synchronized (lock) {
+      return entries.isEmpty();
+    }
+  }
+
+  private void startListeningToWorkspaceChanges() {
+    if (listeningToWorkspaceChanges) {
+      return;
+    }
+    synchronized (this) {
+      if (!listeningToWorkspaceChanges) {
+        workspaceChanges.addListener(new ProtoFileChangeListener());
+        listeningToWorkspaceChanges = true;
+      }
+    }
+  }
+
+  private static class SharedEntry {
+    final URI uri;
+    final Resource resource;
+    final int length;
+    final Set<String> importedFileNames;
+    final Set<ResourceSet> requesters = Collections.newSetFromMap(new WeakHashMap<ResourceSet, Boolean>());
+    final Set<SharedEntry> imports = new HashSet<>();
+    final Set<SharedEntry> importers = new HashSet<>();
+    boolean linked;
+
+    SharedEntry(URI uri, Resource resource, int length, Set<String> importedFileNames) {
+      this.uri = uri;
+      this.resource = resource;
+      this.length = length;
+      this.importedFileNames = importedFileNames;
+    }
+
+    boolean isInUse() {
+      return !importers.isEmpty() || !requesters.isEmpty();
+    }
+  }
+
+  private class ProtoFileChangeListener implements IResourceChangeListener {
+    @Override public void resourceChanged(IResourceChangeEvent event) {
+      IResourceDelta delta = event.getDelta();
+      if (delta == null || isEmpty()) {
+        return;
+      }
+      final List<URI> changed = new ArrayList<>();
+      final List<String> added = new ArrayList<>();
+      try {
+        delta.accept(new IResourceDeltaVisitor() {
+          @Override public boolean visit(IResourceDelta delta) {
+            IResource resource = delta.getResource();
+            if (resource.getType() != IResource.FILE) {
+              return true;
+            }
+            if (!"proto".equals(resource.getFileExtension())) {
+              return false;
+            }
+            boolean contentChanged = (delta.getFlags() & IResourceDelta.CONTENT) != 0;
+            if (delta.getKind() == IResourceDelta.ADDED) {
+              added.add(resource.getName());
+            } else if (delta.getKind() == IResourceDelta.REMOVED || contentChanged) {
+              changed.add(URI.createPlatformResourceURI(resource.getFullPath().toString(), true));
+            }
+            return false;
+          }
+        });
+      } catch (CoreException e) {
+        clear();
+        return;
+      }
+      for (URI uri : changed) {
+        evict(uri);
+      }
+      for (String fileName : added) {
+        evictImportersOf(fileName);
+      }
+    }
+  }
+}
@@ -0,0 +1,352 @@
+/*
+ * Copyright (c) 2016 Google Inc.
+ *
+ * All rights reserved. This program and the accompanying materials are made available under the terms of the Eclipse
+ * Public License v1.0 which accompanies this distribution, and is available at
+ *
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package com.google.eclipse.protobuf.ui.scoping;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.nio.file.FileVisitResult.CONTINUE;
+import static java.nio.file.FileVisitResult.TERMINATE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+import static org.eclipse.core.runtime.Status.CANCEL_STATUS;
+import static org.eclipse.core.runtime.Status.OK_STATUS;
+import static org.eclipse.xtext.util.Strings.isEmpty;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.net.URISyntaxException;
+import java.nio.file.FileVisitOption;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.apache.log4j.Logger;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.SubMonitor;
+import org.eclipse.core.runtime.jobs.Job;
+import org.eclipse.emf.common.util.URI;
+import org.eclipse.emf.ecore.resource.Resource;
+import org.eclipse.xtext.resource.XtextResourceSet;
+
+import com.google.common.base.Function;
+import com.google.eclipse.protobuf.resource.BinaryResourceStorage;
+import com.google.eclipse.protobuf.resource.ContentHashes;
+import com.google.eclipse.protobuf.ui.internal.ProtobufActivator;
+import com.google.eclipse.protobuf.ui.preferences.paths.DirectoryPath;
+import com.google.eclipse.protobuf.ui.preferences.paths.PathsPreferences;
+import com.google.eclipse.protobuf.ui.preferences.paths.PathsPreferencesCache;
+import com.google.eclipse.protobuf.ui.resource.ResourceLoadFailures;
+import com.google.inject.Inject;
+import com.google.inject.Provider;
+import com.google.inject.Singleton;
+
+/**
+ * Persisted index of the .proto files under the import roots that are outside of the workspace.
+ * <p>
+ * A background job reads the index saved in a previous session, walks each import root, and parses only the files
+ * whose contents changed since they were indexed, or that are not in binary storage yet. Parsing a file also stores it
+ * in binary form, so resolving imports from these roots does not need to parse them again. For each file, the index
+ * keeps its modification time, size and hash. The index is saved in the state location of this plug-in when the job
+ * finishes.
+ * </p>
+ * <p>
+ * The job runs the first time an import is resolved against an import root outside of the workspace, and again
+ * whenever the "paths" preferences change. Import resolution uses the index to find files without checking the file
+ * system. A file missing from an import root that was fully walked is known to be absent for
+ * {@value #ABSENCE_EXPIRATION_SECONDS} seconds after the walk started; afterwards, looking it up schedules a refresh,
+ * and the file is looked up in the file system meanwhile (e.g. because it was added after the last refresh.) Walking
+ * an import root stops after {@value #MAXIMUM_VISITED_ENTRIES} files and folders, so very large roots are only
+ * partially indexed, and files missing from them are always looked up in the file system.
+ * </p>
+ * <p>
+ * An import root without a saved index is first initialized from the file {@value #PREBUILT_INDEX_FILE_NAME} at its
+ * top level, if present, so teams can ship an index of a vendored tree of .proto files, generated offline in the
+ * format described in <code>{@link ImportRootIndexFile}</code>.
+ * </p>
+ */
+@Singleton public class ExternalImportRootIndex {
+  static final String PREBUILT_INDEX_FILE_NAME = "protobuf-dt.index";
+
+  private static final int ABSENCE_EXPIRATION_SECONDS = 60;
+  private static final String INDEX_DIRECTORY_NAME = "import-root-indices";
+  private static final int MAXIMUM_VISITED_ENTRIES = 50000;
+  private static final String PROTO_FILE_EXTENSION = ".proto";
+
+  private static Logger logger = Logger.getLogger(ExternalImportRootIndex.class);
+
+  @Inject private PathsPreferencesCache pathsPreferences;
+  @Inject private FileSystemPathResolver pathResolver;
+  @Inject private Provider<XtextResourceSet> resourceSetProvider;
+  @Inject private ContentHashes contentHashes;
+  @Inject private BinaryResourceStorage binaryStorage;
+  @Inject private ImportResolver importResolver;
+  @Inject private ResourceLoadFailures resourceLoadFailures;
+
+  private final Map<String, RootIndex> indices = new ConcurrentHashMap<>();
+  private final AtomicBoolean refreshScheduled = new AtomicBoolean();
+  private final Job job = new Job("Indexing import roots") {
+    @Override protected IStatus run(IProgressMonitor monitor) {
+      return refresh(monitor);
+    }
+  };
+
+  public ExternalImportRootIndex() {
+    job.setSystem(true);
+    job.setPriority(Job.DECORATE);
+  }
+
+  /**
+   * Schedules refreshing the index of every import root outside of the workspace. Can be called as often as needed;
+   * only one refresh runs at a time.
+   */
+  public void scheduleRefresh() {
+    refreshScheduled.set(true);
+    job.cancel();
+    job.schedule();
+  }
+
+  /**
+   * Indicates whether the given import root contains the file with the given path, according to the index. The first
+   * call schedules refreshing the index.
+   * @param rootPath the absolute path of the import root, as resolved by {@code FileSystemPathResolver}.
+   * @param relativePath the path of the file, relative to the import root.
+   * @return {@code true} if the file is indexed, {@code false} if the import root was fully walked recently and the
+   * file was not found, or {@code null} if the index cannot tell.
+   */
+  public Boolean contains(String rootPath, String relativePath) {
+    if (refreshScheduled.compareAndSet(false, true)) {
+      job.schedule();
+    }
+    RootIndex index = indices.get(rootPath);
+    if (index == null) {
+      return null;
+    }
+    if (index.files.containsKey(relativePath)) {
+      return true;
+    }
+    if (!index.complete) {
+      return null;
+    }
+    if (System.nanoTime() - index.walkStarted > SECONDS.toNanos(ABSENCE_EXPIRATION_SECONDS)) {
+      // Does not cancel a refresh in progress, unlike scheduleRefresh().
+      job.schedule();
+      return null;
+    }
+    return false;
+  }
+
+  private IStatus refresh(IProgressMonitor monitor) {
+    Set<String> roots = externalImportRoots();
+    SubMonitor progress = SubMonitor.convert(monitor, roots.size());
+    boolean changed = false;
+    try {
+      for (String root : roots) {
+        if (progress.isCanceled()) {
+          return CANCEL_STATUS;
+        }
+        try {
+          changed |= refresh(root, progress.newChild(1));
+        } catch (IOException | URISyntaxException | RuntimeException e) {
+          logger.error("Unable to index " + root, e);
+        }
+      }
+      indices.keySet().retainAll(roots);
+      return OK_STATUS;
+    } finally {
+      if (changed) {
+        // Files outside of the workspace are not watched; the index is the only way to notice new files there, which
+        // may shadow the files imports resolved to, or be the files missing imports refer to.
+        importResolver.invalidateAll();
+        resourceLoadFailures.clear();
+      }
+    }
+  }
+
+  private Set<String> externalImportRoots() {
+    final Set<String> roots = new LinkedHashSet<>();
+    for (PathsPreferences preferences : pathsPreferences.preferencesOfAllProjects()) {
+      if (!preferences.areFilesInMultipleDirectories()) {
+        continue;
+      }
+      preferences.applyToEachDirectoryPath(new Function<DirectoryPath, Void>() {
+        @Override public Void apply(DirectoryPath path) {
+          if (!path.isWorkspacePath()) {
+            String resolved = pathResolver.resolvePath(path.value());
+            if (!isEmpty(resolved)) {
+              roots.add(resolved);
+            }
+          }
+          return null;
+        }
+      });
+    }
+    return roots;
+  }
+
+  private boolean refresh(String root, IProgressMonitor monitor) throws IOException, URISyntaxException {
+    // The resolved path is the path of a file URI (e.g. "/C:/protos/" in Windows.)
+    Path rootDirectory = Paths.get(new java.net.URI("file", null, root, null));
+    RootIndex previousIndex = indices.get(root);
+    Map<String, IndexedProtoFile> previous =
+        (previousIndex != null) ? previousIndex.files : loadIndex(rootDirectory, savedIndexFileOf(root));
+    long walkStarted = System.nanoTime();
+    Map<String, Path> files = new HashMap<>();
+    boolean complete = protoFilesUnder(rootDirectory, files);
+    SubMonitor progress = SubMonitor.convert(monitor, files.size());
+    Map<String, IndexedProtoFile> current = new LinkedHashMap<>();
+    XtextResourceSet resourceSet = resourceSetProvider.get();
+    boolean changed = previous.size() != files.size();
+    for (Map.Entry<String, Path> entry : files.entrySet()) {
+      if (progress.isCanceled()) {
+        return changed;
+      }
+      String relativePath = entry.getKey();
+      IndexedProtoFile indexed = previous.get(relativePath);
+      IndexedProtoFile refreshed = refresh(relativePath, entry.getValue(), indexed, resourceSet);
+      if (refreshed != null) {
+        current.put(relativePath, refreshed);
+        changed |= (refreshed != indexed);
+      }
+      progress.worked(1);
+    }
+    indices.put(root, new RootIndex(Collections.unmodifiableMap(current), complete, walkStarted));
+    Path savedIndexFile = savedIndexFileOf(root);
+    if (changed && savedIndexFile != null) {
+      save(current, savedIndexFile);
+    }
+    return changed;
+  }
+
+  private IndexedProtoFile refresh(String relativePath, Path file, IndexedProtoFile indexed,
+      XtextResourceSet resourceSet) {
+    try {
+      BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+      long lastModified = attributes.lastModifiedTime().toMillis();
+      long size = attributes.size();
+      boolean sameAttributes = indexed != null && indexed.lastModified() == lastModified && indexed.size() == size;
+      String hash = sameAttributes ? indexed.hash() : contentHashes.hashOf(new String(Files.readAllBytes(file), UTF_8));
+      // Files indexed elsewhere (e.g. in a prebuilt index) or whose stored form expired still need to be parsed once.
+      if (indexed != null && indexed.hash().equals(hash) && isInBinaryStorage(file, hash, resourceSet)) {
+        return sameAttributes ? indexed : indexed.withAttributes(lastModified, size);
+      }
+      return parse(relativePath, file, lastModified, size, hash, resourceSet);
+    } catch (IOException | RuntimeException e) {
+      logger.debug("Unable to index " + file, e);
+      return null;
+    }
+  }
+
+  private boolean isInBinaryStorage(Path file, String hash, XtextResourceSet resourceSet) {
+    URI uri = resourceSet.getURIConverter().normalize(URI.createFileURI(file.toString()));
+    return !binaryStorage.isAvailableFor(uri) || binaryStorage.isStored(uri, hash);
+  }
+
+  private IndexedProtoFile parse(String relativePath, Path file, long lastModified, long size, String hash,
+      XtextResourceSet resourceSet) {
+    // Loading the file parses it and stores it in binary form.
+    Resource resource = resourceSet.getResource(URI.createFileURI(file.toString()), true);
+    try {
+      return new IndexedProtoFile(relativePath, lastModified, size, hash);
+    } finally {
+      resource.unload();
+      resourceSet.getResources().remove(resource);
+    }
+  }
+
+  /*
+   * Adds the .proto files under the given directory to the given map, by relative path. Returns whether the whole
+   * directory was walked.
+   */
+  private static boolean protoFilesUnder(final Path rootDirectory, final Map<String, Path> files) throws IOException {
+    final int[] visitedEntries = { 0 };
+    Files.walkFileTree(rootDirectory, EnumSet.of(FileVisitOption.FOLLOW_LINKS), Integer.MAX_VALUE,
+        new SimpleFileVisitor<Path>() {
+          @Override public FileVisitResult preVisitDirectory(Path directory, BasicFileAttributes attributes) {
+            return (visitedEntries[0]++ < MAXIMUM_VISITED_ENTRIES) ? CONTINUE : TERMINATE;
+          }
+
+          @Override public FileVisitResult visitFile(Path file, BasicFileAttributes attributes) {
+            if (visitedEntries[0]++ >= MAXIMUM_VISITED_ENTRIES) {
+              return TERMINATE;
+            }
+            if (file.getFileName().toString().endsWith(PROTO_FILE_EXTENSION)) {
+              files.put(rootDirectory.relativize(file).toString().replace('\\', '/'), file);
+            }
+            return CONTINUE;
+          }
+
+          @Override public FileVisitResult visitFileFailed(Path file, IOException e) {
+            return CONTINUE;
+          }
+        });
+    return visitedEntries[0] <= MAXIMUM_VISITED_ENTRIES;
+  }
+
+  private static Map<String, IndexedProtoFile> loadIndex(Path rootDirectory, Path savedIndexFile) {
+    for (Path indexFile : new Path[] { savedIndexFile, rootDirectory.resolve(PREBUILT_INDEX_FILE_NAME) }) {
+      if (indexFile == null || !Files.isRegularFile(indexFile)) {
+        continue;
+      }
+      try (Reader reader = Files.newBufferedReader(indexFile, UTF_8)) {
+        return ImportRootIndexFile.read(reader);
+      } catch (IOException e) {
+        logger.warn("Ignoring index " + indexFile, e);
+      }
+    }
+    return Collections.emptyMap();
+  }
+
+  private void save(Map<String, IndexedProtoFile> files, Path indexFile) {
+    try {
+      Files.createDirectories(indexFile.getParent());
+      Path temporaryFile = Files.createTempFile(indexFile.getParent(), null, null);
+      try (Writer writer = Files.newBufferedWriter(temporaryFile, UTF_8)) {
+        ImportRootIndexFile.write(files.values(), writer);
+      }
+      Files.move(temporaryFile, indexFile, REPLACE_EXISTING);
+    } catch (IOException e) {
+      logger.error("Unable to save index " + indexFile, e);
+    }
+  }
+
+  private Path savedIndexFileOf(String root) {
+    ProtobufActivator activator = ProtobufActivator.getInstance();
+    if (activator == null) {
+      return null;
+    }
+    Path directory = activator.getStateLocation().append(INDEX_DIRECTORY_NAME).toFile().toPath();
+    return directory.resolve(contentHashes.hashOf(root) + ".index");
+  }
+
+  private static class RootIndex {
+    final Map<String, IndexedProtoFile> files;
+    final boolean complete;
+    final long walkStarted;
+
+    RootIndex(Map<String, IndexedProtoFile> files, boolean complete, long walkStarted) {
+      this.files = files;
+      this.complete = complete;
+      this.walkStarted = walkStarted;
+    }
+  }
+}
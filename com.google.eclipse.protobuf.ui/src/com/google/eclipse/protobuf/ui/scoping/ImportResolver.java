@@ -8,46 +8,102 @@
  */
 package com.google.eclipse.protobuf.ui.scoping;
 
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Objects;
+import com.google.common.base.Ticker;
+import com.google.common.cache.Cache;
 import com.google.common.cache.CacheBuilder;
 import com.google.common.cache.CacheLoader;
+import com.google.common.cache.CacheStats;
 import com.google.common.cache.LoadingCache;
 import com.google.eclipse.protobuf.model.util.Imports;
 import com.google.eclipse.protobuf.protobuf.Import;
+import com.google.eclipse.protobuf.resource.WorkspaceChangeDispatcher;
 import com.google.eclipse.protobuf.scoping.IImportResolver;
 import com.google.eclipse.protobuf.scoping.IUriResolver;
 import com.google.eclipse.protobuf.scoping.ProtoDescriptorProvider;
 import com.google.eclipse.protobuf.util.EResources;
 import com.google.eclipse.protobuf.util.Uris;
 import com.google.inject.Inject;
+import com.google.inject.Singleton;
 
 import org.eclipse.core.resources.IProject;
+import org.eclipse.core.resources.IResource;
+import org.eclipse.core.resources.IResourceChangeEvent;
+import org.eclipse.core.resources.IResourceChangeListener;
+import org.eclipse.core.resources.IResourceDelta;
+import org.eclipse.core.resources.IResourceDeltaVisitor;
+import org.eclipse.core.runtime.CoreException;
 import org.eclipse.emf.common.util.URI;
 import org.eclipse.emf.ecore.resource.Resource;
 
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Resolves "import" URIs.
+ * <p>
+ * Resolved URIs are cached by project, directory of the importing file and import path, so all the files in the same
+ * directory importing the same path share the same entry. The cache is bounded and records statistics, available
+ * through <code>{@link #cacheStats()}</code>. Resolved URIs are forgotten when the import is validated again, and when
+ * <code>{@link #invalidateAll()}</code> is called, since adding a file may shadow the resolved one and removing a file
+ * may leave the import resolving elsewhere (or not at all.)
+ * </p>
+ * <p>
+ * Imports that cannot be resolved are remembered as well, so they are not resolved again on every scope request or
+ * validation pass. They are forgotten when .proto files or projects are added to or removed from the workspace, when
+ * the import is validated again, or when <code>{@link #invalidateAll()}</code> is called (e.g. when the import paths
+ * change.) Since not every change is noticed (e.g. files outside of the workspace,) they are also forgotten
+ * {@value #UNRESOLVED_IMPORT_EXPIRATION_SECONDS} seconds after the import failed to resolve. The number of resolutions
+ * that were not attempted again is available through <code>{@link #suppressedRetries()}</code>.
+ * </p>
+ * <p>
+ * The epoch of this resolver changes when an import resolves differently after its cached result is invalidated, and
+ * when .proto files or projects are added to or removed from the workspace. Validating an import whose resolution did
+ * not change leaves the epoch as it is, so results derived from resolved imports stay cached.
+ * </p>
  *
  * @author alruiz@google.com (Alex Ruiz)
  */
-public class ImportResolver implements IImportResolver {
+@Singleton public class ImportResolver implements IImportResolver {
+  private static final int MAXIMUM_CACHE_SIZE = 10000;
+  private static final int UNRESOLVED_IMPORT_EXPIRATION_SECONDS = 30;
+
   @Inject private ProtoDescriptorProvider descriptorProvider;
   @Inject private Imports imports;
   @Inject private IUriResolver resolver;
   @Inject private Uris uris;
+  @Inject private WorkspaceChangeDispatcher workspaceChanges;
 
-  private LoadingCache<Import, String> cache =
-      CacheBuilder.newBuilder().build(new CacheLoader<Import, String>() {
-        @Override
-        public String load(Import key) throws Exception {
-          String result = internalResolveUri(key);
-          if (result == null) {
-            throw new Exception("Unable to resolve import: " + imports.getPath(key));
-          }
-          return result;
-        }
-      });
+  private final AtomicLong epoch = new AtomicLong();
+  private final AtomicLong suppressedRetries = new AtomicLong();
+  private volatile boolean listeningToWorkspaceChanges;
+
+  private final Cache<ImportKey, Boolean> unresolved;
+
+  private final LoadingCache<ImportKey, String> cache =
+      CacheBuilder.newBuilder().maximumSize(MAXIMUM_CACHE_SIZE).recordStats().build(
+          new CacheLoader<ImportKey, String>() {
+            @Override
+            public String load(ImportKey key) throws Exception {
+              String result = resolveUri(key.importPath, key.declaringResourceUri, key.project);
+              if (result == null) {
+                throw new Exception("Unable to resolve import: " + key.importPath);
+              }
+              return result;
+            }
+          });
+
+  public ImportResolver() {
+    this(Ticker.systemTicker());
+  }
+
+  @VisibleForTesting ImportResolver(Ticker ticker) {
+    unresolved = CacheBuilder.newBuilder().maximumSize(MAXIMUM_CACHE_SIZE)
+        .expireAfterWrite(UNRESOLVED_IMPORT_EXPIRATION_SECONDS, SECONDS).ticker(ticker).build();
+  }
 
   /*
    * The import URI is relative to the file where the import is. Protoc works fine, but the editor doesn't.
@@ -65,31 +121,160 @@ public class ImportResolver implements IImportResolver {
    * We need to have the import URI as "platform:/resource/protobuf-test/folder/proto2.proto" for the editor to see it.
    */
   @Override public String resolve(Import anImport) {
+    startListeningToWorkspaceChanges();
+    ImportKey key = keyOf(anImport);
+    if (unresolved.getIfPresent(key) != null) {
+      suppressedRetries.incrementAndGet();
+      return null;
+    }
     try {
-      return cache.get(anImport);
+      return cache.get(key);
     } catch (ExecutionException e) {
+      unresolved.put(key, true);
       return null;
     }
   }
 
-  private String internalResolveUri(Import anImport) {
-    return resolveUri(imports.getPath(anImport), anImport.eResource());
-  }
-
-  private String resolveUri(String importUri, Resource resource) {
-    URI location =
-        descriptorProvider.descriptorLocation(EResources.getProjectOf(resource), importUri);
+  private String resolveUri(String importUri, URI resourceUri, IProject project) {
+    URI location = descriptorProvider.descriptorLocation(project, importUri);
     if (location != null) {
       return location.toString();
     }
-
-    URI resourceUri = resource.getURI();
-    IProject project = uris.projectOfReferredFile(resourceUri);
-    return resolver.resolveUri(importUri, resourceUri, project);
+    return resolver.resolveUri(importUri, resourceUri, uris.projectOfReferredFile(resourceUri));
   }
 
   @Override
   public void invalidateCacheFor(Import anImport) {
-    cache.invalidate(anImport);
+    ImportKey key = keyOf(anImport);
+    String previous = cache.getIfPresent(key);
+    boolean wasUnresolved = unresolved.getIfPresent(key) != null;
+    cache.invalidate(key);
+    unresolved.invalidate(key);
+    if (previous == null && !wasUnresolved) {
+      // nothing is known about how the import resolved before.
+      epoch.incrementAndGet();
+      return;
+    }
+    if (!Objects.equal(previous, resolve(anImport))) {
+      epoch.incrementAndGet();
+    }
+  }
+
+  /**
+   * Forgets all the resolved and unresolved imports, so they are resolved again the next time they are needed, and
+   * changes the epoch of this resolver.
+   */
+  public void invalidateAll() {
+    cache.invalidateAll();
+    unresolved.invalidateAll();
+    epoch.incrementAndGet();
+  }
+
+  @Override public long epoch() {
+    return epoch.get();
+  }
+
+  private void startListeningToWorkspaceChanges() {
+    if (listeningToWorkspaceChanges) {
+      return;
+    }
+    synchronized (this) {
+      if (!listeningToWorkspaceChanges) {
+        workspaceChanges.addListener(new WorkspaceChangeListener());
+        listeningToWorkspaceChanges = true;
+      }
+    }
+  }
+
+  private ImportKey keyOf(Import anImport) {
+    Resource resource = anImport.eResource();
+    return new ImportKey(EResources.getProjectOf(resource), resource.getURI(), imports.getPath(anImport));
+  }
+
+  /**
+   * Returns the statistics of the cache of resolved URIs: hits, misses, and evictions.
+   * @return the statistics of the cache of resolved URIs.
+   */
+  public CacheStats cacheStats() {
+    return cache.stats();
+  }
+
+  /**
+   * Returns the number of times resolving an import was not attempted because it was known to fail.
+   * @return the number of times resolving an import was not attempted because it was known to fail.
+   */
+  public long suppressedRetries() {
+    return suppressedRetries.get();
+  }
+
+  /**
+   * Identifies an import by the project and directory of the importing file, and the imported path. The URI of the
+   * importing file is only used to resolve the import; any file in the same directory resolves it to the same URI.
+   */
+  private static class ImportKey {
+    final IProject project;
+    final URI declaringResourceUri;
+    final URI directory;
+    final String importPath;
+
+    ImportKey(IProject project, URI declaringResourceUri, String importPath) {
+      this.project = project;
+      this.declaringResourceUri = declaringResourceUri;
+      this.directory = declaringResourceUri.trimSegments(1);
+      this.importPath = importPath;
+    }
+
+    @Override public boolean equals(Object obj) {
+      if (this == obj) {
+        return true;
+      }
+      if (!(obj instanceof ImportKey)) {
+        return false;
+      }
+      ImportKey other = (ImportKey) obj;
+      return Objects.equal(project, other.project) && directory.equals(other.directory)
+          && Objects.equal(importPath, other.importPath);
+    }
+
+    @Override public int hashCode() {
+      return Objects.hashCode(project, directory, importPath);
+    }
+  }
+
+  private class WorkspaceChangeListener implements IResourceChangeListener {
+    @Override public void resourceChanged(IResourceChangeEvent event) {
+      IResourceDelta delta = event.getDelta();
+      if (delta == null) {
+        return;
+      }
+      final boolean[] importsMayResolveDifferently = { false };
+      try {
+        delta.accept(new IResourceDeltaVisitor() {
+          @Override public boolean visit(IResourceDelta delta) {
+            if (importsMayResolveDifferently[0]) {
+              return false;
+            }
+            IResource resource = delta.getResource();
+            int kind = delta.getKind();
+            boolean addedOrRemoved = kind == IResourceDelta.ADDED || kind == IResourceDelta.REMOVED;
+            if (resource.getType() == IResource.FILE) {
+              importsMayResolveDifferently[0] = addedOrRemoved && "proto".equals(resource.getFileExtension());
+              return false;
+            }
+            if (resource.getType() == IResource.PROJECT
+                && (addedOrRemoved || (delta.getFlags() & IResourceDelta.OPEN) != 0)) {
+              importsMayResolveDifferently[0] = true;
+              return false;
+            }
+            return true;
+          }
+        });
+      } catch (CoreException e) {
+        importsMayResolveDifferently[0] = true;
+      }
+      if (importsMayResolveDifferently[0]) {
+        invalidateAll();
+      }
+    }
   }
 }
@@ -0,0 +1,333 @@
+/*
+ * Copyright (c) 2016 Google Inc.
+ *
+ * All rights reserved. This program and the accompanying materials are made available under the terms of the Eclipse
+ * Public License v1.0 which accompanies this distribution, and is available at
+ *
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package com.google.eclipse.protobuf.ui.scoping;
+
+import static java.util.concurrent.TimeUnit.MINUTES;
+
+import static org.eclipse.core.runtime.Status.CANCEL_STATUS;
+import static org.eclipse.core.runtime.Status.OK_STATUS;
+import static org.eclipse.xtext.util.Strings.isEmpty;
+
+import static com.google.eclipse.protobuf.util.Workspaces.workspaceRoot;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+
+import org.apache.log4j.Logger;
+import org.eclipse.core.resources.IContainer;
+import org.eclipse.core.resources.IResource;
+import org.eclipse.core.resources.IResourceChangeEvent;
+import org.eclipse.core.resources.IResourceChangeListener;
+import org.eclipse.core.resources.IResourceDelta;
+import org.eclipse.core.resources.IResourceDeltaVisitor;
+import org.eclipse.core.resources.IResourceProxy;
+import org.eclipse.core.resources.IResourceProxyVisitor;
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IPath;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.jobs.Job;
+
+import com.google.common.base.Optional;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+import com.google.eclipse.protobuf.resource.WorkspaceChangeDispatcher;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+
+/**
+ * Index of the .proto files under the directories configured as import roots.
+ * <p>
+ * Each import root in the workspace is scanned in the background the first time an import is resolved against it, and
+ * kept up to date from resource deltas afterwards. Once scanned, checking whether the root contains a file is a hash
+ * lookup instead of a workspace access. Import roots in the file system cannot be tracked that way; they are indexed
+ * by <code>{@link ExternalImportRootIndex}</code>, which is refreshed in the background; files missing from a root it
+ * walked fully and recently are known to be absent.
+ * </p>
+ * <p>
+ * Only .proto files are indexed. Lookups of any other path, of paths that are not plain relative paths, against roots
+ * that are still being scanned, or against workspace roots with more than {@value #MAXIMUM_VISITED_ENTRIES} files and
+ * folders, return {@code null} and callers are expected to check the file directly.
+ * </p>
+ */
+@Singleton public class ImportRootIndex {
+  private static final int DIRECTORY_RESOLUTION_EXPIRATION_MINUTES = 5;
+  private static final int MAXIMUM_VISITED_ENTRIES = 50000;
+  private static final String PROTO_FILE_EXTENSION = ".proto";
+
+  private static Logger logger = Logger.getLogger(ImportRootIndex.class);
+
+  @Inject private FileSystemPathResolver pathResolver;
+  @Inject private ExternalImportRootIndex externalImportRootIndex;
+  @Inject private WorkspaceChangeDispatcher workspaceChanges;
+
+  private final Map<IPath, Optional<Set<String>>> workspaceDirectories = new ConcurrentHashMap<>();
+  private final Map<IPath, Job> workspaceDirectoryScans = new ConcurrentHashMap<>();
+  private final LoadingCache<String, Optional<FileSystemDirectory>> fileSystemDirectories =
+      CacheBuilder.newBuilder().expireAfterWrite(DIRECTORY_RESOLUTION_EXPIRATION_MINUTES, MINUTES).build(
+          new CacheLoader<String, Optional<FileSystemDirectory>>() {
+            @Override public Optional<FileSystemDirectory> load(String path) {
+              String resolved = pathResolver.resolvePath(path);
+              if (isEmpty(resolved)) {
+                return Optional.absent();
+              }
+              return Optional.of(new FileSystemDirectory(resolved, externalImportRootIndex));
+            }
+          });
+
+  private volatile boolean listeningToWorkspaceChanges;
+
+  /**
+   * Indicates whether the given directory in the workspace contains the file with the given relative path. The first
+   * lookup in a directory schedules scanning it.
+   * @param directoryPath the full path of the directory in the workspace.
+   * @param relativePath the path of the file, relative to the given directory.
+   * @return whether the given directory contains the file, or {@code null} if the index cannot tell.
+   */
+  public Boolean isInWorkspaceDirectory(IPath directoryPath, String relativePath) {
+    if (!isIndexable(relativePath)) {
+      return null;
+    }
+    startListeningToWorkspaceChanges();
+    Optional<Set<String>> files = workspaceDirectories.get(directoryPath);
+    if (files == null) {
+      scheduleScan(directoryPath);
+      return null;
+    }
+    return files.isPresent() ? files.get().contains(relativePath) : null;
+  }
+
+  /**
+   * Returns the index of the given directory in the file system.
+   * @param path the path of the directory, as configured by the user.
+   * @return the index of the given directory, or {@code null} if the given path does not refer to a directory.
+   */
+  public FileSystemDirectory fileSystemDirectory(String path) {
+    if (isEmpty(path)) {
+      return null;
+    }
+    try {
+      return fileSystemDirectories.get(path).orNull();
+    } catch (ExecutionException e) {
+      return null;
+    }
+  }
+
+  /**
+   * Discards the index of every import root in the workspace, and the resolved paths of import roots in the file
+   * system.
+   */
+  public void clear() {
+    workspaceDirectoryScans.clear();
+    workspaceDirectories.clear();
+    fileSystemDirectories.invalidateAll();
+  }
+
+  private static boolean isIndexable(String relativePath) {
+    if (isEmpty(relativePath) || !relativePath.endsWith(PROTO_FILE_EXTENSION)) {
+      return false;
+    }
+    if (relativePath.startsWith("/") || relativePath.indexOf('\\') >= 0) {
+      return false;
+    }
+    for (String segment : relativePath.split("/")) {
+      if (segment.isEmpty() || segment.equals(".") || segment.equals("..")) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private void scheduleScan(final IPath directoryPath) {
+    if (workspaceDirectoryScans.containsKey(directoryPath)) {
+      return;
+    }
+    Job scan = new Job("Indexing " + directoryPath) {
+      @Override protected IStatus run(IProgressMonitor monitor) {
+        Optional<Set<String>> files = null;
+        try {
+          files = scanWorkspaceDirectory(directoryPath, monitor);
+          return (files == null) ? CANCEL_STATUS : OK_STATUS;
+        } finally {
+          // The scan is discarded if files were added to or removed from the directory meanwhile.
+          if (workspaceDirectoryScans.remove(directoryPath, this) && files != null) {
+            workspaceDirectories.put(directoryPath, files);
+          }
+        }
+      }
+    };
+    if (workspaceDirectoryScans.putIfAbsent(directoryPath, scan) == null) {
+      scan.setSystem(true);
+      scan.setPriority(Job.DECORATE);
+      scan.schedule();
+    }
+  }
+
+  private Optional<Set<String>> scanWorkspaceDirectory(IPath directoryPath, final IProgressMonitor monitor) {
+    final Set<String> files = newConcurrentSet();
+    IResource member = workspaceRoot().findMember(directoryPath);
+    if (!(member instanceof IContainer) || !member.isAccessible()) {
+      return Optional.of(files);
+    }
+    final IPath root = member.getFullPath();
+    final int[] visitedEntries = { 0 };
+    try {
+      member.accept(new IResourceProxyVisitor() {
+        @Override public boolean visit(IResourceProxy proxy) {
+          if (visitedEntries[0]++ >= MAXIMUM_VISITED_ENTRIES || monitor.isCanceled()) {
+            return false;
+          }
+          if (proxy.getType() == IResource.FILE && proxy.getName().endsWith(PROTO_FILE_EXTENSION)) {
+            files.add(proxy.requestFullPath().makeRelativeTo(root).toString());
+          }
+          return true;
+        }
+      }, IResource.NONE);
+    } catch (CoreException e) {
+      logger.error("Unable to index " + directoryPath, e);
+      return Optional.absent();
+    }
+    if (monitor.isCanceled()) {
+      return null;
+    }
+    return (visitedEntries[0] > MAXIMUM_VISITED_ENTRIES) ? Optional.<Set<String>>absent() : Optional.of(files);
+  }
+
+  private static Set<String> newConcurrentSet() {
+    return Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+  }
+
+  private void startListeningToWorkspaceChanges() {
+    if (listeningToWorkspaceChanges) {
+      return;
+    }
+    synchronized (this) {
+      if (!listeningToWorkspaceChanges) {
+        workspaceChanges.addListener(new WorkspaceChangeListener());
+        listeningToWorkspaceChanges = true;
+      }
+    }
+  }
+
+  private void fileAdded(IPath filePath) {
+    discardScansAffectedBy(filePath);
+    for (Map.Entry<IPath, Optional<Set<String>>> entry : workspaceDirectories.entrySet()) {
+      IPath directoryPath = entry.getKey();
+      Optional<Set<String>> files = entry.getValue();
+      if (files.isPresent() && directoryPath.isPrefixOf(filePath)) {
+        files.get().add(filePath.makeRelativeTo(directoryPath).toString());
+      }
+    }
+  }
+
+  private void fileRemoved(IPath filePath) {
+    discardScansAffectedBy(filePath);
+    for (Map.Entry<IPath, Optional<Set<String>>> entry : workspaceDirectories.entrySet()) {
+      IPath directoryPath = entry.getKey();
+      Optional<Set<String>> files = entry.getValue();
+      if (files.isPresent() && directoryPath.isPrefixOf(filePath)) {
+        files.get().remove(filePath.makeRelativeTo(directoryPath).toString());
+      }
+    }
+  }
+
+  private void containerChanged(IPath containerPath) {
+    discardScansAffectedBy(containerPath);
+    for (IPath directoryPath : workspaceDirectories.keySet()) {
+      if (directoryPath.isPrefixOf(containerPath) || containerPath.isPrefixOf(directoryPath)) {
+        workspaceDirectories.remove(directoryPath);
+      }
+    }
+  }
+
+  private void discardScansAffectedBy(IPath path) {
+    for (IPath directoryPath : workspaceDirectoryScans.keySet()) {
+      if (directoryPath.isPrefixOf(path) || path.isPrefixOf(directoryPath)) {
+        workspaceDirectoryScans.remove(directoryPath);
+      }
+    }
+  }
+
+  /**
+   * The index of a directory in the file system.
+   */
+  public static class FileSystemDirectory {
+    private final String path;
+    private final ExternalImportRootIndex index;
+
+    FileSystemDirectory(String path, ExternalImportRootIndex index) {
+      this.path = path;
+      this.index = index;
+    }
+
+    /**
+     * Returns the absolute path of this directory.
+     * @return the absolute path of this directory.
+     */
+    public String path() {
+      return path;
+    }
+
+    /**
+     * Indicates whether this directory contains the file with the given relative path, according to
+     * <code>{@link ExternalImportRootIndex}</code>.
+     * @param relativePath the path of the file, relative to this directory.
+     * @return whether this directory contains the file, or {@code null} if the index cannot tell (e.g. because the
+     * directory was not fully indexed, or was indexed too long ago.)
+     */
+    public Boolean contains(String relativePath) {
+      if (!isIndexable(relativePath)) {
+        return null;
+      }
+      return index.contains(path, relativePath);
+    }
+  }
+
+  private class WorkspaceChangeListener implements IResourceChangeListener {
+    @Override public void resourceChanged(IResourceChangeEvent event) {
+      IResourceDelta delta = event.getDelta();
+      if (delta == null || (workspaceDirectories.isEmpty() && workspaceDirectoryScans.isEmpty())) {
+        return;
+      }
+      try {
+        delta.accept(new IResourceDeltaVisitor() {
+          @Override public boolean visit(IResourceDelta delta) {
+            IResource resource = delta.getResource();
+            int kind = delta.getKind();
+            if (resource.getType() == IResource.FILE) {
+              if (resource.getName().endsWith(PROTO_FILE_EXTENSION)) {
+                if (kind == IResourceDelta.ADDED) {
+                  fileAdded(resource.getFullPath());
+                } else if (kind == IResourceDelta.REMOVED) {
+                  fileRemoved(resource.getFullPath());
+                }
+              }
+              return false;
+            }
+            boolean opened = (delta.getFlags() & IResourceDelta.OPEN) != 0;
+            if (kind == IResourceDelta.ADDED || kind == IResourceDelta.REMOVED || opened) {
+              containerChanged(resource.getFullPath());
+              return false;
+            }
+            return true;
+          }
+        });
+      } catch (CoreException e) {
+        logger.error("Unable to update the index of import roots", e);
+        workspaceDirectoryScans.clear();
+        workspaceDirectories.clear();
+      }
+    }
+  }
+
+}
@@ -0,0 +1,139 @@
+/*
+ * Copyright (c) 2016 Google Inc.
+ *
+ * All rights reserved. This program and the accompanying materials are made available under the terms of the Eclipse
+ * Public License v1.0 which accompanies this distribution, and is available at
+ *
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package com.google.eclipse.protobuf.ui.scoping;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Reads and writes the index of an import root.
+ * <p>
+ * The index is a UTF-8 text file. Its first line is {@value #HEADER}. Each of the following lines is a keyword, a
+ * space and a value. A {@code file} line starts the entry of a file, and the lines after it, up to the next
+ * {@code file} line, describe that file:
+ * <pre>
+ * file google/api/http.proto
+ * modified 1473372000000
+ * size 1042
+ * hash 8b4f5c2e0d1a9f3b6c7d8e9f0a1b2c3d
+ * </pre>
+ * {@code file} takes the path of the file relative to the import root, with '/' as separator. {@code hash} is the
+ * murmur3 128-bit hash of the contents of the file encoded as UTF-8, as printed by Guava's
+ * {@code Hashing.murmur3_128().hashString(contents, UTF_8).toString()}. {@code modified} (in
+ * milliseconds since the epoch) is optional; files with an unknown modification time are validated against their
+ * hash. Lines with any other keyword are ignored, so the format can be extended. Empty lines and lines starting with
+ * '#' are ignored as well, so an index of a vendored tree of .proto files can be generated offline with any tool.
+ * </p>
+ */
+final class ImportRootIndexFile {
+  static final String HEADER = "protobuf-dt-index 1";
+
+  static Map<String, IndexedProtoFile> read(Reader reader) throws IOException {
+    Map<String, IndexedProtoFile> files = new LinkedHashMap<>();
+    BufferedReader in = new BufferedReader(reader);
+    String line = in.readLine();
+    if (line == null || !HEADER.equals(line.trim())) {
+      throw new IOException("Unsupported index format: " + line);
+    }
+    EntryBuilder entry = null;
+    while ((line = in.readLine()) != null) {
+      line = line.trim();
+      if (line.isEmpty() || line.startsWith("#")) {
+        continue;
+      }
+      int separator = line.indexOf(' ');
+      if (separator < 0) {
+        throw new IOException("Malformed line in index: " + line);
+      }
+      String keyword = line.substring(0, separator);
+      String value = line.substring(separator + 1).trim();
+      if (keyword.equals("file")) {
+        add(entry, files);
+        entry = new EntryBuilder(value);
+        continue;
+      }
+      if (entry == null) {
+        throw new IOException("Line outside of a file entry: " + line);
+      }
+      try {
+        entry.set(keyword, value);
+      } catch (NumberFormatException e) {
+        throw new IOException("Malformed line in index: " + line, e);
+      }
+    }
+    add(entry, files);
+    return files;
+  }
+
+  private static void add(EntryBuilder entry, Map<String, IndexedProtoFile> files) throws IOException {
+    if (entry == null) {
+      return;
+    }
+    if (entry.hash == null) {
+      throw new IOException("File without hash in index: " + entry.relativePath);
+    }
+    files.put(entry.relativePath, entry.build());
+  }
+
+  static void write(Iterable<IndexedProtoFile> files, Writer out) throws IOException {
+    out.write(HEADER);
+    out.write('\n');
+    for (IndexedProtoFile file : files) {
+      writeLine(out, "file", file.relativePath());
+      writeLine(out, "modified", String.valueOf(file.lastModified()));
+      writeLine(out, "size", String.valueOf(file.size()));
+      writeLine(out, "hash", file.hash());
+    }
+    out.flush();
+  }
+
+  private static void writeLine(Writer out, String keyword, String value) throws IOException {
+    out.write(keyword);
+    out.write(' ');
+    out.write(value);
+    out.write('\n');
+  }
+
+  private static class EntryBuilder {
+    final String relativePath;
+    long lastModified;
+    long size = -1;
+    String hash;
+
+    EntryBuilder(String relativePath) {
+      this.relativePath = relativePath;
+    }
+
+    void set(String keyword, String value) {
+      switch (keyword) {
+        case "modified":
+          lastModified = Long.parseLong(value);
+          break;
+        case "size":
+          size = Long.parseLong(value);
+          break;
+        case "hash":
+          hash = value;
+          break;
+        default:
+          // Ignore unknown keywords, to allow extending the format.
+      }
+    }
+
+    IndexedProtoFile build() {
+      return new IndexedProtoFile(relativePath, lastModified, size, hash);
+    }
+  }
+
+  private ImportRootIndexFile() {}
+}
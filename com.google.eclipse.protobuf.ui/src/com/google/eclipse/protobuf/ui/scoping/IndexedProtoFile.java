@@ -0,0 +1,63 @@
+/*
+ * Copyright (c) 2016 Google Inc.
+ *
+ * All rights reserved. This program and the accompanying materials are made available under the terms of the Eclipse
+ * Public License v1.0 which accompanies this distribution, and is available at
+ *
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package com.google.eclipse.protobuf.ui.scoping;
+
+/**
+ * What the index of an import root knows about a .proto file under that root.
+ */
+public final class IndexedProtoFile {
+  private final String relativePath;
+  private final long lastModified;
+  private final long size;
+  private final String hash;
+
+  IndexedProtoFile(String relativePath, long lastModified, long size, String hash) {
+    this.relativePath = relativePath;
+    this.lastModified = lastModified;
+    this.size = size;
+    this.hash = hash;
+  }
+
+  IndexedProtoFile withAttributes(long newLastModified, long newSize) {
+    return new IndexedProtoFile(relativePath, newLastModified, newSize, hash);
+  }
+
+  /**
+   * Returns the path of this file, relative to its import root, with '/' as separator.
+   * @return the path of this file, relative to its import root.
+   */
+  public String relativePath() {
+    return relativePath;
+  }
+
+  /**
+   * Returns the modification time of this file when it was indexed, or 0 if unknown.
+   * @return the modification time of this file when it was indexed.
+   */
+  public long lastModified() {
+    return lastModified;
+  }
+
+  /**
+   * Returns the size, in bytes, of this file when it was indexed.
+   * @return the size of this file when it was indexed.
+   */
+  public long size() {
+    return size;
+  }
+
+  /**
+   * Returns the hash of the contents of this file, as computed by
+   * <code>{@link com.google.eclipse.protobuf.resource.ContentHashes#hashOf(CharSequence)}</code>.
+   * @return the hash of the contents of this file.
+   */
+  public String hash() {
+    return hash;
+  }
+}
@@ -8,22 +8,14 @@
  */
 package com.google.eclipse.protobuf.ui.scoping;
 
-import static com.google.eclipse.protobuf.util.Workspaces.workspaceRoot;
-import static java.util.Collections.unmodifiableList;
-
 import com.google.common.collect.ImmutableList;
 import com.google.eclipse.protobuf.scoping.IUriResolver;
 import com.google.eclipse.protobuf.ui.preferences.paths.PathsPreferences;
+import com.google.eclipse.protobuf.ui.preferences.paths.PathsPreferencesCache;
 import com.google.inject.Inject;
 
 import org.eclipse.core.resources.IProject;
-import org.eclipse.core.resources.IWorkspaceRoot;
 import org.eclipse.emf.common.util.URI;
-import org.eclipse.xtext.ui.XtextProjectHelper;
-import org.eclipse.xtext.ui.editor.preferences.IPreferenceStoreAccess;
-
-import java.util.ArrayList;
-import java.util.List;
 
 /**
  * Resolves URIs.
@@ -31,7 +23,7 @@ import java.util.List;
 public class UriResolver implements IUriResolver {
   @Inject private MultipleDirectoriesUriResolver multipleDirectories;
   @Inject private SingleDirectoryUriResolver singleDirectory;
-  @Inject private IPreferenceStoreAccess storeAccess;
+  @Inject private PathsPreferencesCache preferencesCache;
 
   @Override
   public String resolveUri(String importUri, URI declaringResourceUri, IProject project) {
@@ -40,25 +32,12 @@ public class UriResolver implements IUriResolver {
 
   private String resolveUriInternal(String importUri, URI declaringResourceUri, IProject project) {
     if (project == null) {
-      return multipleDirectories.resolveUri(importUri, preferencesFromAllProjects());
+      return multipleDirectories.resolveUri(importUri, preferencesCache.preferencesOfAllProjects());
     }
-    PathsPreferences locations = new PathsPreferences(storeAccess, project);
+    PathsPreferences locations = preferencesCache.preferencesOf(project);
     if (locations.areFilesInMultipleDirectories()) {
       return multipleDirectories.resolveUri(importUri, ImmutableList.of(locations));
     }
     return singleDirectory.resolveUri(importUri, declaringResourceUri);
   }
-
-  private Iterable<PathsPreferences> preferencesFromAllProjects() {
-    List<PathsPreferences> allPreferences = new ArrayList<>();
-    IWorkspaceRoot root = workspaceRoot();
-    for (IProject project : root.getProjects()) {
-      if (project.isHidden() || !project.isAccessible() || !XtextProjectHelper.hasNature(project)) {
-        continue;
-      }
-      PathsPreferences preferences = new PathsPreferences(storeAccess, project);
-      allPreferences.add(preferences);
-    }
-    return unmodifiableList(allPreferences);
-  }
 }
@@ -9,11 +9,12 @@
 package com.google.eclipse.protobuf.ui.scoping;
 
 import static org.eclipse.core.runtime.IPath.SEPARATOR;
-import static org.eclipse.xtext.util.Strings.isEmpty;
 
+import org.eclipse.core.runtime.Path;
 import org.eclipse.emf.common.util.URI;
 
 import com.google.eclipse.protobuf.ui.preferences.paths.DirectoryPath;
+import com.google.eclipse.protobuf.ui.scoping.ImportRootIndex.FileSystemDirectory;
 import com.google.eclipse.protobuf.util.Uris;
 import com.google.inject.Inject;
 import com.google.inject.Singleton;
@@ -24,38 +25,34 @@ import com.google.inject.Singleton;
 @Singleton public class UriResolverHelper {
   private static final String PATH_SEPARATOR = new String(new char[] { SEPARATOR });
 
-  @Inject private FileSystemPathResolver pathResolver;
+  @Inject private ImportRootIndex importRootIndex;
   @Inject private Uris uris;
 
   public String resolveUri(String importUri, DirectoryPath importRootPath) {
-    URI uri = resolveUri(importUri, importRootPath.value(), importRootPath.isWorkspacePath());
-    return resolveUri(uri);
+    if (importRootPath.isWorkspacePath()) {
+      return resolvePlatformResourceUri(importUri, importRootPath.value());
+    }
+    return resolveFileUri(importUri, importRootPath.value());
   }
 
   public String resolveUriInFileSystem(String importUri, String importRootPath) {
-    URI uri = resolveFileUri(importUri, importRootPath);
-    return resolveUri(uri);
-  }
-
-  private URI resolveUri(String importUri, String importRootPath, boolean isWorkspacePath) {
-    if (isWorkspacePath) {
-      return resolvePlatformResourceUri(importUri, importRootPath);
-    }
     return resolveFileUri(importUri, importRootPath);
   }
 
-  private URI resolvePlatformResourceUri(String importUri, String importRootPath) {
+  private String resolvePlatformResourceUri(String importUri, String importRootPath) {
     String path = buildUriPath(importUri, importRootPath);
-    return URI.createPlatformResourceURI(path, true);
+    URI uri = URI.createPlatformResourceURI(path, true);
+    return resolveUri(uri, importRootIndex.isInWorkspaceDirectory(new Path(importRootPath), importUri));
   }
 
-  private URI resolveFileUri(String importUri, String importRootPath) {
-    String resolvedImportRootPath = pathResolver.resolvePath(importRootPath);
-    if (isEmpty(resolvedImportRootPath)) {
+  private String resolveFileUri(String importUri, String importRootPath) {
+    FileSystemDirectory directory = importRootIndex.fileSystemDirectory(importRootPath);
+    if (directory == null) {
       return null;
     }
-    String path = buildUriPath(importUri, resolvedImportRootPath);
-    return URI.createFileURI(path);
+    String path = buildUriPath(importUri, directory.path());
+    URI uri = URI.createFileURI(path);
+    return resolveUri(uri, directory.contains(importUri));
   }
 
   private String buildUriPath(String importUri, String importRootPath) {
@@ -67,7 +64,9 @@ import com.google.inject.Singleton;
     return pathBuilder.toString();
   }
 
-  private String resolveUri(URI uri) {
-    return (uris.referredResourceExists(uri)) ? uri.toString() : null;
+  private String resolveUri(URI uri, Boolean existsInIndex) {
+    // Only check the file system or the workspace if the index of the import root cannot tell whether the file exists.
+    boolean exists = (existsInIndex != null) ? existsInIndex : uris.referredResourceExists(uri);
+    return exists ? uri.toString() : null;
   }
 }
@@ -14,6 +14,9 @@ import com.google.eclipse.protobuf.naming.ProtobufQualifiedNameConverter;
 import com.google.eclipse.protobuf.naming.ProtobufQualifiedNameProvider;
 import com.google.eclipse.protobuf.resource.FastXtextResourceSet;
 import com.google.eclipse.protobuf.resource.GlobalResourceServiceProvider;
+import com.google.eclipse.protobuf.resource.ProtobufLocationInFileProvider;
+import com.google.eclipse.protobuf.resource.ProtobufResourceDescriptionStrategy;
+import com.google.eclipse.protobuf.resource.ProtobufResourceScopeCache;
 import com.google.eclipse.protobuf.scoping.ExtensionRegistryProvider;
 import com.google.eclipse.protobuf.scoping.ProtobufGlobalScopeProvider;
 import com.google.eclipse.protobuf.validation.ProtobufResourceValidator;
@@ -25,10 +28,13 @@ import org.eclipse.xtext.conversion.IValueConverterService;
 import org.eclipse.xtext.naming.IQualifiedNameConverter;
 import org.eclipse.xtext.naming.IQualifiedNameProvider;
 import org.eclipse.xtext.parser.antlr.ISyntaxErrorMessageProvider;
+import org.eclipse.xtext.resource.IDefaultResourceDescriptionStrategy;
 import org.eclipse.xtext.resource.IGlobalServiceProvider;
+import org.eclipse.xtext.resource.ILocationInFileProvider;
 import org.eclipse.xtext.resource.XtextResource;
 import org.eclipse.xtext.resource.XtextResourceSet;
 import org.eclipse.xtext.scoping.IGlobalScopeProvider;
+import org.eclipse.xtext.util.IResourceScopeCache;
 import org.eclipse.xtext.validation.IResourceValidator;
 
 /**
@@ -71,6 +77,18 @@ public class ProtobufRuntimeModule extends AbstractProtobufRuntimeModule {
     return ProtobufGlobalScopeProvider.class;
   }
 
+  public Class<? extends ILocationInFileProvider> bindILocationInFileProvider() {
+    return ProtobufLocationInFileProvider.class;
+  }
+
+  public Class<? extends IDefaultResourceDescriptionStrategy> bindIDefaultResourceDescriptionStrategy() {
+    return ProtobufResourceDescriptionStrategy.class;
+  }
+
+  public Class<? extends IResourceScopeCache> bindIResourceScopeCache() {
+    return ProtobufResourceScopeCache.class;
+  }
+
   public void configureExtensionRegistry(Binder binder) {
     binder.bind(IExtensionRegistry.class).toProvider(ExtensionRegistryProvider.class);
   }
@@ -8,35 +8,325 @@
  */
 package com.google.eclipse.protobuf.linking;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 
+import org.eclipse.emf.common.notify.Adapter;
+import org.eclipse.emf.common.util.TreeIterator;
 import org.eclipse.emf.ecore.EObject;
 import org.eclipse.emf.ecore.EReference;
+import org.eclipse.emf.ecore.util.EcoreUtil;
 import org.eclipse.xtext.diagnostics.DiagnosticMessage;
-import org.eclipse.xtext.linking.lazy.LazyLinkingResource;
 import org.eclipse.xtext.nodemodel.INode;
+import org.eclipse.xtext.parser.IParseResult;
+import org.eclipse.xtext.parser.ParseResult;
+import org.eclipse.xtext.resource.ILocationInFileProvider;
+import org.eclipse.xtext.resource.persistence.StorageAwareResource;
+import org.eclipse.xtext.util.ITextRegion;
+import org.eclipse.xtext.util.TextRegion;
 import org.eclipse.xtext.util.Triple;
 
+import com.google.common.io.ByteStreams;
+import com.google.common.io.CharStreams;
+import com.google.eclipse.protobuf.resource.BinaryResourceStorage;
+import com.google.eclipse.protobuf.resource.ContentHashes;
 import com.google.eclipse.protobuf.resource.IResourceVerifier;
 import com.google.inject.Inject;
 
 /**
  * @author alruiz@google.com (Alex Ruiz)
  */
-public class ProtobufResource extends LazyLinkingResource {
+public class ProtobufResource extends StorageAwareResource {
   @Inject private IResourceVerifier resourceVerifier;
+  @Inject private ContentHashes contentHashes;
+  @Inject private ILocationInFileProvider locationInFileProvider;
+  @Inject private BinaryResourceStorage binaryStorage;
+
+  private boolean readingSourceFile;
+  private volatile boolean nodeModelDiscarded;
+  private boolean updatingNodeModel;
+  private volatile Object sharedLock;
+  private String contentHash;
+  private int sourceLength;
+  // Full and significant text regions (offset and length of each) of every element, when the node model is discarded.
+  private Map<EObject, Integer> regionIndices;
+  private int[] regions;
 
   @Override
   protected ProtobufDiagnostic createDiagnostic(Triple<EObject, EReference, INode> t, DiagnosticMessage message) {
     return new ProtobufDiagnostic(message.getIssueCode(), message.getIssueData(), message.getMessage(), t.getThird());
   }
 
+  @Override public void load(Map<?, ?> options) throws IOException {
+    if (isLoaded) {
+      return;
+    }
+    if (resourceVerifier.shouldIgnore(uri) || !binaryStorage.isAvailableFor(uri)) {
+      loadSourceFile(options);
+      return;
+    }
+    // The source is read once: to look for its binary form in storage and, if it is not there, to parse it.
+    byte[] source;
+    try (InputStream in = getURIConverter().createInputStream(uri, options)) {
+      source = ByteStreams.toByteArray(in);
+    }
+    if (binaryStorage.loadFromStorage(this, new String(source, getEncoding()))) {
+      return;
+    }
+    readingSourceFile = true;
+    try {
+      load(new ByteArrayInputStream(source), options);
+    } finally {
+      readingSourceFile = false;
+    }
+  }
+
+  private void loadSourceFile(Map<?, ?> options) throws IOException {
+    readingSourceFile = true;
+    try {
+      super.load(options);
+    } finally {
+      readingSourceFile = false;
+    }
+  }
+
   @Override protected void doLoad(InputStream inputStream, Map<?, ?> options) throws IOException {
     if (resourceVerifier.shouldIgnore(uri)) {
       return;
     }
     super.doLoad(inputStream, options);
+    // Contents coming from an editor may not be saved yet.
+    if (readingSourceFile) {
+      binaryStorage.store(this);
+    }
+  }
+
+  @Override protected void doLinking() {
+    if (!updatingNodeModel) {
+      super.doLinking();
+    }
+  }
+
+  @Override public EObject getEObject(String uriFragment) {
+    if (nodeModelDiscarded && getEncoder().isCrossLinkFragment(this, uriFragment)) {
+      // A shared resource was fully linked before being shared; links that could not be resolved then cannot be
+      // resolved now, and trying again would modify the resource while other threads read it.
+      if (sharedLock != null || !ensureNodeModel()) {
+        return null;
+      }
+    }
+    return super.getEObject(uriFragment);
+  }
+
+  /**
+   * Indicates that this resource, which is fully linked, is shared by several resource sets and may be read by several
+   * threads at the same time. Any code that modifies this resource afterwards (e.g. by caching values in its adapters)
+   * must hold the given lock.
+   * @param lock the lock guarding this resource.
+   */
+  public void share(Object lock) {
+    sharedLock = lock;
+  }
+
+  /**
+   * Returns the lock guarding this resource, if it is shared by several resource sets.
+   * @return the lock guarding this resource, or {@code null} if it is not shared.
+   */
+  public Object sharedLock() {
+    return sharedLock;
+  }
+
+  /**
+   * Discards the node model of this resource, keeping only its AST and the text regions of its elements. All the
+   * cross-references in this resource are resolved first, since resolving them requires the node model. Meant for
+   * resources that are only loaded to be imported, and that are not modified afterwards.
+   */
+  public synchronized void discardNodeModel() {
+    IParseResult parseResult = getParseResult();
+    if (nodeModelDiscarded || parseResult == null || parseResult.getRootNode() == null) {
+      return;
+    }
+    EcoreUtil.resolveAll(this);
+    contentHash = contentHashes.hashOf(this);
+    sourceLength = parseResult.getRootNode().getTotalLength();
+    recordTextRegions();
+    for (TreeIterator<EObject> i = EcoreUtil.getAllContents(this, false); i.hasNext();) {
+      removeNodesFrom(i.next());
+    }
+    nodeModelDiscarded = true;
+    updateParseResult(new ParseResult(parseResult.getRootASTElement(), null, false));
+  }
+
+  /**
+   * Rebuilds the node model of this resource, if it was discarded, by parsing its source again. The elements of the AST
+   * are kept, so references to them from other resources remain valid.
+   * @return {@code true} if this resource has a node model, {@code false} if it could not be rebuilt (e.g. because its
+   * source has changed.)
+   */
+  public boolean ensureNodeModel() {
+    if (!nodeModelDiscarded) {
+      return true;
+    }
+    Object lock = sharedLock;
+    if (lock == null) {
+      return rebuildNodeModel();
+    }
+    // Other threads may be reading this shared resource, or caching values in it, while holding the same lock.
+    synchronized (lock) {
+      return rebuildNodeModel();
+    }
+  }
+
+  private synchronized boolean rebuildNodeModel() {
+    if (!nodeModelDiscarded) {
+      return true;
+    }
+    IParseResult reparsed;
+    try {
+      String text = readSource();
+      if (contentHash == null || !contentHash.equals(contentHashes.hashOf(text))) {
+        return false;
+      }
+      reparsed = getParser().parse(new StringReader(text));
+    } catch (IOException | RuntimeException e) {
+      return false;
+    }
+    EObject root = getContents().isEmpty() ? null : getContents().get(0);
+    EObject reparsedRoot = reparsed.getRootASTElement();
+    if (root == null || reparsedRoot == null || !haveSameStructure(reparsedRoot, root)) {
+      return false;
+    }
+    moveNodes(reparsedRoot, root);
+    updateParseResult(new ParseResult(root, reparsed.getRootNode(), reparsed.hasSyntaxErrors()));
+    regionIndices = null;
+    regions = null;
+    // Published last, so threads that find the node model rebuilt also find the new parse result.
+    nodeModelDiscarded = false;
+    return true;
+  }
+
+  /**
+   * Indicates whether the node model of this resource has been discarded.
+   * @return {@code true} if the node model of this resource has been discarded, {@code false} otherwise.
+   */
+  public synchronized boolean isNodeModelDiscarded() {
+    return nodeModelDiscarded;
+  }
+
+  /**
+   * Returns the hash of the source of this resource, recorded when its node model was discarded.
+   * @return the hash of the source of this resource, or {@code null} if its node model has not been discarded.
+   */
+  public synchronized String discardedContentHash() {
+    return nodeModelDiscarded ? contentHash : null;
+  }
+
+  /**
+   * Returns the length of the source of this resource.
+   * @return the length of the source of this resource, or 0 if it has not been parsed.
+   */
+  public synchronized int sourceLength() {
+    if (nodeModelDiscarded) {
+      return sourceLength;
+    }
+    IParseResult parseResult = getParseResult();
+    return (parseResult == null || parseResult.getRootNode() == null) ? 0 : parseResult.getRootNode().getTotalLength();
+  }
+
+  /**
+   * Returns the region of the source of the given element, recorded when the node model was discarded.
+   * @param element an element of this resource.
+   * @param significant whether to return the significant region (e.g. the name) instead of the full region.
+   * @return the region of the source of the given element, or {@code null} if it is unknown.
+   */
+  public synchronized ITextRegion recordedTextRegionOf(EObject element, boolean significant) {
+    if (regionIndices == null) {
+      return null;
+    }
+    Integer index = regionIndices.get(element);
+    if (index == null) {
+      return null;
+    }
+    int start = index * 4 + (significant ? 2 : 0);
+    return new TextRegion(regions[start], regions[start + 1]);
+  }
+
+  private void recordTextRegions() {
+    List<EObject> elements = new ArrayList<>();
+    for (TreeIterator<EObject> i = EcoreUtil.getAllContents(this, false); i.hasNext();) {
+      elements.add(i.next());
+    }
+    regionIndices = new IdentityHashMap<>(elements.size());
+    regions = new int[elements.size() * 4];
+    for (int index = 0; index < elements.size(); index++) {
+      EObject element = elements.get(index);
+      regionIndices.put(element, index);
+      recordTextRegion(locationInFileProvider.getFullTextRegion(element), index * 4);
+      recordTextRegion(locationInFileProvider.getSignificantTextRegion(element), index * 4 + 2);
+    }
+  }
+
+  private void recordTextRegion(ITextRegion region, int start) {
+    if (region != null) {
+      regions[start] = region.getOffset();
+      regions[start + 1] = region.getLength();
+    }
+  }
+
+  private String readSource() throws IOException {
+    try (InputStream in = getURIConverter().createInputStream(uri)) {
+      return CharStreams.toString(new InputStreamReader(in, getEncoding()));
+    }
+  }
+
+  private void updateParseResult(IParseResult parseResult) {
+    updatingNodeModel = true;
+    try {
+      updateInternalState(parseResult);
+    } finally {
+      updatingNodeModel = false;
+    }
+  }
+
+  private static boolean haveSameStructure(EObject source, EObject target) {
+    if (source.eClass() != target.eClass() || source.eContents().size() != target.eContents().size()) {
+      return false;
+    }
+    Iterator<EObject> targetContents = target.eContents().iterator();
+    for (EObject child : source.eContents()) {
+      if (!haveSameStructure(child, targetContents.next())) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static void moveNodes(EObject source, EObject target) {
+    for (Adapter adapter : new ArrayList<>(source.eAdapters())) {
+      if (adapter instanceof INode) {
+        source.eAdapters().remove(adapter);
+        target.eAdapters().add(adapter);
+      }
+    }
+    Iterator<EObject> targetContents = target.eContents().iterator();
+    for (EObject child : source.eContents()) {
+      moveNodes(child, targetContents.next());
+    }
+  }
+
+  private static void removeNodesFrom(EObject element) {
+    for (Iterator<Adapter> i = element.eAdapters().iterator(); i.hasNext();) {
+      if (i.next() instanceof INode) {
+        i.remove();
+      }
+    }
   }
 }
@@ -0,0 +1,95 @@
+/*
+ * Copyright (c) 2016 Google Inc.
+ *
+ * All rights reserved. This program and the accompanying materials are made available under the terms of the Eclipse
+ * Public License v1.0 which accompanies this distribution, and is available at
+ *
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package com.google.eclipse.protobuf.model.util;
+
+import static java.util.Collections.emptyList;
+import static java.util.Collections.unmodifiableList;
+
+import static org.eclipse.emf.ecore.util.EcoreUtil.getAllContents;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.eclipse.emf.common.util.TreeIterator;
+import org.eclipse.emf.ecore.EClass;
+import org.eclipse.emf.ecore.EObject;
+import org.eclipse.emf.ecore.resource.Resource;
+import org.eclipse.xtext.util.IResourceScopeCache;
+
+import com.google.inject.Inject;
+import com.google.inject.Provider;
+import com.google.inject.Singleton;
+
+/**
+ * Index of the elements in a resource, grouped by type.
+ * <p>
+ * The index of a resource is built the first time it is queried, with a single traversal of the resource's contents.
+ * It is stored in the resource's <code>{@link IResourceScopeCache}</code>, which discards it as soon as the resource
+ * changes.
+ * </p>
+ */
+@Singleton public class ExportedSymbolIndex {
+  @Inject private final IResourceScopeCache cache = IResourceScopeCache.NullImpl.INSTANCE;
+
+  /**
+   * Returns all the elements in the given resource that are instances of the given type (including instances of any
+   * of its sub-types.)
+   * @param resource the given resource.
+   * @param type the type of the elements to return.
+   * @return all the elements in the given resource that are instances of the given type, in the order they appear in
+   * the resource, or an empty list if none are found.
+   */
+  public List<EObject> elementsOfType(Resource resource, EClass type) {
+    List<EObject> elements = elementsByTypeIn(resource).get(type);
+    if (elements == null) {
+      return emptyList();
+    }
+    return elements;
+  }
+
+  private Map<EClass, List<EObject>> elementsByTypeIn(final Resource resource) {
+    return cache.get(ExportedSymbolIndex.class.getName(), resource, new Provider<Map<EClass, List<EObject>>>() {
+      @Override public Map<EClass, List<EObject>> get() {
+        return index(resource);
+      }
+    });
+  }
+
+  private Map<EClass, List<EObject>> index(Resource resource) {
+    Map<EClass, List<EObject>> elementsByType = new HashMap<>();
+    TreeIterator<Object> contents = getAllContents(resource, true);
+    while (contents.hasNext()) {
+      Object next = contents.next();
+      if (!(next instanceof EObject)) {
+        continue;
+      }
+      EObject e = (EObject) next;
+      EClass type = e.eClass();
+      add(elementsByType, type, e);
+      for (EClass superType : type.getEAllSuperTypes()) {
+        add(elementsByType, superType, e);
+      }
+    }
+    for (Map.Entry<EClass, List<EObject>> entry : elementsByType.entrySet()) {
+      entry.setValue(unmodifiableList(entry.getValue()));
+    }
+    return elementsByType;
+  }
+
+  private void add(Map<EClass, List<EObject>> elementsByType, EClass type, EObject e) {
+    List<EObject> elements = elementsByType.get(type);
+    if (elements == null) {
+      elements = new ArrayList<>();
+      elementsByType.put(type, elements);
+    }
+    elements.add(e);
+  }
+}
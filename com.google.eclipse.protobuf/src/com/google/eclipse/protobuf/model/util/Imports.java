@@ -17,11 +17,13 @@ import com.google.eclipse.protobuf.scoping.IImportResolver;
 import com.google.eclipse.protobuf.scoping.ProtoDescriptorProvider;
 import com.google.eclipse.protobuf.util.EResources;
 import com.google.inject.Inject;
+import com.google.inject.Provider;
 
 import org.eclipse.core.resources.IProject;
 import org.eclipse.emf.common.util.URI;
 import org.eclipse.emf.ecore.resource.Resource;
 import org.eclipse.emf.ecore.resource.ResourceSet;
+import org.eclipse.xtext.util.IResourceScopeCache;
 
 /**
  * Utility methods related to imports.
@@ -29,6 +31,9 @@ import org.eclipse.emf.ecore.resource.ResourceSet;
  * @author alruiz@google.com (Alex Ruiz)
  */
 public class Imports {
+  private static final String PROJECT_CACHE_KEY = Imports.class.getName() + ".project";
+
+  @Inject private final IResourceScopeCache cache = IResourceScopeCache.NullImpl.INSTANCE;
   @Inject private ProtoDescriptorProvider descriptorProvider;
   @Inject private ResourceSets resourceSets;
   @Inject private StringLiterals stringLiterals;
@@ -45,9 +50,8 @@ public class Imports {
     if (anImport == null) {
       return false;
     }
-    IProject project = EResources.getProjectOf(anImport.eResource());
     URI descriptorLocation =
-        descriptorProvider.descriptorLocation(project, getPath(anImport));
+        descriptorProvider.descriptorLocation(projectOf(anImport), getPath(anImport));
     return descriptorLocation != null;
   }
 
@@ -57,21 +61,23 @@ public class Imports {
    * @return {@code true} if the given {@code Import} is pointing to descriptor.proto, {@code false} otherwise.
    */
   public boolean isImportingDescriptor(Import anImport) {
-    if (hasUnresolvedDescriptorUri(anImport)) {
-      return true;
-    }
     if (anImport == null) {
       return false;
     }
-    String importUri = getPath(anImport);
-    IProject project = EResources.getProjectOf(anImport.eResource());
-    for (URI locationUri : descriptorProvider.allDescriptorLocations(project)) {
-      String location = locationUri.toString();
-      if (location.equals(importUri)) {
-        return true;
-      }
+    // Matches both the import URI and the location of every descriptor.
+    return descriptorProvider.isDescriptorPath(projectOf(anImport), getPath(anImport));
+  }
+
+  private IProject projectOf(Import anImport) {
+    final Resource resource = anImport.eResource();
+    if (resource == null) {
+      return null;
     }
-    return false;
+    return cache.get(PROJECT_CACHE_KEY, resource, new Provider<IProject>() {
+      @Override public IProject get() {
+        return EResources.getProjectOf(resource);
+      }
+    });
   }
 
   /**
@@ -8,7 +8,9 @@
  */
 package com.google.eclipse.protobuf.model.util;
 
+import static com.google.common.collect.Lists.newArrayList;
 import static com.google.common.collect.Sets.newHashSet;
+import static com.google.eclipse.protobuf.protobuf.ProtobufPackage.Literals.TYPE_EXTENSION;
 import static org.eclipse.xtext.EcoreUtil2.getAllContentsOfType;
 
 import com.google.eclipse.protobuf.protobuf.Message;
@@ -17,7 +19,11 @@ import com.google.eclipse.protobuf.protobuf.TypeExtension;
 import com.google.inject.Inject;
 import com.google.inject.Singleton;
 
+import org.eclipse.emf.ecore.EObject;
+import org.eclipse.emf.ecore.resource.Resource;
+
 import java.util.Collection;
+import java.util.List;
 import java.util.Set;
 
 /**
@@ -26,6 +32,7 @@ import java.util.Set;
  * @author alruiz@google.com (Alex Ruiz)
  */
 @Singleton public class Messages {
+  @Inject private ExportedSymbolIndex symbolIndex;
   @Inject private ModelObjects modelObjects;
   @Inject private TypeExtensions typeExtensions;
 
@@ -41,7 +48,7 @@ import java.util.Set;
 
   public Collection<TypeExtension> extensionsOf(Message message, Protobuf root) {
     Set<TypeExtension> extensions = newHashSet();
-    for (TypeExtension extension : getAllContentsOfType(root, TypeExtension.class)) {
+    for (TypeExtension extension : allExtensionsIn(root)) {
       Message referred = typeExtensions.messageFrom(extension);
       if (message.equals(referred)) {
         extensions.add(extension);
@@ -49,4 +56,16 @@ import java.util.Set;
     }
     return extensions;
   }
+
+  private List<TypeExtension> allExtensionsIn(Protobuf root) {
+    Resource resource = root.eResource();
+    if (resource == null) {
+      return getAllContentsOfType(root, TypeExtension.class);
+    }
+    List<TypeExtension> extensions = newArrayList();
+    for (EObject e : symbolIndex.elementsOfType(resource, TYPE_EXTENSION)) {
+      extensions.add((TypeExtension) e);
+    }
+    return extensions;
+  }
 }
@@ -0,0 +1,148 @@
+/*
+ * Copyright (c) 2016 Google Inc.
+ *
+ * All rights reserved. This program and the accompanying materials are made available under the terms of the Eclipse
+ * Public License v1.0 which accompanies this distribution, and is available at
+ *
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package com.google.eclipse.protobuf.model.util;
+
+import static java.util.Collections.unmodifiableList;
+
+import static org.eclipse.xtext.util.Strings.isEmpty;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentMap;
+
+import org.eclipse.xtext.naming.IQualifiedNameConverter;
+import org.eclipse.xtext.naming.QualifiedName;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.MapMaker;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+
+/**
+ * Trie of the segments of package names. Each package name is split into segments only once; packages with the same
+ * name share the same node, and packages whose names start with the same segments share the nodes of those segments.
+ * Comparing package names becomes a walk up their nodes.
+ * <p>
+ * Nodes are only kept while in use: parents are referenced by their children but children only weakly by their
+ * parents, and the nodes of recently used names are softly referenced by name. Names that are no longer in use are
+ * dropped under memory pressure; since nobody references their nodes anymore, interning them again creates new nodes
+ * without breaking the comparison of live nodes by identity.
+ * </p>
+ */
+@Singleton class PackageNameTrie {
+  @Inject private IQualifiedNameConverter qualifiedNameConverter;
+
+  private final Node root = new Node(null, null);
+  private final Cache<String, Node> nodesByName = CacheBuilder.newBuilder().softValues().build();
+
+  /**
+   * Returns the node of the given package name, adding it to this trie if necessary.
+   * @param name the given package name.
+   * @return the node of the given package name, or {@code null} if the name is empty.
+   */
+  Node nodeOf(String name) {
+    if (isEmpty(name)) {
+      return null;
+    }
+    Node node = nodesByName.getIfPresent(name);
+    if (node == null) {
+      // Interning the same name again returns the same node, so threads racing here agree on it.
+      node = intern(qualifiedNameConverter.toQualifiedName(name));
+      nodesByName.put(name, node);
+    }
+    return node;
+  }
+
+  private Node intern(QualifiedName name) {
+    Node current = root;
+    for (String segment : name.getSegments()) {
+      current = current.child(segment);
+    }
+    return current;
+  }
+
+  /**
+   * Indicates whether the given nodes are equal or one of them is an ancestor of the other one.
+   * @param n1 node to verify against {@code n2}.
+   * @param n2 node to verify against {@code n1}.
+   * @return {@code true} if the given nodes are on the same path from the root of this trie.
+   */
+  static boolean areOnSamePath(Node n1, Node n2) {
+    return n1.depth < n2.depth ? n2.ancestorAt(n1.depth) == n1 : n1.ancestorAt(n2.depth) == n2;
+  }
+
+  /**
+   * Returns the number of leading segments shared by the names of the given nodes.
+   * @param n1 node to compare with {@code n2}.
+   * @param n2 node to compare with {@code n1}.
+   * @return the number of leading segments shared by the names of the given nodes.
+   */
+  static int commonSegmentCount(Node n1, Node n2) {
+    int depth = Math.min(n1.depth, n2.depth);
+    Node a = n1.ancestorAt(depth);
+    Node b = n2.ancestorAt(depth);
+    while (a != b) {
+      a = a.parent;
+      b = b.parent;
+    }
+    return a.depth;
+  }
+
+  static class Node {
+    final Node parent;
+    final String segment;
+    final int depth;
+    private final ConcurrentMap<String, Node> children = new MapMaker().concurrencyLevel(1).weakValues().makeMap();
+    private volatile List<String> segments;
+
+    private Node(Node parent, String segment) {
+      this.parent = parent;
+      this.segment = segment;
+      depth = (parent == null) ? 0 : parent.depth + 1;
+    }
+
+    private Node child(String childSegment) {
+      Node child = children.get(childSegment);
+      if (child == null) {
+        child = new Node(this, childSegment);
+        Node existing = children.putIfAbsent(childSegment, child);
+        if (existing != null) {
+          child = existing;
+        }
+      }
+      return child;
+    }
+
+    private Node ancestorAt(int ancestorDepth) {
+      Node current = this;
+      while (current.depth > ancestorDepth) {
+        current = current.parent;
+      }
+      return current;
+    }
+
+    /**
+     * Returns the segments of the package name of this node.
+     * @return the segments of the package name of this node.
+     */
+    List<String> segments() {
+      List<String> result = segments;
+      if (result == null) {
+        String[] values = new String[depth];
+        for (Node current = this; current.depth > 0; current = current.parent) {
+          values[current.depth - 1] = current.segment;
+        }
+        result = unmodifiableList(Arrays.asList(values));
+        segments = result;
+      }
+      return result;
+    }
+  }
+}
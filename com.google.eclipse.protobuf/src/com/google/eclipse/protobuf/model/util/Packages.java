@@ -11,16 +11,15 @@ package com.google.eclipse.protobuf.model.util;
 import static java.util.Collections.emptyList;
 import static java.util.Collections.unmodifiableList;
 
-import static org.eclipse.xtext.util.Strings.isEmpty;
-
 import static com.google.common.collect.Lists.newArrayList;
+import static com.google.eclipse.protobuf.model.util.PackageNameTrie.areOnSamePath;
 
 import java.util.Collection;
 import java.util.List;
 
-import org.eclipse.xtext.naming.IQualifiedNameConverter;
 import org.eclipse.xtext.naming.QualifiedName;
 
+import com.google.eclipse.protobuf.model.util.PackageNameTrie.Node;
 import com.google.eclipse.protobuf.protobuf.Package;
 import com.google.inject.Inject;
 
@@ -30,7 +29,7 @@ import com.google.inject.Inject;
  * @author alruiz@google.com (Alex Ruiz)
  */
 public class Packages {
-  @Inject private IQualifiedNameConverter qualifiedNameConverter;
+  @Inject private PackageNameTrie packageNames;
 
   /**
    * Indicates whether the given packages are "related." "Related" means that the names of the packages are equal or one
@@ -40,33 +39,29 @@ public class Packages {
    * @return {@code true} if the given packages are related; {@code false} otherwise.
    */
   public boolean areRelated(Package p1, Package p2) {
-    if (p1 == null || p2 == null) {
-      return false;
-    }
-    QualifiedName name1 = nameOf(p1);
-    QualifiedName name2 = nameOf(p2);
-    if (name1 == null || name2 == null) {
+    Node n1 = nodeOf(p1);
+    Node n2 = nodeOf(p2);
+    if (n1 == null || n2 == null) {
       return false;
     }
-    if (name1.equals(name2)) {
-      return true;
-    }
-    return (isSubPackage(name1, name2));
+    return areOnSamePath(n1, n2);
   }
 
-  private boolean isSubPackage(QualifiedName name1, QualifiedName name2) {
-    List<String> segments = name2.getSegments();
-    int segment2Count = segments.size();
-    int counter = 0;
-    for (String segment1 : name1.getSegments()) {
-      if (!segment1.equals(segments.get(counter++))) {
-        return false;
-      }
-      if (counter == segment2Count) {
-        break;
-      }
+  /**
+   * Returns the number of leading segments shared by the names of the given packages (e.g. 2 for "may.the.force" and
+   * "may.the.ring".)
+   * @param p1 package to compare with {@code p2}.
+   * @param p2 package to compare with {@code p1}.
+   * @return the number of leading segments shared by the names of the given packages; 0 if any of them is {@code null}
+   * or does not have a name.
+   */
+  public int commonSegmentCount(Package p1, Package p2) {
+    Node n1 = nodeOf(p1);
+    Node n2 = nodeOf(p2);
+    if (n1 == null || n2 == null) {
+      return 0;
     }
-    return true;
+    return PackageNameTrie.commonSegmentCount(n1, n2);
   }
 
   /**
@@ -102,15 +97,14 @@ public class Packages {
    * contains zero or one segments.
    */
   public Collection<QualifiedName> addPackageNameSegments(Package p, QualifiedName name) {
-    QualifiedName current = name;
-    List<String> segments = segmentsOf(p);
-    int segmentCount = segments.size();
-    if (segmentCount <= 1) {
+    Node node = nodeOf(p);
+    if (node == null || node.depth <= 1) {
       return emptyList();
     }
+    QualifiedName current = name;
     List<QualifiedName> allNames = newArrayList();
-    for (int i = segmentCount - 1; i > 0; i--) {
-      current = QualifiedName.create(segments.get(i)).append(current);
+    for (; node.depth > 1; node = node.parent) {
+      current = QualifiedName.create(node.segment).append(current);
       allNames.add(current);
     }
     return unmodifiableList(allNames);
@@ -122,15 +116,14 @@ public class Packages {
    * @return the segments in the name of the given package.
    */
   public List<String> segmentsOf(Package p) {
-    QualifiedName name = (p == null) ? null : nameOf(p);
-    if (name == null) {
+    Node node = nodeOf(p);
+    if (node == null) {
       return emptyList();
     }
-    return name.getSegments();
+    return node.segments();
   }
 
-  private QualifiedName nameOf(Package p) {
-    String name = p.getName();
-    return (isEmpty(name)) ? null : qualifiedNameConverter.toQualifiedName(name);
+  private Node nodeOf(Package p) {
+    return (p == null) ? null : packageNames.nodeOf(p.getName());
   }
 }
@@ -0,0 +1,217 @@
+/*
+ * Copyright (c) 2016 Google Inc.
+ *
+ * All rights reserved. This program and the accompanying materials are made available under the terms of the Eclipse
+ * Public License v1.0 which accompanies this distribution, and is available at
+ *
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package com.google.eclipse.protobuf.resource;
+
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+import static java.util.concurrent.TimeUnit.DAYS;
+
+import static com.google.eclipse.protobuf.util.SystemProperties.useBinaryResourceStorage;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+
+import org.apache.log4j.Logger;
+import org.eclipse.core.runtime.IPath;
+import org.eclipse.core.runtime.Platform;
+import org.eclipse.emf.common.util.URI;
+import org.eclipse.emf.ecore.resource.Resource;
+import org.eclipse.emf.ecore.resource.ResourceSet;
+import org.eclipse.xtext.parser.IParseResult;
+import org.eclipse.xtext.resource.persistence.ResourceStorageLoadable;
+import org.eclipse.xtext.resource.persistence.ResourceStorageWritable;
+import org.eclipse.xtext.resource.persistence.StorageAwareResource;
+import org.osgi.framework.Bundle;
+import org.osgi.framework.FrameworkUtil;
+
+import com.google.eclipse.protobuf.util.Uris;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+
+/**
+ * Stores parsed .proto files (their AST and node model) in binary form, keyed by their normalized URI and the hash of
+ * their contents, so files whose contents have been parsed before (e.g. in a previous session or a previous clean
+ * build) are not parsed again.
+ * <p>
+ * The files are stored in the state location of this plug-in, which is only available when running in Eclipse. Stored
+ * files that have not been used for {@value #UNUSED_FILE_EXPIRATION_DAYS} days are deleted the first time the storage
+ * is used in a session. Binary storage can be turned off by setting the system property
+ * "com.google.eclipse.protobuf.binaryResourceStorage" to "false".
+ * </p>
+ */
+@Singleton public class BinaryResourceStorage {
+  private static final int UNUSED_FILE_EXPIRATION_DAYS = 30;
+  private static final String STORAGE_DIRECTORY_NAME = "parsed-protos";
+  private static final String STORAGE_FILE_EXTENSION = ".bin";
+
+  private static Logger logger = Logger.getLogger(BinaryResourceStorage.class);
+
+  @Inject private ContentHashes contentHashes;
+  @Inject private Uris uris;
+
+  private volatile Path directory;
+  private volatile boolean initialized;
+
+  /**
+   * Indicates whether parsed files with the given URI can be stored.
+   * @param uri the URI of a file.
+   * @return {@code true} if parsed files with the given URI can be stored, {@code false} otherwise.
+   */
+  public boolean isAvailableFor(URI uri) {
+    return storageDirectoryFor(uri) != null;
+  }
+
+  /**
+   * Indicates whether the file with the given URI has been stored with the given contents.
+   * @param normalizedUri the normalized URI of the file.
+   * @param contentHash the hash of the contents of the file.
+   * @return {@code true} if the file has been stored with the given contents, {@code false} otherwise.
+   */
+  public boolean isStored(URI normalizedUri, String contentHash) {
+    Path storageDirectory = storageDirectoryFor(normalizedUri);
+    return storageDirectory != null && Files.isRegularFile(storageFileOf(storageDirectory, normalizedUri, contentHash));
+  }
+
+  /**
+   * Loads the given resource from its stored binary form, if the given source has been stored before for the same URI.
+   * @param resource the resource to load.
+   * @param source the source of the resource.
+   * @return {@code true} if the resource was loaded from storage, {@code false} if it has to be parsed.
+   */
+  public boolean loadFromStorage(StorageAwareResource resource, String source) {
+    Path storageDirectory = storageDirectoryFor(resource.getURI());
+    if (storageDirectory == null) {
+      return false;
+    }
+    Path file = storageFileOf(storageDirectory, resource, contentHashes.hashOf(source));
+    if (!Files.isRegularFile(file)) {
+      return false;
+    }
+    try (InputStream in = new BufferedInputStream(Files.newInputStream(file))) {
+      resource.loadFromStorage(new ResourceStorageLoadable(in, true));
+      Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis()));
+      return true;
+    } catch (IOException | RuntimeException e) {
+      logger.debug("Unable to load " + resource.getURI() + " from " + file, e);
+      resource.unload();
+      deleteQuietly(file);
+      return false;
+    }
+  }
+
+  /**
+   * Stores the given resource, which has just been parsed, unless its contents have been stored before or have syntax
+   * errors.
+   * @param resource the resource to store.
+   */
+  public void store(StorageAwareResource resource) {
+    Path storageDirectory = storageDirectoryFor(resource.getURI());
+    IParseResult parseResult = resource.getParseResult();
+    if (storageDirectory == null || parseResult == null || parseResult.getRootNode() == null
+        || parseResult.hasSyntaxErrors()) {
+      return;
+    }
+    Path file = storageFileOf(storageDirectory, resource, contentHashes.hashOf(parseResult.getRootNode().getText()));
+    if (Files.exists(file)) {
+      return;
+    }
+    Path temporaryFile = null;
+    try {
+      temporaryFile = Files.createTempFile(storageDirectory, null, null);
+      try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(temporaryFile))) {
+        new ResourceStorageWritable(out, true).writeResource(resource);
+      }
+      moveAtomically(temporaryFile, file);
+    } catch (IOException | RuntimeException e) {
+      logger.debug("Unable to store " + resource.getURI(), e);
+      if (temporaryFile != null) {
+        deleteQuietly(temporaryFile);
+      }
+    }
+  }
+
+  private Path storageDirectoryFor(URI uri) {
+    if (!useBinaryResourceStorage() || uri == null || !(uri.isPlatformResource() || uri.isFile())
+        || !uris.hasProtoExtension(uri)) {
+      return null;
+    }
+    if (!initialized) {
+      initialize();
+    }
+    return directory;
+  }
+
+  private synchronized void initialize() {
+    if (initialized) {
+      return;
+    }
+    try {
+      Bundle bundle = FrameworkUtil.getBundle(BinaryResourceStorage.class);
+      IPath stateLocation = (bundle == null) ? null : Platform.getStateLocation(bundle);
+      if (stateLocation != null) {
+        Path storageDirectory = stateLocation.append(STORAGE_DIRECTORY_NAME).toFile().toPath();
+        Files.createDirectories(storageDirectory);
+        deleteUnusedFiles(storageDirectory);
+        directory = storageDirectory;
+      }
+    } catch (IOException | RuntimeException e) {
+      // Binary storage is only an optimization. The state location is not available outside of Eclipse.
+      logger.debug("Binary resource storage is not available", e);
+    } finally {
+      initialized = true;
+    }
+  }
+
+  private void deleteUnusedFiles(Path storageDirectory) throws IOException {
+    long expiration = System.currentTimeMillis() - DAYS.toMillis(UNUSED_FILE_EXPIRATION_DAYS);
+    try (DirectoryStream<Path> files = Files.newDirectoryStream(storageDirectory)) {
+      for (Path file : files) {
+        if (Files.getLastModifiedTime(file).toMillis() < expiration) {
+          deleteQuietly(file);
+        }
+      }
+    }
+  }
+
+  private Path storageFileOf(Path storageDirectory, Resource resource, String contentHash) {
+    URI uri = resource.getURI();
+    ResourceSet resourceSet = resource.getResourceSet();
+    URI normalized = (resourceSet == null) ? uri : resourceSet.getURIConverter().normalize(uri);
+    return storageFileOf(storageDirectory, normalized, contentHash);
+  }
+
+  // The stored form refers to other files (and to itself) by URI, so it can only be reused for the same file.
+  private Path storageFileOf(Path storageDirectory, URI normalizedUri, String contentHash) {
+    String name = contentHashes.hashOf(normalizedUri.toString()) + "-" + contentHash + STORAGE_FILE_EXTENSION;
+    return storageDirectory.resolve(name);
+  }
+
+  private static void moveAtomically(Path source, Path target) throws IOException {
+    try {
+      Files.move(source, target, ATOMIC_MOVE);
+    } catch (IOException e) {
+      Files.move(source, target, REPLACE_EXISTING);
+    }
+  }
+
+  private static void deleteQuietly(Path file) {
+    try {
+      Files.deleteIfExists(file);
+    } catch (IOException e) {
+      // The file will be deleted once it expires.
+    }
+  }
+}
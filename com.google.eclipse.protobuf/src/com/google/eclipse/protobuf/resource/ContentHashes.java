@@ -0,0 +1,65 @@
+/*
+ * Copyright (c) 2016 Google Inc.
+ *
+ * All rights reserved. This program and the accompanying materials are made available under the terms of the Eclipse
+ * Public License v1.0 which accompanies this distribution, and is available at
+ *
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package com.google.eclipse.protobuf.resource;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import org.eclipse.emf.ecore.resource.Resource;
+import org.eclipse.xtext.nodemodel.ICompositeNode;
+import org.eclipse.xtext.parser.IParseResult;
+import org.eclipse.xtext.resource.XtextResource;
+import org.eclipse.xtext.util.IResourceScopeCache;
+
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
+import com.google.eclipse.protobuf.linking.ProtobufResource;
+import com.google.inject.Inject;
+import com.google.inject.Provider;
+import com.google.inject.Singleton;
+
+/**
+ * Computes hashes of the contents of resources, to recognize identical files across reloads and resource sets.
+ */
+@Singleton public class ContentHashes {
+  private static final HashFunction HASH_FUNCTION = Hashing.murmur3_128();
+
+  @Inject private final IResourceScopeCache cache = IResourceScopeCache.NullImpl.INSTANCE;
+
+  /**
+   * Returns the hash of the text the given resource was parsed from. The hash is cached in the resource until it
+   * changes.
+   * @param resource the given resource.
+   * @return the hash of the text of the given resource, or {@code null} if the given resource has not been parsed from
+   * text.
+   */
+  public String hashOf(final Resource resource) {
+    if (!(resource instanceof XtextResource)) {
+      return null;
+    }
+    return cache.get(ContentHashes.class.getName(), resource, new Provider<String>() {
+      @Override public String get() {
+        IParseResult parseResult = ((XtextResource) resource).getParseResult();
+        ICompositeNode rootNode = (parseResult == null) ? null : parseResult.getRootNode();
+        if (rootNode == null && resource instanceof ProtobufResource) {
+          return ((ProtobufResource) resource).discardedContentHash();
+        }
+        return (rootNode == null) ? null : hashOf(rootNode.getText());
+      }
+    });
+  }
+
+  /**
+   * Returns the hash of the given text.
+   * @param text the given text.
+   * @return the hash of the given text.
+   */
+  public String hashOf(CharSequence text) {
+    return HASH_FUNCTION.hashString(text, UTF_8).toString();
+  }
+}
@@ -0,0 +1,226 @@
+/*
+ * Copyright (c) 2016 Google Inc.
+ *
+ * All rights reserved. This program and the accompanying materials are made available under the terms of the Eclipse
+ * Public License v1.0 which accompanies this distribution, and is available at
+ *
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package com.google.eclipse.protobuf.resource;
+
+import static java.lang.Math.max;
+import static java.lang.Math.min;
+
+import static com.google.eclipse.protobuf.resource.ProtobufResourceDescriptionStrategy.EXTENDED_TYPE;
+import static com.google.eclipse.protobuf.resource.ProtobufResourceDescriptionStrategy.FIELD_NUMBER;
+import static com.google.eclipse.protobuf.resource.ProtobufResourceDescriptionStrategy.simpleNameOf;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.eclipse.emf.common.util.URI;
+import org.eclipse.xtext.resource.IEObjectDescription;
+import org.eclipse.xtext.resource.IResourceDescription;
+import org.eclipse.xtext.resource.IResourceDescriptions;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.Iterables;
+import com.google.eclipse.protobuf.model.util.IndexedElements;
+import com.google.eclipse.protobuf.protobuf.ExtensibleType;
+import com.google.eclipse.protobuf.protobuf.ExtensibleTypeLink;
+import com.google.eclipse.protobuf.protobuf.Extensions;
+import com.google.eclipse.protobuf.protobuf.IndexRange;
+import com.google.eclipse.protobuf.protobuf.IndexedElement;
+import com.google.eclipse.protobuf.protobuf.Message;
+import com.google.eclipse.protobuf.protobuf.TypeExtension;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+
+/**
+ * Index of the fields declared in {@code extend} blocks across the Xtext index, by the simple name of the type they
+ * extend (e.g. "FieldOptions".)
+ * <p>
+ * Finding the extensions of a type, or the extensions using a given number, takes a single lookup and does not load
+ * the files that declare them. Since types are matched by simple name, callers that need an exact match should check
+ * the extended type of the returned elements once they are resolved. Visibility (i.e. whether the declaring file is
+ * imported) is not taken into account either.
+ * </p>
+ * <p>
+ * When the Xtext index notifies about its changes (as the index of the builder does,) the extensions are kept up to
+ * date from its deltas; otherwise the Xtext index is scanned on every lookup.
+ * </p>
+ * <p>
+ * Content assist uses this index to propose the number of a new field in an {@code extend} block.
+ * </p>
+ */
+@Singleton public class ExtensionIndex {
+  @Inject private ProtobufResourceDescriptionStrategy descriptionStrategy;
+  @Inject private IndexedElements indexedElements;
+  @Inject private IResourceDescriptions xtextIndex;
+
+  // Extended type -> URI of the declaring resource -> fields. Only used when the Xtext index notifies about changes.
+  private Map<String, Map<URI, List<IEObjectDescription>>> extensionsByType;
+
+  /**
+   * Returns the fields declared in {@code extend} blocks that extend a type with the given name.
+   * @param extendedType the simple or qualified name of the extended type.
+   * @return the fields extending a type with the given name, or an empty collection if there are none.
+   */
+  public Collection<IEObjectDescription> extensionsOf(String extendedType) {
+    String simpleName = simpleNameOf(extendedType);
+    Map<String, Map<URI, List<IEObjectDescription>>> index = indexedExtensions();
+    if (index == null) {
+      return scanXtextIndex(simpleName);
+    }
+    synchronized (this) {
+      Map<URI, List<IEObjectDescription>> byResource = index.get(simpleName);
+      if (byResource == null) {
+        return Collections.emptyList();
+      }
+      List<IEObjectDescription> extensions = new ArrayList<>();
+      for (List<IEObjectDescription> declared : byResource.values()) {
+        extensions.addAll(declared);
+      }
+      return extensions;
+    }
+  }
+
+  /**
+   * Returns the fields declared in {@code extend} blocks that extend a type with the given name using the given number.
+   * More than one field indicates a possible conflict.
+   * @param extendedType the simple or qualified name of the extended type.
+   * @param number the number of the field.
+   * @return the fields extending a type with the given name using the given number.
+   */
+  public Collection<IEObjectDescription> extensionsWithNumber(String extendedType, long number) {
+    List<IEObjectDescription> extensions = new ArrayList<>();
+    for (IEObjectDescription extension : extensionsOf(extendedType)) {
+      if (numberOf(extension) == number) {
+        extensions.add(extension);
+      }
+    }
+    return extensions;
+  }
+
+  /**
+   * Returns the number to propose for a new field in the given {@code extend} block: one more than the largest number
+   * used by the fields of the block and by the known extensions of the same type, but not less than the first number
+   * of the extension ranges of the extended type, if it is resolved.
+   * @param extension the given {@code extend} block.
+   * @return the number to propose for a new field in the given {@code extend} block.
+   */
+  public long calculateNewIndexFor(TypeExtension extension) {
+    long maxIndex = 0;
+    for (IndexedElement e : extension.getElements()) {
+      maxIndex = max(maxIndex, indexedElements.indexOf(e));
+    }
+    String extendedType = descriptionStrategy.extendedTypeNameOf(extension);
+    if (extendedType != null) {
+      for (IEObjectDescription known : extensionsOf(extendedType)) {
+        maxIndex = max(maxIndex, numberOf(known));
+      }
+    }
+    return max(maxIndex + 1, firstExtensionNumberOf(extension));
+  }
+
+  private long firstExtensionNumberOf(TypeExtension extension) {
+    ExtensibleTypeLink link = extension.getType();
+    ExtensibleType extendedType = (link == null) ? null : link.getTarget();
+    if (!(extendedType instanceof Message)) {
+      return 0;
+    }
+    long first = Long.MAX_VALUE;
+    for (Extensions extensions : Iterables.filter(((Message) extendedType).getElements(), Extensions.class)) {
+      for (IndexRange range : extensions.getRanges()) {
+        first = min(first, range.getFrom());
+      }
+    }
+    return (first == Long.MAX_VALUE) ? 0 : first;
+  }
+
+  /**
+   * Returns the number of the given field declared in an {@code extend} block.
+   * @param extension the description of the field.
+   * @return the number of the field, or {@code Long.MIN_VALUE} if it is not known.
+   */
+  public static long numberOf(IEObjectDescription extension) {
+    String number = extension.getUserData(FIELD_NUMBER);
+    if (number == null) {
+      return Long.MIN_VALUE;
+    }
+    try {
+      return Long.parseLong(number);
+    } catch (NumberFormatException e) {
+      return Long.MIN_VALUE;
+    }
+  }
+
+  private Collection<IEObjectDescription> scanXtextIndex(String simpleName) {
+    List<IEObjectDescription> extensions = new ArrayList<>();
+    for (IEObjectDescription description : xtextIndex.getExportedObjects()) {
+      if (simpleName.equals(description.getUserData(EXTENDED_TYPE))) {
+        extensions.add(description);
+      }
+    }
+    return extensions;
+  }
+
+  /*
+   * As in IndexLookup, the extensions can only be kept if the Xtext index notifies about its changes.
+   */
+  private synchronized Map<String, Map<URI, List<IEObjectDescription>>> indexedExtensions() {
+    if (extensionsByType == null && xtextIndex instanceof IResourceDescription.Event.Source) {
+      extensionsByType = new HashMap<>();
+      ((IResourceDescription.Event.Source) xtextIndex).addListener(new IResourceDescription.Event.Listener() {
+        @Override public void descriptionsChanged(IResourceDescription.Event event) {
+          synchronized (ExtensionIndex.this) {
+            for (IResourceDescription.Delta delta : event.getDeltas()) {
+              remove(delta.getUri());
+              if (delta.getNew() != null) {
+                add(delta.getNew());
+              }
+            }
+          }
+        }
+      });
+      for (IResourceDescription description : xtextIndex.getAllResourceDescriptions()) {
+        add(description);
+      }
+    }
+    return extensionsByType;
+  }
+
+  private void add(IResourceDescription description) {
+    for (IEObjectDescription exported : description.getExportedObjects()) {
+      String extendedType = exported.getUserData(EXTENDED_TYPE);
+      if (extendedType == null) {
+        continue;
+      }
+      Map<URI, List<IEObjectDescription>> byResource = extensionsByType.get(extendedType);
+      if (byResource == null) {
+        byResource = new HashMap<>();
+        extensionsByType.put(extendedType, byResource);
+      }
+      List<IEObjectDescription> declared = byResource.get(description.getURI());
+      if (declared == null) {
+        declared = new ArrayList<>();
+        byResource.put(description.getURI(), declared);
+      }
+      declared.add(exported);
+    }
+  }
+
+  private void remove(URI uri) {
+    for (Map<URI, List<IEObjectDescription>> byResource : extensionsByType.values()) {
+      byResource.remove(uri);
+    }
+  }
+
+  @VisibleForTesting IResourceDescriptions getXtextIndex() {
+    return xtextIndex;
+  }
+}
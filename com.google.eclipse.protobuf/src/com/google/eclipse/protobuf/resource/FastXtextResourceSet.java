@@ -2,7 +2,7 @@ package com.google.eclipse.protobuf.resource;
 
 import static org.eclipse.xtext.resource.ClasspathUriUtil.isClasspathUri;
 
-import java.io.FileInputStream;
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.Map;
@@ -19,6 +19,7 @@ import com.google.eclipse.protobuf.util.Uris;
 import com.google.inject.Inject;
 
 public class FastXtextResourceSet extends SynchronizedXtextResourceSet {
+  @Inject private FileContentsCache fileContents;
   @Inject private Uris uris;
 
   @Override public URIConverter getURIConverter() {
@@ -55,11 +56,12 @@ public class FastXtextResourceSet extends SynchronizedXtextResourceSet {
               IFile file = uris.referredFile(uri);
               if (file != null && file.exists()) {
                 IPath location = file.getLocation();
-                return new FileInputStream(location.toFile());
+                fileContents.startListeningToWorkspaceChanges();
+                return fileContents.open(location.toFile());
               }
             }
             if (uri.isFile()) {
-              return new FileInputStream(uri.path());
+              return fileContents.open(new File(uri.path()));
             }
           }
           return null;
@@ -0,0 +1,195 @@
+/*
+ * Copyright (c) 2016 Google Inc.
+ *
+ * All rights reserved. This program and the accompanying materials are made available under the terms of the Eclipse
+ * Public License v1.0 which accompanies this distribution, and is available at
+ *
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package com.google.eclipse.protobuf.resource;
+
+import static java.nio.file.StandardOpenOption.READ;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+
+import org.eclipse.core.resources.IResource;
+import org.eclipse.core.resources.IResourceChangeEvent;
+import org.eclipse.core.resources.IResourceChangeListener;
+import org.eclipse.core.resources.IResourceDelta;
+import org.eclipse.core.resources.IResourceDeltaVisitor;
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IPath;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.cache.Weigher;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+
+/**
+ * Workspace-wide cache of the contents of .proto files.
+ * <p>
+ * Every resource set used to read the same file from disk every time it loaded it. This cache keeps the bytes of the
+ * files read through it, keyed by path, and serves them again as long as the file's modification time and size have
+ * not changed. Files are read with a {@code FileChannel}, in a single read for most files. The cache is bounded by the
+ * total size of the cached contents; its statistics are available through <code>{@link #stats()}</code>.
+ * </p>
+ * <p>
+ * Entries of workspace files are discarded as soon as a resource delta reports a change in them; entries of files
+ * outside the workspace are validated against the file's attributes on every read.
+ * </p>
+ */
+@Singleton public class FileContentsCache {
+  private static final long MAXIMUM_CACHED_BYTES = 64 * 1024 * 1024;
+
+  private final Cache<Path, FileContents> contents = CacheBuilder.newBuilder()
+      .maximumWeight(MAXIMUM_CACHED_BYTES)
+      .weigher(new Weigher<Path, FileContents>() {
+        @Override public int weigh(Path path, FileContents value) {
+          return value.bytes.length;
+        }
+      })
+      .recordStats()
+      .build();
+
+  @Inject private WorkspaceChangeDispatcher workspaceChanges;
+
+  private volatile boolean listeningToWorkspaceChanges;
+
+  /**
+   * Opens a stream to read the contents of the given file, from this cache if possible.
+   * @param file the file to read.
+   * @return a stream to read the contents of the given file.
+   * @throws IOException if the file does not exist or cannot be read.
+   */
+  public InputStream open(File file) throws IOException {
+    Path path = file.toPath().toAbsolutePath();
+    BasicFileAttributes attributes;
+    try {
+      attributes = Files.readAttributes(path, BasicFileAttributes.class);
+    } catch (NoSuchFileException e) {
+      contents.invalidate(path);
+      throw new FileNotFoundException(path.toString());
+    }
+    long lastModified = attributes.lastModifiedTime().toMillis();
+    long size = attributes.size();
+    FileContents cached = contents.getIfPresent(path);
+    if (cached == null || cached.lastModified != lastModified || cached.bytes.length != size) {
+      cached = new FileContents(lastModified, read(path, size));
+      contents.put(path, cached);
+    }
+    return new ByteArrayInputStream(cached.bytes);
+  }
+
+  private byte[] read(Path path, long expectedSize) throws IOException {
+    if (expectedSize > Integer.MAX_VALUE) {
+      throw new IOException("File too large: " + path);
+    }
+    try (FileChannel channel = FileChannel.open(path, READ)) {
+      ByteBuffer buffer = ByteBuffer.allocate((int) expectedSize);
+      while (buffer.hasRemaining() && channel.read(buffer) >= 0) {
+        // keep reading until the buffer is full or the end of the file is reached.
+      }
+      if (buffer.hasRemaining()) {
+        // The file got shorter while being read.
+        byte[] bytes = new byte[buffer.position()];
+        System.arraycopy(buffer.array(), 0, bytes, 0, bytes.length);
+        return bytes;
+      }
+      return buffer.array();
+    }
+  }
+
+  /**
+   * Starts discarding the contents of workspace files as soon as they change. Only needs to be called once.
+   */
+  public void startListeningToWorkspaceChanges() {
+    if (listeningToWorkspaceChanges) {
+      return;
+    }
+    synchronized (this) {
+      if (!listeningToWorkspaceChanges) {
+        workspaceChanges.addListener(new WorkspaceChangeListener());
+        listeningToWorkspaceChanges = true;
+      }
+    }
+  }
+
+  /**
+   * Discards the cached contents of the given file.
+   * @param file the given file.
+   */
+  public void invalidate(File file) {
+    contents.invalidate(file.toPath().toAbsolutePath());
+  }
+
+  /**
+   * Discards all the cached contents.
+   */
+  public void invalidateAll() {
+    contents.invalidateAll();
+  }
+
+  /**
+   * Returns the number of files in this cache.
+   * @return the number of files in this cache.
+   */
+  public long size() {
+    return contents.size();
+  }
+
+  /**
+   * Returns the statistics of this cache: hits, misses and evictions.
+   * @return the statistics of this cache.
+   */
+  public CacheStats stats() {
+    return contents.stats();
+  }
+
+  private static class FileContents {
+    final long lastModified;
+    final byte[] bytes;
+
+    FileContents(long lastModified, byte[] bytes) {
+      this.lastModified = lastModified;
+      this.bytes = bytes;
+    }
+  }
+
+  private class WorkspaceChangeListener implements IResourceChangeListener {
+    @Override public void resourceChanged(IResourceChangeEvent event) {
+      IResourceDelta delta = event.getDelta();
+      if (delta == null || contents.size() == 0) {
+        return;
+      }
+      try {
+        delta.accept(new IResourceDeltaVisitor() {
+          @Override public boolean visit(IResourceDelta delta) {
+            IResource resource = delta.getResource();
+            if (resource.getType() != IResource.FILE) {
+              return true;
+            }
+            IPath location = resource.getLocation();
+            if (location != null && delta.getKind() != IResourceDelta.ADDED) {
+              invalidate(location.toFile());
+            }
+            return false;
+          }
+        });
+      } catch (CoreException e) {
+        invalidateAll();
+      }
+    }
+  }
+}
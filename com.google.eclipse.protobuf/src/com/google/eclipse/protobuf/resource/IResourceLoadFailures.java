@@ -0,0 +1,42 @@
+/*
+ * Copyright (c) 2016 Google Inc.
+ *
+ * All rights reserved. This program and the accompanying materials are made available under the terms of the Eclipse
+ * Public License v1.0 which accompanies this distribution, and is available at
+ *
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package com.google.eclipse.protobuf.resource;
+
+import org.eclipse.emf.common.util.URI;
+
+import com.google.eclipse.protobuf.resource.IResourceLoadFailures.NullResourceLoadFailures;
+import com.google.inject.ImplementedBy;
+
+/**
+ * Remembers the resources that could not be loaded, so loading them is not attempted again until the files they refer
+ * to may have changed.
+ */
+@ImplementedBy(NullResourceLoadFailures.class)
+public interface IResourceLoadFailures {
+  /**
+   * Indicates whether loading the resource with the given URI failed, and nothing has changed since then.
+   * @param uri the URI of the resource.
+   * @return {@code true} if loading the resource is known to fail, {@code false} otherwise.
+   */
+  boolean isKnownToFail(URI uri);
+
+  /**
+   * Records that the resource with the given URI could not be loaded.
+   * @param uri the URI of the resource.
+   */
+  void loadFailed(URI uri);
+
+  class NullResourceLoadFailures implements IResourceLoadFailures {
+    @Override public boolean isKnownToFail(URI uri) {
+      return false;
+    }
+
+    @Override public void loadFailed(URI uri) {}
+  }
+}
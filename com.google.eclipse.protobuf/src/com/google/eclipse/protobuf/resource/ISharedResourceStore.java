@@ -0,0 +1,67 @@
+/*
+ * Copyright (c) 2016 Google Inc.
+ *
+ * All rights reserved. This program and the accompanying materials are made available under the terms of the Eclipse
+ * Public License v1.0 which accompanies this distribution, and is available at
+ *
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package com.google.eclipse.protobuf.resource;
+
+import static java.util.Collections.emptyList;
+
+import java.util.List;
+
+import org.eclipse.emf.common.util.URI;
+import org.eclipse.emf.ecore.resource.Resource;
+import org.eclipse.emf.ecore.resource.ResourceSet;
+
+import com.google.eclipse.protobuf.resource.ISharedResourceStore.NullSharedResourceStore;
+import com.google.inject.ImplementedBy;
+
+/**
+ * Store of imported resources shared by all resource sets. Resources in the store are parsed and linked only once,
+ * and are not modified afterwards.
+ */
+@ImplementedBy(NullSharedResourceStore.class)
+public interface ISharedResourceStore {
+  /**
+   * Indicates whether the resource with the given URI can be served from this store.
+   * @param uri the URI of the resource.
+   * @return {@code true} if the resource can be served from this store, {@code false} otherwise.
+   */
+  boolean isShareable(URI uri);
+
+  /**
+   * Returns the shared resource with the given URI, loading it if necessary. The shared resource is kept loaded at
+   * least as long as the given resource set is in use.
+   * @param uri the URI of the resource.
+   * @param requester the resource set that needs the shared resource.
+   * @return the shared resource, or {@code null} if the resource cannot be shared or cannot be loaded.
+   */
+  Resource sharedResource(URI uri, ResourceSet requester);
+
+  /**
+   * Parses the file with the given URI, if it can be shared and is not in this store yet, so it is only linked the next
+   * time it is requested. Can be called by several threads at the same time, and while other threads link shared
+   * resources.
+   * @param uri the URI of the file.
+   * @return the resolved URIs of the files imported by the parsed file, or an empty list if the file was not parsed
+   * (e.g. because it is already in this store, or cannot be loaded.)
+   */
+  List<URI> preload(URI uri);
+
+  class NullSharedResourceStore implements ISharedResourceStore {
+    @Override public boolean isShareable(URI uri) {
+      return false;
+    }
+
+    @Override public Resource sharedResource(URI uri, ResourceSet requester) {
+      return null;
+    }
+
+    @Override public List<URI> preload(URI uri) {
+      return emptyList();
+    }
+  }
+}
@@ -0,0 +1,153 @@
+/*
+ * Copyright (c) 2016 Google Inc.
+ *
+ * All rights reserved. This program and the accompanying materials are made available under the terms of the Eclipse
+ * Public License v1.0 which accompanies this distribution, and is available at
+ *
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package com.google.eclipse.protobuf.resource;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+
+import org.apache.log4j.Logger;
+import org.eclipse.emf.common.util.URI;
+import org.eclipse.xtext.resource.XtextResource;
+import org.eclipse.xtext.util.concurrent.IReadAccess;
+import org.eclipse.xtext.util.concurrent.IUnitOfWork;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.google.eclipse.protobuf.model.util.Imports;
+import com.google.eclipse.protobuf.model.util.Protobufs;
+import com.google.eclipse.protobuf.model.util.Resources;
+import com.google.eclipse.protobuf.protobuf.Import;
+import com.google.eclipse.protobuf.protobuf.Protobuf;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+
+/**
+ * Parses, in the background, the files imported directly or indirectly by a file opened in an editor.
+ * <p>
+ * Without prefetching, the linking thread of the editor parses the imported files one at a time, the first time
+ * scoping needs each of them. Instead, when a file is opened in an editor, its imports are resolved and the imported
+ * files are parsed in parallel, on a small pool of threads, into the <code>{@link ISharedResourceStore}</code>. The
+ * imports of each parsed file are prefetched as soon as it is parsed. When linking requests an imported file, the
+ * store attaches the parsed resource to its resource set and links it, without parsing it again.
+ * </p>
+ * <p>
+ * Prefetching never blocks the caller, and is best effort: files that cannot be resolved, loaded or shared are
+ * skipped. The threads are started on first use, and stopped by <code>{@link #shutdown()}</code> when the plug-in
+ * stops.
+ * </p>
+ */
+@Singleton public class ImportPrefetcher {
+  private static Logger logger = Logger.getLogger(ImportPrefetcher.class);
+  private static final int MAXIMUM_THREADS = 4;
+
+  @Inject private ISharedResourceStore sharedResources;
+  @Inject private Imports imports;
+  @Inject private Protobufs protobufs;
+  @Inject private Resources resources;
+
+  private ExecutorService executor;
+  private boolean shutdown;
+
+  /**
+   * Starts parsing, in the background, the files imported directly or indirectly by the resource of the given
+   * document. Returns immediately.
+   * @param document gives read access to the resource of a file opened in an editor.
+   */
+  public void prefetchImportsOf(final IReadAccess<XtextResource> document) {
+    execute(new Runnable() {
+      @Override public void run() {
+        Set<URI> visited = Collections.newSetFromMap(new ConcurrentHashMap<URI, Boolean>());
+        for (URI uri : importedUrisOf(document)) {
+          prefetch(uri, visited);
+        }
+      }
+    });
+  }
+
+  private void prefetch(final URI uri, final Set<URI> visited) {
+    if (!visited.add(uri)) {
+      return;
+    }
+    execute(new Runnable() {
+      @Override public void run() {
+        for (URI imported : sharedResources.preload(uri)) {
+          prefetch(imported, visited);
+        }
+      }
+    });
+  }
+
+  private void execute(final Runnable task) {
+    ExecutorService currentExecutor = executor();
+    if (currentExecutor == null) {
+      return;
+    }
+    try {
+      currentExecutor.execute(new Runnable() {
+        @Override public void run() {
+          try {
+            task.run();
+          } catch (RuntimeException e) {
+            // Prefetching is only an optimization. Linking will load the imported files again and report any problem.
+            logger.debug("Unable to prefetch imports", e);
+          }
+        }
+      });
+    } catch (RejectedExecutionException e) {
+      // The plug-in is stopping.
+    }
+  }
+
+  private synchronized ExecutorService executor() {
+    if (executor == null && !shutdown) {
+      int threads = Math.min(MAXIMUM_THREADS, Runtime.getRuntime().availableProcessors());
+      executor = Executors.newFixedThreadPool(threads,
+          new ThreadFactoryBuilder().setNameFormat("protobuf-import-prefetcher-%d").setDaemon(true).build());
+    }
+    return executor;
+  }
+
+  private List<URI> importedUrisOf(IReadAccess<XtextResource> document) {
+    return document.readOnly(new IUnitOfWork<List<URI>, XtextResource>() {
+      @Override public List<URI> exec(XtextResource resource) {
+        List<URI> importedUris = new ArrayList<>();
+        Protobuf root = (resource == null) ? null : resources.rootOf(resource);
+        if (root == null) {
+          return importedUris;
+        }
+        for (Import anImport : protobufs.importsIn(root)) {
+          if (imports.isImportingDescriptor(anImport)) {
+            continue;
+          }
+          URI uri = imports.resolvedUriOf(anImport);
+          if (uri != null) {
+            importedUris.add(uri);
+          }
+        }
+        return importedUris;
+      }
+    });
+  }
+
+  /**
+   * Stops the background threads, abandoning any prefetching in progress. Files are no longer prefetched afterwards.
+   */
+  public synchronized void shutdown() {
+    shutdown = true;
+    if (executor != null) {
+      executor.shutdownNow();
+      executor = null;
+    }
+  }
+}
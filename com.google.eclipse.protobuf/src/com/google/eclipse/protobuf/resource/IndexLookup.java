@@ -17,15 +17,18 @@ import org.eclipse.xtext.resource.IResourceDescriptions;
 
 import com.google.common.annotations.VisibleForTesting;
 import com.google.inject.Inject;
+import com.google.inject.Singleton;
 
 /**
  * Simplified Xtext index lookups.
  *
  * @author alruiz@google.com (Alex Ruiz)
  */
-public class IndexLookup {
+@Singleton public class IndexLookup {
   @Inject private IResourceDescriptions xtextIndex;
 
+  private UriSuffixTrie indexedUris;
+
   /**
    * Finds the resource description for the given path.
    * @param path the given path.
@@ -46,6 +49,11 @@ public class IndexLookup {
   }
 
   private IResourceDescription segmentMatching(IPath path) {
+    UriSuffixTrie trie = indexedUris();
+    if (trie != null) {
+      URI uri = trie.bestMatch(path.segments());
+      return (uri == null) ? null : xtextIndex.getResourceDescription(uri);
+    }
     for (IResourceDescription description : xtextIndex.getAllResourceDescriptions()) {
       URI resourceUri = description.getURI();
       if (areReferringToSameFile(path, resourceUri)) {
@@ -55,6 +63,32 @@ public class IndexLookup {
     return null;
   }
 
+  /*
+   * The URIs in the index can only be kept in a trie if the index notifies about its changes; otherwise we would need
+   * to rebuild the trie on every lookup, which is slower than scanning the index.
+   */
+  private synchronized UriSuffixTrie indexedUris() {
+    if (indexedUris == null && xtextIndex instanceof IResourceDescription.Event.Source) {
+      final UriSuffixTrie trie = new UriSuffixTrie();
+      ((IResourceDescription.Event.Source) xtextIndex).addListener(new IResourceDescription.Event.Listener() {
+        @Override public void descriptionsChanged(IResourceDescription.Event event) {
+          for (IResourceDescription.Delta delta : event.getDeltas()) {
+            if (delta.getNew() == null) {
+              trie.remove(delta.getUri());
+            } else {
+              trie.add(delta.getUri());
+            }
+          }
+        }
+      });
+      for (IResourceDescription description : xtextIndex.getAllResourceDescriptions()) {
+        trie.add(description.getURI());
+      }
+      indexedUris = trie;
+    }
+    return indexedUris;
+  }
+
   @VisibleForTesting boolean areReferringToSameFile(IPath p, URI u) {
     int pIndex = p.segmentCount() - 1;
     int uIndex = u.segmentCount() - 1;
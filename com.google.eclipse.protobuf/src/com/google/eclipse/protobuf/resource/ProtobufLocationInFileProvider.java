@@ -0,0 +1,62 @@
+/*
+ * Copyright (c) 2016 Google Inc.
+ *
+ * All rights reserved. This program and the accompanying materials are made available under the terms of the Eclipse
+ * Public License v1.0 which accompanies this distribution, and is available at
+ *
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package com.google.eclipse.protobuf.resource;
+
+import org.eclipse.emf.ecore.EObject;
+import org.eclipse.emf.ecore.EStructuralFeature;
+import org.eclipse.emf.ecore.resource.Resource;
+import org.eclipse.xtext.resource.DefaultLocationInFileProvider;
+import org.eclipse.xtext.util.ITextRegion;
+
+import com.google.eclipse.protobuf.linking.ProtobufResource;
+import com.google.inject.Singleton;
+
+/**
+ * Provides the location of elements whose resource has discarded its node model (e.g. imported files) from the text
+ * regions the resource recorded, instead of from the node model. The location of a feature of an element is not
+ * recorded, so the node model of the resource is rebuilt to find it.
+ */
+@Singleton public class ProtobufLocationInFileProvider extends DefaultLocationInFileProvider {
+  @Override public ITextRegion getSignificantTextRegion(EObject o) {
+    ITextRegion region = recordedTextRegionOf(o, true);
+    return (region != null) ? region : super.getSignificantTextRegion(o);
+  }
+
+  @Override public ITextRegion getSignificantTextRegion(EObject owner, EStructuralFeature feature, int indexInList) {
+    // Only the regions of whole elements are recorded; the region of a feature requires the node model.
+    ensureNodeModelOf(owner);
+    return super.getSignificantTextRegion(owner, feature, indexInList);
+  }
+
+  @Override public ITextRegion getFullTextRegion(EObject o) {
+    ITextRegion region = recordedTextRegionOf(o, false);
+    return (region != null) ? region : super.getFullTextRegion(o);
+  }
+
+  @Override public ITextRegion getFullTextRegion(EObject owner, EStructuralFeature feature, int indexInList) {
+    ensureNodeModelOf(owner);
+    return super.getFullTextRegion(owner, feature, indexInList);
+  }
+
+  private void ensureNodeModelOf(EObject o) {
+    Resource resource = (o == null) ? null : o.eResource();
+    if (resource instanceof ProtobufResource) {
+      ((ProtobufResource) resource).ensureNodeModel();
+    }
+  }
+
+  private ITextRegion recordedTextRegionOf(EObject o, boolean significant) {
+    Resource resource = (o == null) ? null : o.eResource();
+    if (!(resource instanceof ProtobufResource)) {
+      return null;
+    }
+    ProtobufResource protobufResource = (ProtobufResource) resource;
+    return protobufResource.isNodeModelDiscarded() ? protobufResource.recordedTextRegionOf(o, significant) : null;
+  }
+}
@@ -0,0 +1,99 @@
+/*
+ * Copyright (c) 2016 Google Inc.
+ *
+ * All rights reserved. This program and the accompanying materials are made available under the terms of the Eclipse
+ * Public License v1.0 which accompanies this distribution, and is available at
+ *
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package com.google.eclipse.protobuf.resource;
+
+import static com.google.eclipse.protobuf.protobuf.ProtobufPackage.Literals.EXTENSIBLE_TYPE_LINK__TARGET;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.eclipse.emf.ecore.EObject;
+import org.eclipse.xtext.naming.QualifiedName;
+import org.eclipse.xtext.resource.EObjectDescription;
+import org.eclipse.xtext.resource.IEObjectDescription;
+import org.eclipse.xtext.resource.impl.DefaultResourceDescriptionStrategy;
+import org.eclipse.xtext.util.IAcceptor;
+
+import com.google.eclipse.protobuf.model.util.INodes;
+import com.google.eclipse.protobuf.model.util.IndexedElements;
+import com.google.eclipse.protobuf.protobuf.ExtensibleTypeLink;
+import com.google.eclipse.protobuf.protobuf.Group;
+import com.google.eclipse.protobuf.protobuf.IndexedElement;
+import com.google.eclipse.protobuf.protobuf.Message;
+import com.google.eclipse.protobuf.protobuf.TypeExtension;
+import com.google.inject.Inject;
+
+/**
+ * Exports the fields declared in {@code extend} blocks with the simple name of the type they extend and their number,
+ * so they can be found through the Xtext index (see <code>{@link ExtensionIndex}</code>) without loading the files that
+ * declare them.
+ * <p>
+ * The extended type is not resolved while indexing; its simple name is taken from the text of the reference.
+ * </p>
+ */
+public class ProtobufResourceDescriptionStrategy extends DefaultResourceDescriptionStrategy {
+  /** Key of the user data holding the simple name of the type extended by a field. */
+  public static final String EXTENDED_TYPE = "extendedType";
+
+  /** Key of the user data holding the number of a field declared in an {@code extend} block. */
+  public static final String FIELD_NUMBER = "fieldNumber";
+
+  @Inject private IndexedElements indexedElements;
+  @Inject private INodes nodes;
+
+  @Override public boolean createEObjectDescriptions(EObject e, IAcceptor<IEObjectDescription> acceptor) {
+    if (!(e instanceof IndexedElement) || !(e.eContainer() instanceof TypeExtension)) {
+      return super.createEObjectDescriptions(e, acceptor);
+    }
+    QualifiedName name = getQualifiedNameProvider().getFullyQualifiedName(e);
+    if (name != null) {
+      acceptor.accept(EObjectDescription.create(name, e, userDataOf((IndexedElement) e)));
+    }
+    // Groups contain fields of their own.
+    return true;
+  }
+
+  private Map<String, String> userDataOf(IndexedElement e) {
+    Map<String, String> userData = new HashMap<>();
+    String extendedType = extendedTypeNameOf((TypeExtension) e.eContainer());
+    if (extendedType != null) {
+      userData.put(EXTENDED_TYPE, extendedType);
+    }
+    long number = indexedElements.indexOf(e);
+    if (number != Long.MIN_VALUE) {
+      userData.put(FIELD_NUMBER, String.valueOf(number));
+    }
+    return userData;
+  }
+
+  String extendedTypeNameOf(TypeExtension extension) {
+    ExtensibleTypeLink link = extension.getType();
+    if (link == null) {
+      return null;
+    }
+    EObject target = (EObject) link.eGet(EXTENSIBLE_TYPE_LINK__TARGET, false);
+    if (target instanceof Message && !target.eIsProxy()) {
+      return ((Message) target).getName();
+    }
+    if (target instanceof Group && !target.eIsProxy()) {
+      return ((Group) target).getName();
+    }
+    String text = nodes.textOf(nodes.firstNodeForFeature(link, EXTENSIBLE_TYPE_LINK__TARGET));
+    return (text == null || text.isEmpty()) ? null : simpleNameOf(text);
+  }
+
+  /**
+   * Returns the last segment of the given type name (e.g. "FieldOptions" for ".google.protobuf.FieldOptions".)
+   * @param typeName the given type name.
+   * @return the last segment of the given type name.
+   */
+  public static String simpleNameOf(String typeName) {
+    return typeName.substring(typeName.lastIndexOf('.') + 1).trim();
+  }
+}
@@ -0,0 +1,33 @@
+/*
+ * Copyright (c) 2016 Google Inc.
+ *
+ * All rights reserved. This program and the accompanying materials are made available under the terms of the Eclipse
+ * Public License v1.0 which accompanies this distribution, and is available at
+ *
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package com.google.eclipse.protobuf.resource;
+
+import org.eclipse.emf.ecore.resource.Resource;
+import org.eclipse.xtext.util.OnChangeEvictingCache;
+
+import com.google.eclipse.protobuf.linking.ProtobufResource;
+import com.google.inject.Provider;
+import com.google.inject.Singleton;
+
+/**
+ * Cache of values derived from the contents of a resource. Values of resources shared by several resource sets (see
+ * <code>{@link ISharedResourceStore}</code>) are computed and stored while holding the lock of the shared resource,
+ * since the adapter that keeps them is not meant to be used by several threads at the same time.
+ */
+@Singleton public class ProtobufResourceScopeCache extends OnChangeEvictingCache {
+  @Override public <T> T get(Object key, Resource resource, Provider<T> provider) {
+    Object lock = (resource instanceof ProtobufResource) ? ((ProtobufResource) resource).sharedLock() : null;
+    if (lock == null) {
+      return super.get(key, resource, provider);
+    }
+    synchronized (lock) {
+      return super.get(key, resource, provider);
+    }
+  }
+}
@@ -8,10 +8,12 @@
  */
 package com.google.eclipse.protobuf.resource;
 
+import org.eclipse.core.runtime.OperationCanceledException;
 import org.eclipse.emf.common.util.URI;
 import org.eclipse.emf.ecore.resource.Resource;
 import org.eclipse.emf.ecore.resource.ResourceSet;
 
+import com.google.inject.Inject;
 import com.google.inject.Singleton;
 
 /**
@@ -21,8 +23,15 @@ import com.google.inject.Singleton;
  */
 @Singleton public class ResourceSets {
 
+  @Inject private ISharedResourceStore sharedResources;
+  @Inject private IResourceLoadFailures loadFailures;
+
   /**
-   * Finds in the given <code>{@link ResourceSet}</code> the resource referred by the given URI.
+   * Finds in the given <code>{@link ResourceSet}</code> the resource referred by the given URI. If the
+   * {@code ResourceSet} does not contain the resource, and the resource can be shared, it is taken from the
+   * <code>{@link ISharedResourceStore}</code> instead of being loaded into the {@code ResourceSet}. Resources that
+   * could not be loaded before are not loaded again until <code>{@link IResourceLoadFailures}</code> forgets them.
+   * Cancellation and errors (e.g. {@code OutOfMemoryError}) are not treated as load failures, and are propagated.
    * @param resourceSet a collection of resources.
    * @param uri the given URI.
    * @return the resource referred by the given URI, or {@code null} is the given {@code ResourceSet} does
@@ -30,9 +39,31 @@ import com.google.inject.Singleton;
    */
   public Resource findResource(ResourceSet resourceSet, URI uri) {
     try {
+      Resource resource = resourceSet.getResource(uri, false);
+      if (resource != null) {
+        // Resources in the resource set that are not loaded (e.g. unloaded ones) are loaded on demand.
+        return resource.isLoaded() ? resource : resourceSet.getResource(uri, true);
+      }
+      if (loadFailures.isKnownToFail(uri)) {
+        return null;
+      }
+      if (sharedResources.isShareable(uri)) {
+        resource = sharedResources.sharedResource(uri, resourceSet);
+      }
+      if (resource != null) {
+        return resource;
+      }
       return resourceSet.getResource(uri, true);
-    } catch (Throwable t) {
+    } catch (RuntimeException e) {
+      if (isCancellation(e)) {
+        throw e;
+      }
+      loadFailures.loadFailed(uri);
       return null;
     }
   }
+
+  private static boolean isCancellation(RuntimeException e) {
+    return e instanceof OperationCanceledException || e.getCause() instanceof OperationCanceledException;
+  }
 }
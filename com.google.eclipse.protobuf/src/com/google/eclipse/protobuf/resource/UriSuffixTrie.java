@@ -0,0 +1,109 @@
+/*
+ * Copyright (c) 2016 Google Inc.
+ *
+ * All rights reserved. This program and the accompanying materials are made available under the terms of the Eclipse
+ * Public License v1.0 which accompanies this distribution, and is available at
+ *
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package com.google.eclipse.protobuf.resource;
+
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+import org.eclipse.emf.common.util.URI;
+
+/**
+ * Trie of URIs, keyed by their segments in reverse order. Finds the URIs whose trailing segments match a path in
+ * time proportional to the length of the path, regardless of the number of URIs.
+ */
+class UriSuffixTrie {
+  private final Node root = new Node();
+
+  synchronized void add(URI uri) {
+    Node node = root;
+    for (int i = uri.segmentCount() - 1; i >= 0; i--) {
+      node = node.childFor(uri.segment(i));
+    }
+    if (node.uris.add(uri)) {
+      incrementCounts(uri, 1);
+    }
+  }
+
+  synchronized void remove(URI uri) {
+    Node node = root;
+    for (int i = uri.segmentCount() - 1; i >= 0; i--) {
+      node = node.children.get(uri.segment(i));
+      if (node == null) {
+        return;
+      }
+    }
+    if (node.uris.remove(uri)) {
+      incrementCounts(uri, -1);
+    }
+  }
+
+  private void incrementCounts(URI uri, int delta) {
+    Node node = root;
+    node.uriCount += delta;
+    for (int i = uri.segmentCount() - 1; i >= 0; i--) {
+      Node child = node.children.get(uri.segment(i));
+      child.uriCount += delta;
+      if (child.uriCount == 0) {
+        node.children.remove(uri.segment(i));
+        return;
+      }
+      node = child;
+    }
+  }
+
+  /**
+   * Finds a URI referring to the same file as the given path segments: either all the segments of the path are the
+   * trailing segments of the URI, or all the segments of the URI are the trailing segments of the path. URIs matching
+   * more segments are preferred.
+   * @param segments the segments of the path to match.
+   * @return a matching URI, or {@code null} if none is found.
+   */
+  synchronized URI bestMatch(String[] segments) {
+    Node node = root;
+    URI shorterMatch = null;
+    for (int i = segments.length - 1; i >= 0; i--) {
+      node = node.children.get(segments[i]);
+      if (node == null) {
+        return shorterMatch;
+      }
+      if (!node.uris.isEmpty()) {
+        shorterMatch = node.uris.iterator().next();
+      }
+    }
+    return anyUriIn(node);
+  }
+
+  private URI anyUriIn(Node node) {
+    Node current = node;
+    while (current.uriCount > 0) {
+      if (!current.uris.isEmpty()) {
+        return current.uris.iterator().next();
+      }
+      current = current.children.values().iterator().next();
+    }
+    return null;
+  }
+
+  private static class Node {
+    final Map<String, Node> children = new HashMap<>();
+    final Set<URI> uris = new LinkedHashSet<>();
+    int uriCount;
+
+    Node childFor(String segment) {
+      Node child = children.get(segment);
+      if (child == null) {
+        child = new Node();
+        children.put(segment, child);
+      }
+      return child;
+    }
+  }
+}
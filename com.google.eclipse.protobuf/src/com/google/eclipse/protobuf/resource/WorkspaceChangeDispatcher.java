@@ -0,0 +1,76 @@
+/*
+ * Copyright (c) 2016 Google Inc.
+ *
+ * All rights reserved. This program and the accompanying materials are made available under the terms of the Eclipse
+ * Public License v1.0 which accompanies this distribution, and is available at
+ *
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package com.google.eclipse.protobuf.resource;
+
+import static org.eclipse.core.resources.IResourceChangeEvent.POST_CHANGE;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.apache.log4j.Logger;
+import org.eclipse.core.resources.IResourceChangeEvent;
+import org.eclipse.core.resources.IResourceChangeListener;
+import org.eclipse.core.resources.ResourcesPlugin;
+
+import com.google.inject.Singleton;
+
+/**
+ * The only listener of workspace changes registered by this plug-in. Forwards the resource deltas reported after each
+ * change to the caches that depend on the contents of the workspace, which add their listeners on first use.
+ * <p>
+ * The plug-in adds the dispatcher to the workspace when it creates the injector of the language, and removes it when
+ * the plug-in stops (see <code>{@link #start()}</code> and <code>{@link #stop()}</code>,) so no listener outlives the
+ * plug-in.
+ * </p>
+ */
+@Singleton public class WorkspaceChangeDispatcher implements IResourceChangeListener {
+  private static Logger logger = Logger.getLogger(WorkspaceChangeDispatcher.class);
+
+  private final List<IResourceChangeListener> listeners = new CopyOnWriteArrayList<>();
+  private boolean started;
+
+  /**
+   * Adds a listener to be notified after each change in the workspace, while this dispatcher is started.
+   * @param listener the listener to add.
+   */
+  public void addListener(IResourceChangeListener listener) {
+    listeners.add(listener);
+  }
+
+  /**
+   * Starts listening to changes in the workspace. Does nothing if already started.
+   */
+  public synchronized void start() {
+    if (!started) {
+      ResourcesPlugin.getWorkspace().addResourceChangeListener(this, POST_CHANGE);
+      started = true;
+    }
+  }
+
+  /**
+   * Stops listening to changes in the workspace. Does nothing if not started.
+   */
+  public synchronized void stop() {
+    if (started) {
+      ResourcesPlugin.getWorkspace().removeResourceChangeListener(this);
+      started = false;
+    }
+  }
+
+  @Override public void resourceChanged(IResourceChangeEvent event) {
+    for (IResourceChangeListener listener : listeners) {
+      try {
+        listener.resourceChanged(event);
+      } catch (RuntimeException e) {
+        // One cache failing to update should not keep the others stale.
+        logger.error("Unable to process changes in the workspace", e);
+      }
+    }
+  }
+}
@@ -11,29 +11,48 @@ package com.google.eclipse.protobuf.scoping;
 import static com.google.common.collect.Sets.newHashSet;
 import static java.util.Collections.emptySet;
 import static org.eclipse.xtext.resource.EObjectDescription.create;
+import static com.google.eclipse.protobuf.protobuf.ProtobufPackage.Literals.COMPLEX_TYPE;
+import static com.google.eclipse.protobuf.protobuf.ProtobufPackage.Literals.ENUM;
+import static com.google.eclipse.protobuf.protobuf.ProtobufPackage.Literals.EXTENSIBLE_TYPE;
+import static com.google.eclipse.protobuf.protobuf.ProtobufPackage.Literals.GROUP;
+import static com.google.eclipse.protobuf.protobuf.ProtobufPackage.Literals.MESSAGE;
 
+import com.google.common.collect.ImmutableMap;
 import com.google.eclipse.protobuf.model.util.Imports;
 import com.google.eclipse.protobuf.naming.LocalNamesProvider;
 import com.google.eclipse.protobuf.naming.NormalNamingStrategy;
 import com.google.eclipse.protobuf.protobuf.ComplexType;
+import com.google.eclipse.protobuf.protobuf.Enum;
+import com.google.eclipse.protobuf.protobuf.ExtensibleType;
+import com.google.eclipse.protobuf.protobuf.Group;
 import com.google.eclipse.protobuf.protobuf.Import;
+import com.google.eclipse.protobuf.protobuf.Message;
 import com.google.eclipse.protobuf.protobuf.Package;
 import com.google.eclipse.protobuf.util.EResources;
 import com.google.inject.Inject;
 
 import org.eclipse.core.resources.IProject;
+import org.eclipse.emf.ecore.EClass;
 import org.eclipse.emf.ecore.EObject;
 import org.eclipse.xtext.naming.QualifiedName;
 import org.eclipse.xtext.resource.IEObjectDescription;
 
 import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 /**
  * @author alruiz@google.com (Alex Ruiz)
  */
 class ComplexTypeFinderStrategy implements ModelElementFinder.FinderStrategy<Class<? extends ComplexType>> {
+  private static final Map<Class<? extends ComplexType>, EClass> ECLASSES_BY_TYPE = ImmutableMap.of(
+      ComplexType.class, COMPLEX_TYPE,
+      ExtensibleType.class, EXTENSIBLE_TYPE,
+      Message.class, MESSAGE,
+      Group.class, GROUP,
+      Enum.class, ENUM);
+
   @Inject private PackageIntersectionDescriptions packageIntersectionDescriptions;
   @Inject private ProtoDescriptorProvider descriptorProvider;
   @Inject private LocalNamesProvider localNamesProvider;
@@ -41,6 +60,12 @@ class ComplexTypeFinderStrategy implements ModelElementFinder.FinderStrategy<Cla
   @Inject private QualifiedNameDescriptions qualifiedNamesDescriptions;
   @Inject private Imports imports;
 
+  @Override public EClass importedElementType(Class<? extends ComplexType> typeOfComplexType) {
+    EClass type = ECLASSES_BY_TYPE.get(typeOfComplexType);
+    // Elements of any other type are filtered out by 'imported'.
+    return (type == null) ? COMPLEX_TYPE : type;
+  }
+
   @Override public Collection<IEObjectDescription> imported(Package fromImporter, Package fromImported, Object target,
       Class<? extends ComplexType> typeOfComplexType) {
     if (!typeOfComplexType.isInstance(target)) {
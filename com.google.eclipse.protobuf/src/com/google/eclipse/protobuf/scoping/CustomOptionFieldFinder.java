@@ -9,10 +9,20 @@
 package com.google.eclipse.protobuf.scoping;
 
 import static java.util.Collections.emptySet;
+import static java.util.Collections.unmodifiableCollection;
+
+import static org.eclipse.xtext.util.Tuples.create;
+import static org.eclipse.xtext.util.Tuples.pair;
 
 import java.util.Collection;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
 
+import org.eclipse.emf.ecore.resource.Resource;
 import org.eclipse.xtext.resource.IEObjectDescription;
+import org.eclipse.xtext.scoping.IScope;
+import org.eclipse.xtext.util.IResourceScopeCache;
 
 import com.google.eclipse.protobuf.model.util.OptionFields;
 import com.google.eclipse.protobuf.model.util.Options;
@@ -24,9 +34,23 @@ import com.google.inject.Inject;
 import com.google.inject.Provider;
 
 /**
+ * Finds the fields that can be referred to by the fields of a custom option (e.g. "a", "b" and "c" in
+ * {@code (my.opt).a.b.c}.)
+ * <p>
+ * The element each field of an option is resolved against (the source of the option for the first field, the target of
+ * the previous field for the others) is computed once per position and kept in the resource of the option. The fields
+ * that can be referred to from a given element are computed once per element and also kept in the resource, indexed
+ * by name, so all the options in a file that go through the same element share them. Both are discarded when the
+ * resource changes.
+ * </p>
+ *
  * @author alruiz@google.com (Alex Ruiz)
  */
 class CustomOptionFieldFinder {
+  private static final String PATH_CACHE_KEY = CustomOptionFieldFinder.class.getName() + ".path";
+  private static final String CANDIDATES_CACHE_KEY = CustomOptionFieldFinder.class.getName() + ".candidates";
+
+  @Inject private final IResourceScopeCache cache = IResourceScopeCache.NullImpl.INSTANCE;
   @Inject private OptionFields optionFields;
   @Inject private Options options;
 
@@ -36,40 +60,99 @@ class CustomOptionFieldFinder {
 
   Collection<IEObjectDescription> findOptionFields(AbstractCustomOption customOption, FinderStrategy strategy,
       OptionField field) {
-    // TODO(alruiz): remove Provider of IndexedElement.
-    final AbstractOption option = (AbstractOption) customOption;
-    IndexedElement e = referredField(customOption, field, new Provider<IndexedElement>() {
-      @Override public IndexedElement get() {
-        return options.rootSourceOf(option);
-      }
-    });
+    IndexedElement e = referredField(customOption, field);
     if (e != null) {
-      return strategy.findOptionFields(e);
+      return candidatesOf(e, strategy, customOption).descriptions;
     }
     return emptySet();
   }
 
-  private IndexedElement referredField(AbstractCustomOption customOption, OptionField field,
-      Provider<IndexedElement> provider) {
-    OptionField previous = null;
-    boolean isFirstField = true;
-    for (OptionField current : options.fieldsOf(customOption)) {
-      if (current == field) {
-        return (isFirstField) ? provider.get() : optionFields.sourceOf(previous);
-      }
-      previous = current;
-      isFirstField = false;
+  /**
+   * Returns the scope containing the fields the given field of the given option can refer to.
+   * @param customOption the given option.
+   * @param strategy finds the fields that can be referred to from an element.
+   * @param field the given field.
+   * @return the scope containing the fields the given field can refer to.
+   */
+  IScope findOptionFieldScope(AbstractCustomOption customOption, FinderStrategy strategy, OptionField field) {
+    IndexedElement e = referredField(customOption, field);
+    if (e != null) {
+      return candidatesOf(e, strategy, customOption).scope;
     }
-    if (field == null) {
-      if (previous == null) {
-        return provider.get();
+    return ProtobufScopeProvider.createEmptyScope();
+  }
+
+  private Candidates candidatesOf(final IndexedElement e, final FinderStrategy strategy,
+      AbstractCustomOption customOption) {
+    Provider<Candidates> provider = new Provider<Candidates>() {
+      @Override public Candidates get() {
+        return new Candidates(strategy.findOptionFields(e));
       }
-      return optionFields.sourceOf(previous);
+    };
+    Resource resource = customOption.eResource();
+    if (resource == null) {
+      return provider.get();
     }
-    return null;
+    return cache.get(create(CANDIDATES_CACHE_KEY, strategy.getClass(), e), resource, provider);
+  }
+
+  private IndexedElement referredField(final AbstractCustomOption customOption, OptionField field) {
+    Provider<ResolvedPath> provider = new Provider<ResolvedPath>() {
+      @Override public ResolvedPath get() {
+        return new ResolvedPath(customOption);
+      }
+    };
+    Resource resource = customOption.eResource();
+    ResolvedPath path = (resource == null) ? provider.get() : cache.get(pair(PATH_CACHE_KEY, customOption), resource,
+        provider);
+    return path.referredField(field);
   }
 
   static interface FinderStrategy {
     Collection<IEObjectDescription> findOptionFields(IndexedElement reference);
   }
+
+  /**
+   * The elements the fields of a custom option are resolved against, by position. The last position is used when no
+   * field is given (e.g. when proposing the next field.) Only resolved elements are kept: a position whose element
+   * cannot be found yet (e.g. because the previous field is not linked) is looked up again next time.
+   */
+  private class ResolvedPath {
+    private final AbstractCustomOption customOption;
+    private final List<OptionField> fields;
+    private final Map<OptionField, Integer> positions;
+    private final IndexedElement[] referred;
+
+    ResolvedPath(AbstractCustomOption customOption) {
+      this.customOption = customOption;
+      fields = options.fieldsOf(customOption);
+      positions = new IdentityHashMap<>(fields.size());
+      for (int i = 0; i < fields.size(); i++) {
+        positions.put(fields.get(i), i);
+      }
+      referred = new IndexedElement[fields.size() + 1];
+    }
+
+    IndexedElement referredField(OptionField field) {
+      Integer position = (field == null) ? Integer.valueOf(fields.size()) : positions.get(field);
+      if (position == null) {
+        return null;
+      }
+      if (referred[position] == null) {
+        referred[position] = (position == 0) ? options.rootSourceOf((AbstractOption) customOption)
+            : optionFields.sourceOf(fields.get(position - 1));
+      }
+      return referred[position];
+    }
+  }
+
+  private static class Candidates {
+    final Collection<IEObjectDescription> descriptions;
+    final IScope scope;
+
+    Candidates(Collection<IEObjectDescription> descriptions) {
+      this.descriptions = unmodifiableCollection(descriptions);
+      scope = ProtobufScopeProvider.createScope(this.descriptions);
+    }
+  }
 }
@@ -13,11 +13,13 @@ import static java.util.Collections.emptySet;
 import static org.eclipse.xtext.resource.EObjectDescription.create;
 
 import static com.google.common.collect.Sets.newHashSet;
+import static com.google.eclipse.protobuf.protobuf.ProtobufPackage.Literals.TYPE_EXTENSION;
 
 import java.util.Collection;
 import java.util.List;
 import java.util.Set;
 
+import org.eclipse.emf.ecore.EClass;
 import org.eclipse.xtext.naming.QualifiedName;
 import org.eclipse.xtext.resource.IEObjectDescription;
 
@@ -40,6 +42,10 @@ class CustomOptionFinderStrategy implements ModelElementFinder.FinderStrategy<Op
   @Inject private QualifiedNameDescriptions qualifiedNamesDescriptions;
   @Inject private TypeExtensions typeExtensions;
 
+  @Override public EClass importedElementType(OptionType optionType) {
+    return TYPE_EXTENSION;
+  }
+
   @Override public Collection<IEObjectDescription> imported(Package fromImporter, Package fromImported, Object target,
       OptionType optionType) {
     if (!isExtendingOptionMessage(target, optionType)) {
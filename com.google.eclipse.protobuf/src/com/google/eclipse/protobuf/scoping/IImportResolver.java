@@ -32,6 +32,16 @@ public interface IImportResolver {
    */
   void invalidateCacheFor(Import anImport);
 
+  /**
+   * Returns the current epoch of this resolver. The epoch changes whenever imports resolved before may resolve
+   * differently (e.g. when files are added or removed, or when an import resolves to a different file after its
+   * cached result is invalidated), so callers can cache results derived from resolved imports for as long as the
+   * epoch stays the same.
+   *
+   * @return the current epoch of this resolver.
+   */
+  long epoch();
+
   class NullImportResolver implements IImportResolver {
     @Override public String resolve(Import anImport) {
       throw new UnsupportedOperationException();
@@ -41,5 +51,10 @@ public interface IImportResolver {
     public void invalidateCacheFor(Import anImport) {
       throw new UnsupportedOperationException();
     }
+
+    @Override
+    public long epoch() {
+      return 0;
+    }
   }
 }
\ No newline at end of file
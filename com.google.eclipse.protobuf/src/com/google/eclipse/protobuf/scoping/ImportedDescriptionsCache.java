@@ -0,0 +1,172 @@
+/*
+ * Copyright (c) 2016 Google Inc.
+ *
+ * All rights reserved. This program and the accompanying materials are made available under the terms of the Eclipse
+ * Public License v1.0 which accompanies this distribution, and is available at
+ *
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package com.google.eclipse.protobuf.scoping;
+
+import static org.eclipse.xtext.resource.EObjectDescription.create;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.eclipse.emf.common.util.URI;
+import org.eclipse.emf.ecore.EObject;
+import org.eclipse.emf.ecore.resource.Resource;
+import org.eclipse.xtext.naming.QualifiedName;
+import org.eclipse.xtext.resource.IEObjectDescription;
+
+import com.google.common.base.Objects;
+import com.google.common.base.Supplier;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.eclipse.protobuf.protobuf.Package;
+import com.google.eclipse.protobuf.resource.ContentHashes;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+
+/**
+ * Workspace-wide cache of the descriptions found in imported files.
+ * <p>
+ * Entries are keyed by the URIs and content hashes of the imported files, so they survive reloading those files or
+ * loading them in a different resource set (e.g. when a new editor is opened, or during a clean build.) Descriptions
+ * are stored as names and URIs, not as model objects, and are resolved against the resources passed in each time they
+ * are retrieved.
+ * </p>
+ */
+@Singleton class ImportedDescriptionsCache {
+  private static final int MAXIMUM_SIZE = 1000;
+
+  private final Cache<Key, List<CachedDescription>> descriptions =
+      CacheBuilder.newBuilder().maximumSize(MAXIMUM_SIZE).build();
+
+  @Inject private ContentHashes contentHashes;
+
+  /**
+   * Returns the descriptions found in the given files, computing them only if they are not in this cache.
+   * @param files the files to find descriptions in.
+   * @param fromImporter the package of the file importing the given files.
+   * @param strategy the strategy used to find the descriptions.
+   * @param criteria the criteria passed to the strategy.
+   * @param computation finds the descriptions in the given files.
+   * @return the descriptions found in the given files.
+   */
+  <T> Collection<IEObjectDescription> descriptionsIn(List<Resource> files, Package fromImporter,
+      ModelElementFinder.FinderStrategy<T> strategy, T criteria,
+      Supplier<? extends Collection<IEObjectDescription>> computation) {
+    Key key = keyFor(files, fromImporter, strategy, criteria);
+    if (key == null) {
+      return computation.get();
+    }
+    List<CachedDescription> cached = descriptions.getIfPresent(key);
+    if (cached != null) {
+      Collection<IEObjectDescription> resolved = resolve(cached, files);
+      if (resolved != null) {
+        return resolved;
+      }
+    }
+    Collection<IEObjectDescription> computed = computation.get();
+    cached = toCachedDescriptions(computed, files);
+    if (cached != null) {
+      descriptions.put(key, cached);
+    }
+    return computed;
+  }
+
+  private Key keyFor(List<Resource> files, Package fromImporter, Object strategy, Object criteria) {
+    List<Object> fileKeys = new ArrayList<>(files.size() * 2);
+    for (Resource file : files) {
+      String hash = contentHashes.hashOf(file);
+      if (hash == null) {
+        return null;
+      }
+      fileKeys.add(file.getURI());
+      fileKeys.add(hash);
+    }
+    String packageName = (fromImporter == null) ? null : fromImporter.getName();
+    return new Key(fileKeys, packageName, strategy.getClass().getName(), criteria);
+  }
+
+  private Collection<IEObjectDescription> resolve(List<CachedDescription> cached, List<Resource> files) {
+    Map<URI, Resource> filesByUri = filesByUri(files);
+    List<IEObjectDescription> resolved = new ArrayList<>(cached.size());
+    for (CachedDescription description : cached) {
+      Resource file = filesByUri.get(description.uri.trimFragment());
+      EObject e = (file == null) ? null : file.getEObject(description.uri.fragment());
+      if (e == null) {
+        return null;
+      }
+      resolved.add(create(description.name, e));
+    }
+    return resolved;
+  }
+
+  private List<CachedDescription> toCachedDescriptions(Collection<IEObjectDescription> computed,
+      List<Resource> files) {
+    Map<URI, Resource> filesByUri = filesByUri(files);
+    List<CachedDescription> cached = new ArrayList<>(computed.size());
+    for (IEObjectDescription description : computed) {
+      URI uri = description.getEObjectURI();
+      if (!filesByUri.containsKey(uri.trimFragment())) {
+        // Only descriptions of elements in the given files can be resolved again.
+        return null;
+      }
+      cached.add(new CachedDescription(description.getName(), uri));
+    }
+    return cached;
+  }
+
+  private Map<URI, Resource> filesByUri(List<Resource> files) {
+    Map<URI, Resource> filesByUri = new HashMap<>();
+    for (Resource file : files) {
+      filesByUri.put(file.getURI(), file);
+    }
+    return filesByUri;
+  }
+
+  private static class CachedDescription {
+    final QualifiedName name;
+    final URI uri;
+
+    CachedDescription(QualifiedName name, URI uri) {
+      this.name = name;
+      this.uri = uri;
+    }
+  }
+
+  private static class Key {
+    private final List<Object> files;
+    private final String importerPackage;
+    private final String strategy;
+    private final Object criteria;
+
+    Key(List<Object> files, String importerPackage, String strategy, Object criteria) {
+      this.files = files;
+      this.importerPackage = importerPackage;
+      this.strategy = strategy;
+      this.criteria = criteria;
+    }
+
+    @Override public boolean equals(Object obj) {
+      if (this == obj) {
+        return true;
+      }
+      if (!(obj instanceof Key)) {
+        return false;
+      }
+      Key other = (Key) obj;
+      return files.equals(other.files) && Objects.equal(importerPackage, other.importerPackage)
+          && strategy.equals(other.strategy) && Objects.equal(criteria, other.criteria);
+    }
+
+    @Override public int hashCode() {
+      return Objects.hashCode(files, importerPackage, strategy, criteria);
+    }
+  }
+}
@@ -0,0 +1,87 @@
+/*
+ * Copyright (c) 2016 Google Inc.
+ *
+ * All rights reserved. This program and the accompanying materials are made available under the terms of the Eclipse
+ * Public License v1.0 which accompanies this distribution, and is available at
+ *
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package com.google.eclipse.protobuf.scoping;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+
+import org.eclipse.emf.common.util.URI;
+
+import com.google.common.base.Objects;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.inject.Singleton;
+
+/**
+ * Cache of the resolved and validated URIs of the files imported by a file.
+ * <p>
+ * Entries are keyed by the URI of the importing file, the paths in its import statements, and the epoch of the
+ * <code>{@link IImportResolver}</code>. Editing a file without touching its import statements (e.g. typing inside a
+ * message) finds the same entry, while any change that may affect how imports resolve moves the resolver to a new
+ * epoch.
+ * </p>
+ */
+@Singleton class ImportedUrisCache {
+  private static final int MAXIMUM_SIZE = 1000;
+
+  private final Cache<Key, List<URI>> importedUris = CacheBuilder.newBuilder().maximumSize(MAXIMUM_SIZE).build();
+
+  /**
+   * Returns the imported URIs stored for the given file and import paths.
+   * @param importingFile the URI of the importing file.
+   * @param importPaths the paths in the import statements of the importing file, in order.
+   * @param epoch the current epoch of the import resolver.
+   * @return a new set with the imported URIs, or {@code null} if they are not in this cache.
+   */
+  LinkedHashSet<URI> get(URI importingFile, List<String> importPaths, long epoch) {
+    List<URI> cached = importedUris.getIfPresent(new Key(importingFile, importPaths, epoch));
+    return (cached == null) ? null : new LinkedHashSet<>(cached);
+  }
+
+  /**
+   * Stores the imported URIs of the given file and import paths.
+   * @param importingFile the URI of the importing file.
+   * @param importPaths the paths in the import statements of the importing file, in order.
+   * @param epoch the epoch of the import resolver when the URIs were resolved.
+   * @param uris the resolved and validated imported URIs.
+   */
+  void put(URI importingFile, List<String> importPaths, long epoch, Collection<URI> uris) {
+    importedUris.put(new Key(importingFile, importPaths, epoch), new ArrayList<>(uris));
+  }
+
+  private static class Key {
+    private final URI importingFile;
+    private final List<String> importPaths;
+    private final long epoch;
+
+    Key(URI importingFile, List<String> importPaths, long epoch) {
+      this.importingFile = importingFile;
+      this.importPaths = importPaths;
+      this.epoch = epoch;
+    }
+
+    @Override public boolean equals(Object obj) {
+      if (this == obj) {
+        return true;
+      }
+      if (!(obj instanceof Key)) {
+        return false;
+      }
+      Key other = (Key) obj;
+      return epoch == other.epoch && Objects.equal(importingFile, other.importingFile)
+          && importPaths.equals(other.importPaths);
+    }
+
+    @Override public int hashCode() {
+      return Objects.hashCode(importingFile, importPaths, epoch);
+    }
+  }
+}
@@ -9,24 +9,53 @@
 package com.google.eclipse.protobuf.scoping;
 
 import static java.util.Collections.emptyList;
+import static java.util.Collections.unmodifiableList;
 
 import static org.eclipse.xtext.EcoreUtil2.getAllContentsOfType;
 import static org.eclipse.xtext.resource.EObjectDescription.create;
+import static org.eclipse.xtext.util.Tuples.pair;
 
 import static com.google.common.collect.Lists.newArrayList;
 
 import java.util.Collection;
 import java.util.List;
 
+import org.eclipse.emf.ecore.resource.Resource;
 import org.eclipse.xtext.resource.IEObjectDescription;
+import org.eclipse.xtext.scoping.IScope;
+import org.eclipse.xtext.util.IResourceScopeCache;
 
 import com.google.eclipse.protobuf.protobuf.Enum;
 import com.google.eclipse.protobuf.protobuf.Literal;
+import com.google.inject.Inject;
+import com.google.inject.Provider;
 
 /**
  * @author alruiz@google.com (Alex Ruiz)
  */
 class LiteralDescriptions {
+  private static final String SCOPE_CACHE_KEY = LiteralDescriptions.class.getName() + ".scope";
+
+  @Inject private final IResourceScopeCache cache = IResourceScopeCache.NullImpl.INSTANCE;
+
+  /**
+   * Returns the scope containing the literals of the given enum. The scope is created once and stored in the resource
+   * of the enum until the resource changes.
+   * @param anEnum the given enum.
+   * @return the scope containing the literals of the given enum.
+   */
+  IScope scopeOf(final Enum anEnum) {
+    Resource resource = (anEnum == null) ? null : anEnum.eResource();
+    if (resource == null) {
+      return ProtobufScopeProvider.createScope(literalsOf(anEnum));
+    }
+    return cache.get(pair(SCOPE_CACHE_KEY, anEnum), resource, new Provider<IScope>() {
+      @Override public IScope get() {
+        return ProtobufScopeProvider.createScope(literalsOf(anEnum));
+      }
+    });
+  }
+
   Collection<IEObjectDescription> literalsOf(Enum anEnum) {
     if (anEnum == null) {
       return emptyList();
@@ -36,6 +65,6 @@ class LiteralDescriptions {
       String name = literal.getName();
       descriptions.add(create(name, literal));
     }
-    return descriptions;
+    return unmodifiableList(descriptions);
   }
 }
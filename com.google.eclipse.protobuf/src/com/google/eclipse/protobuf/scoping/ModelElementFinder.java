@@ -9,10 +9,13 @@
 package com.google.eclipse.protobuf.scoping;
 
 import static java.util.Collections.emptyList;
-import static java.util.Collections.emptySet;
+import static java.util.Collections.unmodifiableCollection;
 import static java.util.Collections.unmodifiableSet;
-import static org.eclipse.emf.ecore.util.EcoreUtil.getAllContents;
+import static org.eclipse.xtext.util.Tuples.create;
+import static org.eclipse.xtext.util.Tuples.pair;
 
+import com.google.common.base.Supplier;
+import com.google.eclipse.protobuf.model.util.ExportedSymbolIndex;
 import com.google.eclipse.protobuf.model.util.Imports;
 import com.google.eclipse.protobuf.model.util.ModelObjects;
 import com.google.eclipse.protobuf.model.util.Packages;
@@ -24,33 +27,39 @@ import com.google.eclipse.protobuf.protobuf.Message;
 import com.google.eclipse.protobuf.protobuf.Package;
 import com.google.eclipse.protobuf.protobuf.Protobuf;
 import com.google.eclipse.protobuf.resource.ResourceSets;
+import com.google.eclipse.protobuf.scoping.PublicImportClosure.PubliclyImportedFile;
 import com.google.inject.Inject;
+import com.google.inject.Provider;
 
-import org.eclipse.emf.common.util.TreeIterator;
 import org.eclipse.emf.common.util.URI;
+import org.eclipse.emf.ecore.EClass;
 import org.eclipse.emf.ecore.EObject;
 import org.eclipse.emf.ecore.resource.Resource;
 import org.eclipse.emf.ecore.resource.ResourceSet;
-import org.eclipse.jdt.annotation.Nullable;
+import org.eclipse.emf.ecore.util.EcoreUtil;
 import org.eclipse.xtext.resource.IEObjectDescription;
-import org.eclipse.xtext.util.OnChangeEvictingCache;
-import org.eclipse.xtext.util.OnChangeEvictingCache.CacheAdapter;
+import org.eclipse.xtext.util.IResourceScopeCache;
 
+import java.util.ArrayList;
 import java.util.Collection;
-import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
-import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * @author alruiz@google.com (Alex Ruiz)
  */
 class ModelElementFinder {
+  @Inject private final IResourceScopeCache cache = IResourceScopeCache.NullImpl.INSTANCE;
+
+  @Inject private ExportedSymbolIndex symbolIndex;
+  @Inject private ImportedDescriptionsCache importedDescriptionsCache;
   @Inject private Imports imports;
   @Inject private ModelObjects modelObjects;
   @Inject private Packages packages;
   @Inject private Protobufs protobufs;
+  @Inject private PublicImportClosure publicImportClosure;
   @Inject private Resources resources;
   @Inject private ResourceSets resourceSets;
 
@@ -62,15 +71,44 @@ class ModelElementFinder {
     return unmodifiableSet(descriptions);
   }
 
+  // The descriptions of the whole file are cached once per resource. Only the descriptions of the containers nested in
+  // it, which take precedence, are cached per container, so elements in the same container (e.g. sibling fields) share
+  // them.
   private <T> Collection<IEObjectDescription> getDescriptionsFromObjectAncestors(
       EObject start, FinderStrategy<T> strategy, T criteria) {
-    UniqueDescriptions descriptions = new UniqueDescriptions();
-    EObject current = start.eContainer();
-    while (current != null) {
-      descriptions.addAll(getDescriptionsFromObjectDescendants(current, strategy, criteria, 0));
-      current = current.eContainer();
+    EObject container = start.eContainer();
+    if (container == null) {
+      return emptyList();
+    }
+    EObject root = EcoreUtil.getRootContainer(container);
+    Collection<IEObjectDescription> fromFile = getDescriptionsFromObjectDescendants(root, strategy, criteria, 0);
+    if (container == root) {
+      return fromFile;
+    }
+    UniqueDescriptions fromNestedContainers = getDescriptionsFromNestedAncestors(container, strategy, criteria);
+    List<IEObjectDescription> descriptions = new ArrayList<>(fromNestedContainers.values());
+    for (IEObjectDescription description : fromFile) {
+      if (fromNestedContainers.get(description.getName()) == null) {
+        descriptions.add(description);
+      }
     }
-    return descriptions.values();
+    return descriptions;
+  }
+
+  private <T> UniqueDescriptions getDescriptionsFromNestedAncestors(
+      final EObject container, final FinderStrategy<T> strategy, final T criteria) {
+    Object key = create(container, strategy, pair(criteria, "nested ancestors"));
+    return cache.get(key, container.eResource(), new Provider<UniqueDescriptions>() {
+      @Override public UniqueDescriptions get() {
+        UniqueDescriptions descriptions = new UniqueDescriptions();
+        EObject current = container;
+        while (current.eContainer() != null) {
+          descriptions.addAll(getDescriptionsFromObjectDescendants(current, strategy, criteria, 0));
+          current = current.eContainer();
+        }
+        return descriptions;
+      }
+    });
   }
 
   <T> Collection<IEObjectDescription> find(Protobuf start, FinderStrategy<T> strategy, T criteria) {
@@ -81,16 +119,21 @@ class ModelElementFinder {
   }
 
   private <T> Collection<IEObjectDescription> getDescriptionsFromObjectDescendants(
-      EObject start, FinderStrategy<T> strategy, T criteria, int level) {
-    UniqueDescriptions descriptions = new UniqueDescriptions();
-    for (EObject element : start.eContents()) {
-      descriptions.addAll(strategy.local(element, criteria, level));
-      if (element instanceof Message || element instanceof Group) {
-        descriptions.addAll(
-            getDescriptionsFromObjectDescendants(element, strategy, criteria, level + 1));
+      final EObject start, final FinderStrategy<T> strategy, final T criteria, final int level) {
+    Object key = create(start, strategy, pair(criteria, level));
+    return cache.get(key, start.eResource(), new Provider<Collection<IEObjectDescription>>() {
+      @Override public Collection<IEObjectDescription> get() {
+        UniqueDescriptions descriptions = new UniqueDescriptions();
+        for (EObject element : start.eContents()) {
+          descriptions.addAll(strategy.local(element, criteria, level));
+          if (element instanceof Message || element instanceof Group) {
+            descriptions.addAll(
+                getDescriptionsFromObjectDescendants(element, strategy, criteria, level + 1));
+          }
+        }
+        return unmodifiableCollection(descriptions.values());
       }
-    }
-    return descriptions.values();
+    });
   }
 
   private <T> Collection<IEObjectDescription> getDescriptionsFromAllImports(
@@ -106,10 +149,10 @@ class ModelElementFinder {
 
   private <T> Collection<IEObjectDescription> getDescriptionsFromImports(
       List<Import> allImports,
-      Package fromImporter,
+      final Package fromImporter,
       ResourceSet resourceSet,
-      FinderStrategy<T> strategy,
-      T criteria) {
+      final FinderStrategy<T> strategy,
+      final T criteria) {
     Set<IEObjectDescription> descriptions = new HashSet<>();
     for (Import anImport : allImports) {
       if (imports.isImportingDescriptor(anImport)) {
@@ -120,7 +163,7 @@ class ModelElementFinder {
       if (resolvedUri == null) {
         continue;
       }
-      Resource imported = resourceSets.findResource(resourceSet, resolvedUri);
+      final Resource imported = resourceSets.findResource(resourceSet, resolvedUri);
       if (imported == null) {
         continue;
       }
@@ -128,74 +171,86 @@ class ModelElementFinder {
       if (!protobufs.hasKnownSyntax(rootOfImported)) {
         continue;
       }
-      if (rootOfImported != null) {
-        CacheAdapter cache = new OnChangeEvictingCache().getOrCreate(imported);
-        Set<IEObjectDescription> descriptionsFromImport =
-            getFromCache(cache, resolvedUri, strategy, criteria);
-        if (descriptionsFromImport == null) {
-          descriptionsFromImport = new HashSet<>();
-          descriptionsFromImport.addAll(
-              getDescriptionsFromPublicImports(rootOfImported, strategy, criteria));
-          if (arePackagesRelated(fromImporter, rootOfImported)) {
-            descriptionsFromImport.addAll(
-                getDescriptionsFromObjectDescendants(rootOfImported, strategy, criteria, 0));
-          } else {
-            Package packageOfImported = modelObjects.packageOf(rootOfImported);
-            TreeIterator<Object> contents = getAllContents(imported, true);
-            while (contents.hasNext()) {
-              Object next = contents.next();
-              descriptionsFromImport.addAll(
-                  strategy.imported(fromImporter, packageOfImported, next, criteria));
+      final List<PubliclyImportedFile> closure = publicImportClosure.closureOf(imported);
+      String importerPackage = (fromImporter == null) ? null : fromImporter.getName();
+      AtomicReference<ImportedDescriptions> cachedHolder =
+          importedDescriptionsHolder(imported, resolvedUri, strategy, criteria, importerPackage);
+      ImportedDescriptions cached = cachedHolder.get();
+      Set<IEObjectDescription> descriptionsFromImport;
+      // Files publicly imported by the imported one may have changed even if the imported one has not.
+      if (cached != null && cached.closure == closure) {
+        descriptionsFromImport = cached.descriptions;
+      } else {
+        descriptionsFromImport = new HashSet<>();
+        final ResourceSet importedResourceSet = imported.getResourceSet();
+        final List<Resource> files = new ArrayList<>();
+        files.add(imported);
+        for (PubliclyImportedFile file : closure) {
+          if (file.isImportingDescriptor()) {
+            Import publicImport = publicImportClosure.importOf(file, importedResourceSet);
+            if (publicImport != null) {
+              descriptionsFromImport.addAll(strategy.inDescriptor(publicImport, criteria));
             }
+            continue;
+          }
+          Resource resource = publicImportClosure.resourceOf(file, importedResourceSet);
+          if (resource != null) {
+            files.add(resource);
           }
-          putToCache(cache, resolvedUri, strategy, criteria, descriptionsFromImport);
         }
-        descriptions.addAll(descriptionsFromImport);
+        descriptionsFromImport.addAll(importedDescriptionsCache.descriptionsIn(files, fromImporter, strategy,
+            criteria, new Supplier<Collection<IEObjectDescription>>() {
+              @Override public Collection<IEObjectDescription> get() {
+                List<IEObjectDescription> found = new ArrayList<>();
+                found.addAll(getDescriptionsFromResource(imported, fromImporter, strategy, criteria));
+                for (PubliclyImportedFile file : closure) {
+                  if (file.isImportingDescriptor()) {
+                    continue;
+                  }
+                  Resource resource = publicImportClosure.resourceOf(file, importedResourceSet);
+                  Import publicImport = publicImportClosure.importOf(file, importedResourceSet);
+                  if (resource != null && publicImport != null) {
+                    Package importerPackage = modelObjects.packageOf(publicImport);
+                    found.addAll(getDescriptionsFromResource(resource, importerPackage, strategy, criteria));
+                  }
+                }
+                return found;
+              }
+            }));
+        cachedHolder.set(new ImportedDescriptions(closure, descriptionsFromImport));
       }
+      descriptions.addAll(descriptionsFromImport);
     }
     return descriptions;
   }
 
-  private <T> Collection<IEObjectDescription> getDescriptionsFromPublicImports(
-      Protobuf start, FinderStrategy<T> strategy, T criteria) {
-    if (!protobufs.hasKnownSyntax(start)) {
-      return emptySet();
+  private <T> Collection<IEObjectDescription> getDescriptionsFromResource(
+      Resource imported, Package fromImporter, FinderStrategy<T> strategy, T criteria) {
+    Protobuf rootOfImported = resources.rootOf(imported);
+    if (arePackagesRelated(fromImporter, rootOfImported)) {
+      return getDescriptionsFromObjectDescendants(rootOfImported, strategy, criteria, 0);
     }
-    List<Import> allImports = protobufs.publicImportsIn(start);
-    if (allImports.isEmpty()) {
-      return emptyList();
+    Set<IEObjectDescription> descriptions = new HashSet<>();
+    Package packageOfImported = modelObjects.packageOf(rootOfImported);
+    EClass type = strategy.importedElementType(criteria);
+    for (EObject element : symbolIndex.elementsOfType(imported, type)) {
+      descriptions.addAll(strategy.imported(fromImporter, packageOfImported, element, criteria));
     }
-    ResourceSet resourceSet = start.eResource().getResourceSet();
-    return getDescriptionsFromImports(
-        allImports, modelObjects.packageOf(start), resourceSet, strategy, criteria);
+    return descriptions;
   }
 
-  private <T> @Nullable Set<IEObjectDescription> getFromCache(
-      CacheAdapter cache, URI uri, FinderStrategy<T> strategy, T criteria) {
-    Map<FinderStrategy<T>, Map<T, Set<IEObjectDescription>>> strategyMap = cache.get(uri);
-    if (strategyMap != null) {
-      Map<T, Set<IEObjectDescription>> criteriaMap = strategyMap.get(strategy);
-      if (criteriaMap != null) {
-        return criteriaMap.get(criteria);
+  // The descriptions of an imported file depend on the package of the file importing it, so they are cached per
+  // importer package. The imported file may be shared by several resource sets, so its cache is only reached through
+  // the resource scope cache, which guards it with the lock of the shared resource; the holder it returns is safe to
+  // update without that lock.
+  private <T> AtomicReference<ImportedDescriptions> importedDescriptionsHolder(
+      Resource imported, URI uri, FinderStrategy<T> strategy, T criteria, String importerPackage) {
+    Object key = create(uri, strategy, pair(criteria, importerPackage));
+    return cache.get(key, imported, new Provider<AtomicReference<ImportedDescriptions>>() {
+      @Override public AtomicReference<ImportedDescriptions> get() {
+        return new AtomicReference<>();
       }
-    }
-    return null;
-  }
-
-  private <T> void putToCache(
-      CacheAdapter cache, URI uri, FinderStrategy<T> strategy, T criteria,
-      Set<IEObjectDescription> descriptions) {
-    Map<FinderStrategy<T>, Map<T, Set<IEObjectDescription>>> strategyMap = cache.get(uri);
-    if (strategyMap == null) {
-      strategyMap = new HashMap<>();
-      cache.set(uri, strategyMap);
-    }
-    Map<T, Set<IEObjectDescription>> criteriaMap = strategyMap.get(strategy);
-    if (criteriaMap == null) {
-      criteriaMap = new HashMap<>();
-      strategyMap.put(strategy, criteriaMap);
-    }
-    criteriaMap.put(criteria, descriptions);
+    });
   }
 
   private boolean arePackagesRelated(Package aPackage, EObject root) {
@@ -203,7 +258,27 @@ class ModelElementFinder {
     return packages.areRelated(aPackage, p);
   }
 
+  /**
+   * The descriptions of an imported file and of the files it imports publicly, together with the public import closure
+   * they were computed from.
+   */
+  private static class ImportedDescriptions {
+    final List<PubliclyImportedFile> closure;
+    final Set<IEObjectDescription> descriptions;
+
+    ImportedDescriptions(List<PubliclyImportedFile> closure, Set<IEObjectDescription> descriptions) {
+      this.closure = closure;
+      this.descriptions = descriptions;
+    }
+  }
+
   static interface FinderStrategy<T> {
+    /**
+     * Returns the type of the elements in an imported file that this strategy can describe. Only elements of this type
+     * are passed to {@link #imported(Package, Package, Object, Object)}.
+     */
+    EClass importedElementType(T criteria);
+
     Collection<IEObjectDescription> imported(
         Package fromImporter, Package fromImported, Object target, T criteria);
 
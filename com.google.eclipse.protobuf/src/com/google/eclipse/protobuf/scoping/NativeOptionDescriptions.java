@@ -8,19 +8,10 @@
  */
 package com.google.eclipse.protobuf.scoping;
 
-import static java.util.Collections.emptyList;
-import static java.util.Collections.unmodifiableList;
-import static org.eclipse.xtext.resource.EObjectDescription.create;
-import static com.google.common.collect.Lists.newArrayList;
-
-import java.util.Collection;
-import java.util.List;
-
 import org.eclipse.core.resources.IProject;
-import org.eclipse.xtext.resource.IEObjectDescription;
+import org.eclipse.xtext.scoping.IScope;
 
 import com.google.eclipse.protobuf.protobuf.AbstractOption;
-import com.google.eclipse.protobuf.protobuf.MessageField;
 import com.google.eclipse.protobuf.util.EResources;
 import com.google.inject.Inject;
 
@@ -30,22 +21,15 @@ import com.google.inject.Inject;
 class NativeOptionDescriptions {
   @Inject private ProtoDescriptorProvider descriptorProvider;
 
-  Collection<IEObjectDescription> sources(AbstractOption option) {
+  /**
+   * Returns the scope containing the native options that can be the source of the given option. The scope is shared by
+   * all the options of the same type.
+   * @param option the given option.
+   * @return the scope containing the native options that can be the source of the given option.
+   */
+  IScope scopeOf(AbstractOption option) {
     IProject project = EResources.getProjectOf(option.eResource());
     ProtoDescriptor descriptor = descriptorProvider.primaryDescriptor(project);
-    Collection<MessageField> optionSources = descriptor.availableOptionsFor(option.eContainer());
-    if (optionSources.isEmpty()) {
-      return emptyList();
-    }
-    return describe(optionSources);
-  }
-
-  private Collection<IEObjectDescription> describe(Collection<MessageField> fields) {
-    List<IEObjectDescription> descriptions = newArrayList();
-    for (MessageField field : fields) {
-      String name = field.getName();
-      descriptions.add(create(name, field));
-    }
-    return unmodifiableList(descriptions);
+    return descriptor.optionScopeFor(option.eContainer());
   }
 }
@@ -0,0 +1,106 @@
+/*
+ * Copyright (c) 2016 Google Inc.
+ *
+ * All rights reserved. This program and the accompanying materials are made available under the terms of the Eclipse
+ * Public License v1.0 which accompanies this distribution, and is available at
+ *
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package com.google.eclipse.protobuf.scoping;
+
+import static java.util.Collections.singletonList;
+
+import java.util.List;
+
+import org.eclipse.emf.ecore.EObject;
+import org.eclipse.xtext.naming.QualifiedName;
+import org.eclipse.xtext.resource.IEObjectDescription;
+import org.eclipse.xtext.resource.impl.AliasedEObjectDescription;
+import org.eclipse.xtext.scoping.IScope;
+
+import com.google.common.base.Supplier;
+
+/**
+ * <code>{@link IScope}</code> that resolves names the way protoc does: a name is looked up in the innermost scope
+ * (the message containing the reference,) and then in each enclosing message and package, all the way up to the root
+ * package. A name starting with a dot is looked up as a fully-qualified name.
+ * <p>
+ * Elements are registered only once, by their fully-qualified name. Names that cannot be resolved this way, and
+ * requests for all the elements in the scope (e.g. from content assist,) are delegated to a scope containing every
+ * partial name of every element, which is only created when needed.
+ * </p>
+ */
+class OutwardResolvingScope implements IScope {
+  private final List<QualifiedName> searchPath;
+  private final IScope fullyQualifiedNames;
+  private final Supplier<IScope> allNames;
+
+  /**
+   * Creates a new <code>{@link OutwardResolvingScope}</code>.
+   * @param searchPath the fully-qualified names of the scopes to look names up in, innermost first. The last one is
+   * usually {@link QualifiedName#EMPTY}, the root package.
+   * @param fullyQualifiedNames the elements in this scope, described by their fully-qualified names.
+   * @param allNames supplies a scope with all the names the elements in this scope can be referred to.
+   */
+  OutwardResolvingScope(List<QualifiedName> searchPath, IScope fullyQualifiedNames, Supplier<IScope> allNames) {
+    this.searchPath = searchPath;
+    this.fullyQualifiedNames = fullyQualifiedNames;
+    this.allNames = allNames;
+  }
+
+  @Override public IEObjectDescription getSingleElement(QualifiedName name) {
+    IEObjectDescription description = resolve(name);
+    if (description != null) {
+      return description;
+    }
+    return allNames.get().getSingleElement(name);
+  }
+
+  private IEObjectDescription resolve(QualifiedName name) {
+    if (name.isEmpty()) {
+      return null;
+    }
+    if (name.getSegmentCount() > 1 && name.getFirstSegment().isEmpty()) {
+      return aliased(name, fullyQualifiedNames.getSingleElement(name.skipFirst(1)));
+    }
+    for (QualifiedName scope : searchPath) {
+      QualifiedName candidate = scope.isEmpty() ? name : scope.append(name);
+      IEObjectDescription description = fullyQualifiedNames.getSingleElement(candidate);
+      if (description != null) {
+        return aliased(name, description);
+      }
+    }
+    return null;
+  }
+
+  private IEObjectDescription aliased(QualifiedName name, IEObjectDescription description) {
+    if (description == null || name.equals(description.getName())) {
+      return description;
+    }
+    return new AliasedEObjectDescription(name, description);
+  }
+
+  @Override public Iterable<IEObjectDescription> getElements(QualifiedName name) {
+    IEObjectDescription description = resolve(name);
+    if (description != null) {
+      return singletonList(description);
+    }
+    return allNames.get().getElements(name);
+  }
+
+  @Override public IEObjectDescription getSingleElement(EObject object) {
+    return allNames.get().getSingleElement(object);
+  }
+
+  @Override public Iterable<IEObjectDescription> getElements(EObject object) {
+    return allNames.get().getElements(object);
+  }
+
+  @Override public Iterable<IEObjectDescription> getAllElements() {
+    return allNames.get().getAllElements();
+  }
+
+  @Override public String toString() {
+    return getClass().getSimpleName() + searchPath;
+  }
+}
@@ -12,11 +12,9 @@ import static java.util.Collections.emptySet;
 
 import static org.eclipse.xtext.resource.EObjectDescription.create;
 
-import static com.google.common.collect.Lists.newArrayList;
 import static com.google.common.collect.Sets.newHashSet;
 
 import java.util.Collection;
-import java.util.List;
 import java.util.Set;
 
 import org.eclipse.emf.ecore.EObject;
@@ -25,7 +23,6 @@ import org.eclipse.xtext.naming.QualifiedName;
 import org.eclipse.xtext.resource.IEObjectDescription;
 
 import com.google.eclipse.protobuf.model.util.Packages;
-import com.google.eclipse.protobuf.model.util.QualifiedNames;
 import com.google.eclipse.protobuf.protobuf.Package;
 import com.google.inject.Inject;
 
@@ -34,42 +31,21 @@ import com.google.inject.Inject;
  */
 class PackageIntersectionDescriptions {
   @Inject private Packages packages;
-  @Inject private QualifiedNames qualifiedNames;
   @Inject private IQualifiedNameProvider nameProvider;
 
   // See issue 161
   Collection<IEObjectDescription> intersection(Package fromImporter, Package fromImported, EObject e) {
-    if (fromImporter == null || fromImported == null) {
+    if (fromImporter == null || fromImported == null || packages.areRelated(fromImporter, fromImported)) {
       return emptySet();
     }
-    return intersection2(segmentNames(fromImporter), segmentNames(fromImported), e);
-  }
-
-  private List<String> segmentNames(Package aPackage) {
-    return packages.segmentsOf(aPackage);
-  }
-
-  private Collection<IEObjectDescription> intersection2(List<String> packageInImporter, List<String> packageInImported,
-      EObject e) {
-    int n1Count = packageInImporter.size();
-    int n2Count = packageInImported.size();
-    int start = -1;
-    for (int i = 0; (i < n1Count && i < n2Count); i++) {
-      if (!packageInImporter.get(i).equals(packageInImported.get(i))) {
-        start = i;
-        break;
-      }
-    }
-    if (start == 0) {
+    int commonSegmentCount = packages.commonSegmentCount(fromImporter, fromImported);
+    if (commonSegmentCount == 0) {
       return emptySet(); // no intersection found.
     }
     Set<IEObjectDescription> descriptions = newHashSet();
     QualifiedName qualifiedName = nameProvider.getFullyQualifiedName(e);
-    List<String> segments = newArrayList(qualifiedName.getSegments());
-    for (int i = 0; i < start; i++) {
-      segments.remove(0);
-      QualifiedName newQualifiedName = qualifiedNames.createQualifiedName(segments);
-      descriptions.add(create(newQualifiedName, e));
+    for (int i = 1; i <= commonSegmentCount; i++) {
+      descriptions.add(create(qualifiedName.skipFirst(i), e));
     }
     return descriptions;
   }
@@ -34,14 +34,20 @@ import org.eclipse.emf.ecore.EObject;
 import org.eclipse.xtext.nodemodel.INode;
 import org.eclipse.xtext.parser.IParseResult;
 import org.eclipse.xtext.parser.IParser;
+import org.eclipse.xtext.resource.EObjectDescription;
+import org.eclipse.xtext.resource.IEObjectDescription;
 import org.eclipse.xtext.resource.XtextResource;
+import org.eclipse.xtext.scoping.IScope;
 
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.StringReader;
 import java.net.URL;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.EnumMap;
 import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.List;
@@ -68,6 +74,8 @@ public class ProtoDescriptor {
   private final List<ComplexType> allTypes = new ArrayList<>();
   private final Map<OptionType, Map<String, MessageField>> optionsByType = new HashMap<>();
   private final Map<String, Enum> enumsByName = new HashMap<>();
+  private final Map<MessageField, Enum> enumTypesByField = new HashMap<>();
+  private final Map<OptionType, IScope> optionScopesByType = new EnumMap<>(OptionType.class);
 
   private Protobuf root;
 
@@ -76,11 +84,16 @@ public class ProtoDescriptor {
   private final XtextResource resource;
 
   ProtoDescriptor(String importUri, URI location, IParser parser, INodes nodes) {
+    this(importUri, location, null, parser, nodes);
+  }
+
+  ProtoDescriptor(String importUri, URI location, String contents, IParser parser, INodes nodes) {
     this.importUri = importUri;
     this.nodes = nodes;
     addOptionTypes();
     resource = new XtextResource(location);
-    try (InputStreamReader reader = new InputStreamReader(contents(location), UTF_8)) {
+    try (Reader reader = (contents != null) ? new StringReader(contents)
+        : new InputStreamReader(contents(location), UTF_8)) {
       IParseResult result = parser.parse(reader);
       root = (Protobuf) result.getRootASTElement();
       resource.getContents().add(root);
@@ -121,6 +134,11 @@ public class ProtoDescriptor {
       }
       initOptions(m, type);
     }
+    for (Map<String, MessageField> options : optionsByType.values()) {
+      for (MessageField option : options.values()) {
+        enumTypesByField.put(option, findEnumTypeOf(option));
+      }
+    }
   }
 
   private void initOptions(Message optionGroup, OptionType type) {
@@ -173,6 +191,39 @@ public class ProtoDescriptor {
     return unmodifiableCollection(optionsByType.get(type).values());
   }
 
+  /**
+   * Returns the scope containing the options available for the given option or option container. Scopes are created
+   * only once per option type, and shared by all the options of that type.
+   * @param o the given option or option container.
+   * @return the scope containing the options available for the given option or option container.
+   */
+  IScope optionScopeFor(EObject o) {
+    EObject target = o;
+    if (target instanceof NativeOption) {
+      target = target.eContainer();
+    }
+    OptionType type = findOptionTypeForLevelOf(target);
+    if (type == null) {
+      return IScope.NULLSCOPE;
+    }
+    synchronized (optionScopesByType) {
+      IScope scope = optionScopesByType.get(type);
+      if (scope == null) {
+        scope = ProtobufScopeProvider.createScope(describe(optionsOfType(type)));
+        optionScopesByType.put(type, scope);
+      }
+      return scope;
+    }
+  }
+
+  private static List<IEObjectDescription> describe(Collection<MessageField> fields) {
+    List<IEObjectDescription> descriptions = new ArrayList<>(fields.size());
+    for (MessageField field : fields) {
+      descriptions.add(EObjectDescription.create(field.getName(), field));
+    }
+    return unmodifiableList(descriptions);
+  }
+
   /**
    * Returns the enum type of the given field, only if the given field is defined in
    * {@code google/protobuf/descriptor.proto} and its type is enum (more details can be found <a
@@ -184,6 +235,14 @@ public class ProtoDescriptor {
     if (field == null) {
       return null;
     }
+    // The enum types of the options in this descriptor are known in advance, even when they are null.
+    if (enumTypesByField.containsKey(field)) {
+      return enumTypesByField.get(field);
+    }
+    return findEnumTypeOf(field);
+  }
+
+  private Enum findEnumTypeOf(MessageField field) {
     INode node = nodes.firstNodeForFeature(field, MESSAGE_FIELD__TYPE);
     if (node == null) {
       return null;
@@ -193,11 +252,7 @@ public class ProtoDescriptor {
   }
 
   @VisibleForTesting Enum enumByName(String qualifiedName) {
-    String[] segments = qualifiedName.split("\\.");
-    if (segments == null || segments.length == 0) {
-      return null;
-    }
-    return enumsByName.get(segments[segments.length - 1]);
+    return enumsByName.get(qualifiedName.substring(qualifiedName.lastIndexOf('.') + 1));
   }
 
   /**
@@ -8,36 +8,62 @@
  */
 package com.google.eclipse.protobuf.scoping;
 
+import static com.google.common.base.Suppliers.memoize;
 import static com.google.eclipse.protobuf.preferences.general.PreferenceNames.DESCRIPTOR_PROTO_PATH;
+import static com.google.eclipse.protobuf.util.Encodings.UTF_8;
 
+import static org.eclipse.core.runtime.Status.OK_STATUS;
+
+import com.google.common.base.Objects;
+import com.google.common.base.Supplier;
+import com.google.common.cache.Cache;
 import com.google.common.cache.CacheBuilder;
 import com.google.common.cache.CacheLoader;
 import com.google.common.cache.LoadingCache;
 import com.google.common.collect.ImmutableList;
+import com.google.common.io.CharStreams;
 import com.google.eclipse.protobuf.model.util.INodes;
 import com.google.eclipse.protobuf.preferences.general.GeneralPreferences;
 import com.google.eclipse.protobuf.preferences.general.PreferenceNames;
+import com.google.eclipse.protobuf.resource.ContentHashes;
 import com.google.inject.Inject;
 import com.google.inject.Singleton;
 
 import org.eclipse.core.resources.IProject;
 import org.eclipse.core.runtime.IConfigurationElement;
 import org.eclipse.core.runtime.IExtensionRegistry;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.jobs.Job;
 import org.eclipse.emf.common.util.URI;
 import org.eclipse.jface.util.IPropertyChangeListener;
 import org.eclipse.jface.util.PropertyChangeEvent;
 import org.eclipse.xtext.parser.IParser;
 import org.eclipse.xtext.ui.editor.preferences.IPreferenceStoreAccess;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.net.URL;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.Map;
-import java.util.Map.Entry;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutionException;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 /**
  * Provider of <code>{@link ProtoDescriptor}</code>s.
+ * <p>
+ * Descriptors are parsed the first time they are needed; the bundled ones are also parsed in the background as soon as
+ * this provider is created. Descriptors with the same import URI, location and contents are parsed only once and
+ * shared by all the projects that use them. A descriptor that cannot be loaded is loaded again the next time it is
+ * needed (e.g. once the file is fixed or becomes reachable.)
+ * </p>
  *
  * @author Alex Ruiz
  */
@@ -49,11 +75,12 @@ import java.util.logging.Logger;
   private final IParser parser;
   private final INodes nodes;
   private final IUriResolver resolver;
+  private final ContentHashes contentHashes;
 
   private static final URI DEFAULT_DESCRIPTOR_LOCATION =
       URI.createURI("platform:/plugin/com.google.eclipse.protobuf/descriptor.proto");
   private final ProtoDescriptorInfo openSourceProtoDescriptorInfo;
-  private final ProtoDescriptorInfo extensionPointDescriptorInfo;
+  private final Supplier<ProtoDescriptorInfo> extensionPointDescriptorInfo;
 
   private static final String MAP_ENTRY_DESCRIPTOR_PATH = "google/protobuf/map_entry.proto";
   private static final URI MAP_ENTRY_DESCRIPTOR_LOCATION =
@@ -64,71 +91,99 @@ import java.util.logging.Logger;
       Logger.getLogger(ProtoDescriptorProvider.class.getCanonicalName());
 
   private final
-      LoadingCache<IProject, Map<String, ProtoDescriptorInfo>> descriptorCache = CacheBuilder
-          .newBuilder().build(new CacheLoader<IProject, Map<String, ProtoDescriptorInfo>>() {
+      LoadingCache<IProject, DescriptorLookup> descriptorCache = CacheBuilder
+          .newBuilder().build(new CacheLoader<IProject, DescriptorLookup>() {
         @Override
-        public Map<String, ProtoDescriptorInfo> load(final IProject project) {
-          return loadDescriptorInfos(project);
+        public DescriptorLookup load(final IProject project) {
+          return new DescriptorLookup(loadDescriptorInfos(project));
         }
       });
 
+  private final DescriptorLookup defaultLookup;
+
+  // Values are weak: a descriptor is kept as long as a project (or this provider) still uses it.
+  private final Cache<ContentKey, ProtoDescriptor> descriptorsByContent =
+      CacheBuilder.newBuilder().weakValues().build();
+
+  private final Set<IProject> projectsWithListener =
+      Collections.newSetFromMap(new ConcurrentHashMap<IProject, Boolean>());
+
   @Inject
   ProtoDescriptorProvider(IPreferenceStoreAccess storeAccess, IExtensionRegistry registry,
-      IParser parser, INodes nodes, IUriResolver resolver) {
+      IParser parser, INodes nodes, IUriResolver resolver, ContentHashes contentHashes) {
     this.storeAccess = storeAccess;
     this.registry = registry;
     this.parser = parser;
     this.nodes = nodes;
     this.resolver = resolver;
-    this.openSourceProtoDescriptorInfo = getOpenSourceProtoDescriptorInfo();
-    this.mapEntryDescriptorInfo = getMapEntryDescriptorInfo();
-    this.extensionPointDescriptorInfo = getExtensionPointDescriptorInfo();
+    this.contentHashes = contentHashes;
+    this.openSourceProtoDescriptorInfo =
+        lazyDescriptorInfo(PreferenceNames.DEFAULT_DESCRIPTOR_PATH, DEFAULT_DESCRIPTOR_LOCATION);
+    this.mapEntryDescriptorInfo =
+        lazyDescriptorInfo(MAP_ENTRY_DESCRIPTOR_PATH, MAP_ENTRY_DESCRIPTOR_LOCATION);
+    this.defaultLookup = new DescriptorLookup(
+        Collections.singletonMap(PreferenceNames.DEFAULT_DESCRIPTOR_PATH, openSourceProtoDescriptorInfo));
+    this.extensionPointDescriptorInfo = memoize(new Supplier<ProtoDescriptorInfo>() {
+      @Override public ProtoDescriptorInfo get() {
+        return getExtensionPointDescriptorInfo();
+      }
+    });
+    scheduleLoadingOfBundledDescriptors();
+  }
+
+  private void scheduleLoadingOfBundledDescriptors() {
+    Job job = new Job("Loading descriptor.proto") {
+      @Override protected IStatus run(IProgressMonitor monitor) {
+        openSourceProtoDescriptorInfo.protoDescriptor();
+        mapEntryDescriptorInfo.protoDescriptor();
+        ProtoDescriptorInfo extensionPointInfo = extensionPointDescriptorInfo.get();
+        if (extensionPointInfo != null) {
+          extensionPointInfo.protoDescriptor();
+        }
+        return OK_STATUS;
+      }
+    };
+    job.setSystem(true);
+    job.schedule();
   }
 
   public ProtoDescriptor primaryDescriptor(IProject project) {
-    Map<String, ProtoDescriptorInfo> descriptorInfos = getDescriptorInfosFor(project);
-    for (ProtoDescriptorInfo descriptorInfo : descriptorInfos.values()) {
-      return descriptorInfo.protoDescriptor;
+    for (ProtoDescriptorInfo descriptorInfo : lookupFor(project).byImportUri.values()) {
+      ProtoDescriptor descriptor = descriptorInfo.protoDescriptor();
+      if (descriptor != null) {
+        return descriptor;
+      }
     }
-    return openSourceProtoDescriptorInfo.protoDescriptor;
+    return openSourceProtoDescriptorInfo.protoDescriptor();
   }
 
   public ProtoDescriptor descriptor(IProject project, String importUri) {
-    Map<String, ProtoDescriptorInfo> descriptorInfos = getDescriptorInfosFor(project);
-    ProtoDescriptorInfo descriptorInfo = descriptorInfos.get(importUri);
-    if (descriptorInfo != null) {
-      return descriptorInfo.protoDescriptor;
-    }
-    URI uri = URI.createURI(importUri);
-    for (Entry<String, ProtoDescriptorInfo> info : descriptorInfos.entrySet()) {
-      if (info.getValue().location.equals(uri)) {
-        return descriptor(project, info.getKey());
-      }
-    }
-    return null;
+    ProtoDescriptorInfo descriptorInfo = lookupFor(project).infoOf(importUri);
+    return (descriptorInfo != null) ? descriptorInfo.protoDescriptor() : null;
   }
 
   public ImmutableList<URI> allDescriptorLocations(IProject project) {
-    Map<String, ProtoDescriptorInfo> descriptorInfos = getDescriptorInfosFor(project);
-    ImmutableList.Builder<URI> descriptorLocations = ImmutableList.builder();
-    for (ProtoDescriptorInfo descriptorInfo : descriptorInfos.values()) {
-      descriptorLocations.add(descriptorInfo.location);
-    }
-    return descriptorLocations.build();
+    return lookupFor(project).locations;
   }
 
   public URI descriptorLocation(IProject project, String importUri) {
-    Map<String, ProtoDescriptorInfo> descriptorInfos = getDescriptorInfosFor(project);
-    for (ProtoDescriptorInfo descriptorInfo : descriptorInfos.values()) {
-      if (descriptorInfo.importUri.equals(importUri)) {
-        return descriptorInfo.location;
-      }
-    }
-    return null;
+    ProtoDescriptorInfo descriptorInfo = lookupFor(project).byImportUri.get(importUri);
+    return (descriptorInfo != null) ? descriptorInfo.location : null;
+  }
+
+  /**
+   * Indicates whether the given path refers to a descriptor of the given project, either by its import URI or by its
+   * location.
+   * @param project the given project.
+   * @param path the path to check.
+   * @return {@code true} if the given path refers to a descriptor, {@code false} otherwise.
+   */
+  public boolean isDescriptorPath(IProject project, String path) {
+    return lookupFor(project).infoOf(path) != null;
   }
 
   public ProtoDescriptor mapEntryDescriptor() {
-    return mapEntryDescriptorInfo.protoDescriptor;
+    return mapEntryDescriptorInfo.protoDescriptor();
   }
 
   private Map<String, ProtoDescriptorInfo> loadDescriptorInfos(final IProject project) {
@@ -142,11 +197,8 @@ import java.util.logging.Logger;
       if (resolvedUri != null) {
         URI descriptorProtoLocation = URI.createURI(resolvedUri);
         if (descriptorProtoLocation != null) {
-          ProtoDescriptor protoDescriptor =
-              new ProtoDescriptor(descriptorProtoUri, descriptorProtoLocation, parser, nodes);
-          ProtoDescriptorInfo descriptorInfo =
-              new ProtoDescriptorInfo(descriptorProtoUri, descriptorProtoLocation, protoDescriptor);
-          descriptorInfos.put(descriptorProtoUri, descriptorInfo);
+          descriptorInfos.put(descriptorProtoUri,
+              lazyDescriptorInfo(descriptorProtoUri, descriptorProtoLocation));
         }
       } else {
         LOG.log(Level.WARNING,
@@ -155,6 +207,7 @@ import java.util.logging.Logger;
     }
 
     // Add the extension point descriptor proto
+    ProtoDescriptorInfo extensionPointDescriptorInfo = this.extensionPointDescriptorInfo.get();
     if (extensionPointDescriptorInfo != null) {
       if (!descriptorInfos.containsKey(extensionPointDescriptorInfo.importUri)) {
         descriptorInfos.put(extensionPointDescriptorInfo.importUri, extensionPointDescriptorInfo);
@@ -167,7 +220,15 @@ import java.util.logging.Logger;
           openSourceProtoDescriptorInfo);
     }
 
-    // Set property change listener for this project
+    listenToDescriptorPathChanges(project);
+    return descriptorInfos;
+  }
+
+  private void listenToDescriptorPathChanges(final IProject project) {
+    // The cache is reloaded every time the path changes; the listener is added only once.
+    if (!projectsWithListener.add(project)) {
+      return;
+    }
     storeAccess.getContextPreferenceStore(project).addPropertyChangeListener(
         new IPropertyChangeListener() {
           @Override
@@ -177,36 +238,45 @@ import java.util.logging.Logger;
             }
           }
         });
-    return descriptorInfos;
   }
 
-  private Map<String, ProtoDescriptorInfo> getDescriptorInfosFor(IProject project) {
+  private DescriptorLookup lookupFor(IProject project) {
     if (project == null) {
-      Map<String, ProtoDescriptorInfo> descriptorInfos =
-          new LinkedHashMap<>();
-      descriptorInfos.put(PreferenceNames.DEFAULT_DESCRIPTOR_PATH, openSourceProtoDescriptorInfo);
-      return descriptorInfos;
+      return defaultLookup;
     }
     try {
       return descriptorCache.get(project);
     } catch (ExecutionException e) {
       LOG.log(Level.SEVERE, "Error while trying to determine descriptor.proto for project", e);
-      return null;
+      return defaultLookup;
     }
   }
 
-  private ProtoDescriptorInfo getOpenSourceProtoDescriptorInfo() {
-    ProtoDescriptor descriptor = new ProtoDescriptor(PreferenceNames.DEFAULT_DESCRIPTOR_PATH,
-        DEFAULT_DESCRIPTOR_LOCATION, parser, nodes);
-    return new ProtoDescriptorInfo(PreferenceNames.DEFAULT_DESCRIPTOR_PATH,
-        DEFAULT_DESCRIPTOR_LOCATION, descriptor);
+  private ProtoDescriptorInfo lazyDescriptorInfo(final String importUri, final URI location) {
+    return new ProtoDescriptorInfo(importUri, location, new Callable<ProtoDescriptor>() {
+      @Override public ProtoDescriptor call() throws IOException, ExecutionException {
+        return loadDescriptor(importUri, location);
+      }
+    });
+  }
+
+  private ProtoDescriptor loadDescriptor(final String importUri, final URI location)
+      throws IOException, ExecutionException {
+    final String contents = contentsOf(location);
+    // The location is part of the key: the elements of a descriptor point to the file it was parsed from.
+    ContentKey key = new ContentKey(importUri, location, contentHashes.hashOf(contents));
+    return descriptorsByContent.get(key, new Callable<ProtoDescriptor>() {
+      @Override public ProtoDescriptor call() {
+        return new ProtoDescriptor(importUri, location, contents, parser, nodes);
+      }
+    });
   }
 
-  private ProtoDescriptorInfo getMapEntryDescriptorInfo() {
-    ProtoDescriptor descriptor = new ProtoDescriptor(
-        MAP_ENTRY_DESCRIPTOR_PATH, MAP_ENTRY_DESCRIPTOR_LOCATION, parser, nodes);
-    return new ProtoDescriptorInfo(
-        MAP_ENTRY_DESCRIPTOR_PATH, MAP_ENTRY_DESCRIPTOR_LOCATION, descriptor);
+  private static String contentsOf(URI location) throws IOException {
+    URL url = new URL(location.toString());
+    try (InputStream in = url.openConnection().getInputStream()) {
+      return CharStreams.toString(new InputStreamReader(in, UTF_8));
+    }
   }
 
   private ProtoDescriptorInfo getExtensionPointDescriptorInfo() {
@@ -232,14 +302,7 @@ import java.util.logging.Logger;
     if (location == null) {
       return null;
     }
-    try {
-      return new ProtoDescriptorInfo(importUri, location,
-          new ProtoDescriptor(importUri, location, parser, nodes));
-    } catch (IllegalStateException exception) {
-      LOG.log(Level.WARNING, "Error when initializing descriptor proto from extension point",
-          exception);
-      return null;
-    }
+    return lazyDescriptorInfo(importUri, location);
   }
 
   private static URI descriptorLocation(IConfigurationElement e) {
@@ -252,15 +315,97 @@ import java.util.logging.Logger;
     return URI.createURI(uri.toString());
   }
 
+  /**
+   * A descriptor of a project, loaded the first time it is needed. Only a successful load is kept; a failed one is
+   * attempted again on the next request, and reported only the first time it fails.
+   */
   private static class ProtoDescriptorInfo {
     final String importUri;
     final URI location;
-    final ProtoDescriptor protoDescriptor;
+    private final Callable<ProtoDescriptor> loader;
+    private volatile ProtoDescriptor protoDescriptor;
+    private boolean failureReported;
 
-    ProtoDescriptorInfo(String importUri, URI location, ProtoDescriptor protoDescriptor) {
+    ProtoDescriptorInfo(String importUri, URI location, Callable<ProtoDescriptor> loader) {
       this.importUri = importUri;
       this.location = location;
-      this.protoDescriptor = protoDescriptor;
+      this.loader = loader;
+    }
+
+    ProtoDescriptor protoDescriptor() {
+      ProtoDescriptor descriptor = protoDescriptor;
+      return (descriptor != null) ? descriptor : load();
+    }
+
+    private synchronized ProtoDescriptor load() {
+      if (protoDescriptor == null) {
+        try {
+          protoDescriptor = loader.call();
+        } catch (Exception e) {
+          if (!failureReported) {
+            LOG.log(Level.WARNING, "Unable to load descriptor proto from " + location, e);
+            failureReported = true;
+          }
+        }
+      }
+      return protoDescriptor;
+    }
+  }
+
+  /**
+   * The descriptors of a project, by import URI (in order of precedence) and by location.
+   */
+  private static class DescriptorLookup {
+    final Map<String, ProtoDescriptorInfo> byImportUri;
+    final Map<String, ProtoDescriptorInfo> byLocation = new HashMap<>();
+    final ImmutableList<URI> locations;
+
+    DescriptorLookup(Map<String, ProtoDescriptorInfo> byImportUri) {
+      this.byImportUri = byImportUri;
+      ImmutableList.Builder<URI> locations = ImmutableList.builder();
+      for (ProtoDescriptorInfo descriptorInfo : byImportUri.values()) {
+        locations.add(descriptorInfo.location);
+        if (!byLocation.containsKey(descriptorInfo.location.toString())) {
+          byLocation.put(descriptorInfo.location.toString(), descriptorInfo);
+        }
+      }
+      this.locations = locations.build();
+    }
+
+    ProtoDescriptorInfo infoOf(String importUriOrLocation) {
+      ProtoDescriptorInfo descriptorInfo = byImportUri.get(importUriOrLocation);
+      return (descriptorInfo != null) ? descriptorInfo : byLocation.get(importUriOrLocation);
+    }
+  }
+
+  /**
+   * Identifies a descriptor by its import URI, its location and the hash of its contents.
+   */
+  private static class ContentKey {
+    final String importUri;
+    final URI location;
+    final String contentHash;
+
+    ContentKey(String importUri, URI location, String contentHash) {
+      this.importUri = importUri;
+      this.location = location;
+      this.contentHash = contentHash;
+    }
+
+    @Override public boolean equals(Object obj) {
+      if (this == obj) {
+        return true;
+      }
+      if (!(obj instanceof ContentKey)) {
+        return false;
+      }
+      ContentKey other = (ContentKey) obj;
+      return importUri.equals(other.importUri) && location.equals(other.location)
+          && contentHash.equals(other.contentHash);
+    }
+
+    @Override public int hashCode() {
+      return Objects.hashCode(importUri, location, contentHash);
     }
   }
 }
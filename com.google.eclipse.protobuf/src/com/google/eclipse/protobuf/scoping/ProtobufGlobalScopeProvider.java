@@ -8,6 +8,7 @@
  */
 package com.google.eclipse.protobuf.scoping;
 
+import com.google.eclipse.protobuf.model.util.Imports;
 import com.google.eclipse.protobuf.model.util.Protobufs;
 import com.google.eclipse.protobuf.model.util.Resources;
 import com.google.eclipse.protobuf.protobuf.Import;
@@ -22,12 +23,15 @@ import org.eclipse.xtext.scoping.impl.ImportUriGlobalScopeProvider;
 import org.eclipse.xtext.util.IAcceptor;
 import org.eclipse.xtext.util.IResourceScopeCache;
 
+import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.LinkedHashSet;
+import java.util.List;
 
 /**
  * A global scope provider that reads each {@link Import} in the protobuf file, resolves it, and
- * caches the result.
+ * caches the result. Results are also cached by the import statements of the file, so they are not computed again
+ * when the file changes but its imports do not.
  */
 public class ProtobufGlobalScopeProvider extends ImportUriGlobalScopeProvider {
   @Inject
@@ -39,32 +43,69 @@ public class ProtobufGlobalScopeProvider extends ImportUriGlobalScopeProvider {
   @Inject
   private Protobufs protobufs;
 
+  @Inject
+  private Imports imports;
+
   @Inject
   private IImportResolver importResolver;
 
+  @Inject
+  private ImportedUrisCache importedUrisCache;
+
   @Override
   protected LinkedHashSet<URI> getImportedUris(final Resource resource) {
     return cache.get(ProtobufGlobalScopeProvider.class.getName(), resource,
         new Provider<LinkedHashSet<URI>>() {
           @Override
           public LinkedHashSet<URI> get() {
-            final LinkedHashSet<URI> uniqueImportURIs = new LinkedHashSet<>(5);
-            IAcceptor<String> collector = createURICollector(resource, uniqueImportURIs);
             Protobuf protobuf = resources.rootOf(resource);
             if (protobuf == null) {
-              return uniqueImportURIs;
+              return new LinkedHashSet<>(5);
             }
-            for (Import anImport : protobufs.importsIn(protobuf)) {
-              collector.accept(importResolver.resolve(anImport));
+            List<Import> allImports = protobufs.importsIn(protobuf);
+            List<String> importPaths = new ArrayList<>(allImports.size());
+            for (Import anImport : allImports) {
+              importPaths.add(imports.getPath(anImport));
             }
-            Iterator<URI> uriIter = uniqueImportURIs.iterator();
-            while (uriIter.hasNext()) {
-              if (!EcoreUtil2.isValidUri(resource, uriIter.next())) {
-                uriIter.remove();
-              }
+            long epoch = importResolver.epoch();
+            LinkedHashSet<URI> cached = importedUrisCache.get(resource.getURI(), importPaths, epoch);
+            if (cached != null) {
+              return cached;
+            }
+            LinkedHashSet<URI> uniqueImportURIs = new LinkedHashSet<>(5);
+            boolean allResolved = resolveAndValidate(resource, allImports, uniqueImportURIs);
+            // Imports that cannot be resolved yet may be resolved later without a change in the resolver's epoch
+            // (e.g. when a file is added outside of the workspace.)
+            if (allResolved) {
+              importedUrisCache.put(resource.getURI(), importPaths, epoch, uniqueImportURIs);
             }
             return uniqueImportURIs;
           }
         });
   }
+
+  /*
+   * Adds the valid URIs the given imports resolve to to the given set. Returns whether every import resolved to a valid
+   * URI; several imports may resolve to the same one.
+   */
+  private boolean resolveAndValidate(Resource resource, List<Import> allImports, LinkedHashSet<URI> uniqueImportURIs) {
+    boolean allResolved = true;
+    IAcceptor<String> collector = createURICollector(resource, uniqueImportURIs);
+    for (Import anImport : allImports) {
+      String resolvedUri = importResolver.resolve(anImport);
+      if (resolvedUri == null) {
+        allResolved = false;
+        continue;
+      }
+      collector.accept(resolvedUri);
+    }
+    Iterator<URI> uriIter = uniqueImportURIs.iterator();
+    while (uriIter.hasNext()) {
+      if (!EcoreUtil2.isValidUri(resource, uriIter.next())) {
+        uriIter.remove();
+        allResolved = false;
+      }
+    }
+    return allResolved;
+  }
 }
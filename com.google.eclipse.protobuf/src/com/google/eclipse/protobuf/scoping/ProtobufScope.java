@@ -0,0 +1,97 @@
+/*
+ * Copyright (c) 2016 Google Inc.
+ *
+ * All rights reserved. This program and the accompanying materials are made available under the terms of the Eclipse
+ * Public License v1.0 which accompanies this distribution, and is available at
+ *
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package com.google.eclipse.protobuf.scoping;
+
+import static java.util.Collections.emptyList;
+
+import static org.eclipse.emf.ecore.util.EcoreUtil.getURI;
+
+import static com.google.common.collect.Iterables.filter;
+import static com.google.common.collect.Iterables.unmodifiableIterable;
+
+import org.eclipse.emf.common.util.URI;
+import org.eclipse.emf.ecore.EObject;
+import org.eclipse.xtext.naming.QualifiedName;
+import org.eclipse.xtext.resource.IEObjectDescription;
+import org.eclipse.xtext.scoping.IScope;
+
+import com.google.common.base.Predicate;
+
+/**
+ * <code>{@link IScope}</code> that indexes its descriptions by name.
+ * <p>
+ * The index is built lazily, the first time an element is looked up by name. Exact-name lookups are then answered
+ * with a hash lookup instead of the linear scan performed by <code>{@link org.eclipse.xtext.scoping.impl.SimpleScope
+ * SimpleScope}</code>. <code>{@link #getAllElements()}</code> returns the given descriptions without copying them.
+ * Names are case-sensitive and, as in {@code SimpleScope}, the first description with a given name wins.
+ * </p>
+ */
+class ProtobufScope implements IScope {
+  private final Iterable<IEObjectDescription> descriptions;
+
+  private volatile UniqueDescriptions descriptionsByName;
+
+  ProtobufScope(Iterable<IEObjectDescription> descriptions) {
+    this.descriptions = descriptions;
+  }
+
+  @Override public IEObjectDescription getSingleElement(QualifiedName name) {
+    return descriptionsByName().get(name);
+  }
+
+  @Override public Iterable<IEObjectDescription> getElements(final QualifiedName name) {
+    if (getSingleElement(name) == null) {
+      return emptyList();
+    }
+    return filter(descriptions, new Predicate<IEObjectDescription>() {
+      @Override public boolean apply(IEObjectDescription description) {
+        return name.equals(description.getName());
+      }
+    });
+  }
+
+  @Override public IEObjectDescription getSingleElement(EObject object) {
+    for (IEObjectDescription description : getElements(object)) {
+      return description;
+    }
+    return null;
+  }
+
+  @Override public Iterable<IEObjectDescription> getElements(final EObject object) {
+    final URI uri = getURI(object);
+    return filter(descriptions, new Predicate<IEObjectDescription>() {
+      @Override public boolean apply(IEObjectDescription description) {
+        return description.getEObjectOrProxy() == object || uri.equals(description.getEObjectURI());
+      }
+    });
+  }
+
+  @Override public Iterable<IEObjectDescription> getAllElements() {
+    return unmodifiableIterable(descriptions);
+  }
+
+  private UniqueDescriptions descriptionsByName() {
+    UniqueDescriptions result = descriptionsByName;
+    if (result == null) {
+      synchronized (this) {
+        result = descriptionsByName;
+        if (result == null) {
+          result = new UniqueDescriptions();
+          result.addAll(descriptions);
+          descriptionsByName = result;
+        }
+      }
+    }
+    return result;
+  }
+
+  @Override public String toString() {
+    return getClass().getSimpleName() + descriptions;
+  }
+}
@@ -8,9 +8,14 @@
  */
 package com.google.eclipse.protobuf.scoping;
 
+import static com.google.common.base.Suppliers.memoize;
 import static com.google.eclipse.protobuf.scoping.OptionType.typeOf;
+import static com.google.eclipse.protobuf.util.SystemProperties.useSimpleScopes;
 import static java.util.Collections.emptySet;
+import static org.eclipse.xtext.util.Tuples.create;
+import static org.eclipse.xtext.util.Tuples.pair;
 
+import com.google.common.base.Supplier;
 import com.google.eclipse.protobuf.model.util.MessageFields;
 import com.google.eclipse.protobuf.model.util.ModelObjects;
 import com.google.eclipse.protobuf.model.util.Options;
@@ -44,18 +49,21 @@ import com.google.eclipse.protobuf.protobuf.Stream;
 import com.google.eclipse.protobuf.protobuf.TypeExtension;
 import com.google.eclipse.protobuf.util.EResources;
 import com.google.inject.Inject;
+import com.google.inject.Provider;
 
 import org.eclipse.core.resources.IProject;
 import org.eclipse.emf.ecore.EObject;
 import org.eclipse.emf.ecore.EReference;
+import org.eclipse.emf.ecore.resource.Resource;
 import org.eclipse.xtext.resource.IEObjectDescription;
 import org.eclipse.xtext.scoping.IScope;
 import org.eclipse.xtext.scoping.impl.AbstractDeclarativeScopeProvider;
 import org.eclipse.xtext.scoping.impl.SimpleScope;
+import org.eclipse.xtext.util.IResourceScopeCache;
 
 import java.util.Collection;
-import java.util.Collections;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * Custom scoping description.
@@ -66,6 +74,9 @@ import java.util.Set;
  */
 public class ProtobufScopeProvider extends AbstractDeclarativeScopeProvider implements ScopeProvider {
   private static final boolean DO_NOT_IGNORE_CASE = false;
+  private static final String SCOPE_CACHE_KEY = ProtobufScopeProvider.class.getName() + ".scope";
+
+  @Inject private final IResourceScopeCache cache = IResourceScopeCache.NullImpl.INSTANCE;
 
   @Inject private ComplexTypeFinderStrategy complexTypeFinderDelegate;
   @Inject private CustomOptionFieldFinder customOptionFieldFinder;
@@ -73,7 +84,9 @@ public class ProtobufScopeProvider extends AbstractDeclarativeScopeProvider impl
   @Inject private CustomOptionFinderStrategy customOptionFinderDelegate;
   @Inject private ExtensionFieldNameFinderStrategy extensionFieldNameFinderDelegate;
   @Inject private ExtensionFieldFinderStrategy extensionFieldFinderDelegate;
+  @Inject private IImportResolver importResolver;
   @Inject private ProtoDescriptorProvider descriptorProvider;
+  @Inject private QualifiedComplexTypeFinderStrategy qualifiedComplexTypeFinderDelegate;
   @Inject private MessageFieldFinderStrategy messageFieldFinderDelegate;
   @Inject private MessageFields messageFields;
   @Inject private ModelElementFinder modelElementFinder;
@@ -82,6 +95,8 @@ public class ProtobufScopeProvider extends AbstractDeclarativeScopeProvider impl
   @Inject private LiteralDescriptions literalDescriptions;
   @Inject private NativeOptionDescriptions nativeOptionDescriptions;
   @Inject private Options options;
+  @Inject private PublicImportClosure publicImportClosure;
+  @Inject private ScopeSearchPath searchPath;
 
   @SuppressWarnings("unused")
   public IScope scope_ComplexTypeLink_target(ComplexTypeLink link, EReference r) {
@@ -93,9 +108,12 @@ public class ProtobufScopeProvider extends AbstractDeclarativeScopeProvider impl
       c = c.eContainer();
     }
     if (c instanceof MessageField) {
-      MessageField field = (MessageField) c;
-      Collection<IEObjectDescription> complexTypes = potentialComplexTypesFor(field);
-      return createScope(complexTypes);
+      final MessageField field = (MessageField) c;
+      return createOutwardResolvingScope(field, ComplexType.class, new Supplier<IScope>() {
+        @Override public IScope get() {
+          return findScope(field, complexTypeFinderDelegate, ComplexType.class);
+        }
+      });
     }
     return createEmptyScope();
   }
@@ -106,10 +124,12 @@ public class ProtobufScopeProvider extends AbstractDeclarativeScopeProvider impl
 
   @SuppressWarnings("unused")
   public IScope scope_ExtensibleTypeLink_target(ExtensibleTypeLink link, EReference r) {
-    EObject c = link.eContainer();
-    Collection<IEObjectDescription> extensibleTypes =
-        modelElementFinder.find(c, complexTypeFinderDelegate, ExtensibleType.class);
-    return createScope(extensibleTypes);
+    final EObject c = link.eContainer();
+    return createOutwardResolvingScope(c, ExtensibleType.class, new Supplier<IScope>() {
+      @Override public IScope get() {
+        return findScope(c, complexTypeFinderDelegate, ExtensibleType.class);
+      }
+    });
   }
 
   @Override public Collection<IEObjectDescription> potentialExtensibleTypesFor(TypeExtension extension) {
@@ -119,9 +139,17 @@ public class ProtobufScopeProvider extends AbstractDeclarativeScopeProvider impl
 
   @SuppressWarnings("unused")
   public IScope scope_MessageLink_target(MessageLink link, EReference r) {
-    Protobuf root = modelObjects.rootOf(link);
-    Collection<IEObjectDescription> messages = allMessages(root);
-    return createScope(messages);
+    final Protobuf root = modelObjects.rootOf(link);
+    return createOutwardResolvingScope(link, Message.class, new Supplier<IScope>() {
+      @Override public IScope get() {
+        Object key = create(SCOPE_CACHE_KEY, root, pair(complexTypeFinderDelegate, Message.class));
+        return cache.get(key, root.eResource(), new Provider<IScope>() {
+          @Override public IScope get() {
+            return createScope(allMessages(root));
+          }
+        });
+      }
+    });
   }
 
   @Override public Collection<IEObjectDescription> potentialMessagesFor(Rpc rpc) {
@@ -165,7 +193,7 @@ public class ProtobufScopeProvider extends AbstractDeclarativeScopeProvider impl
     if (container instanceof MessageField) {
       anEnum = messageFields.enumTypeOf((MessageField) container);
     }
-    return createScope(literalDescriptions.literalsOf(anEnum));
+    return literalDescriptions.scopeOf(anEnum);
   }
 
   @SuppressWarnings("unused")
@@ -174,23 +202,23 @@ public class ProtobufScopeProvider extends AbstractDeclarativeScopeProvider impl
     if (c instanceof AbstractOption) {
       AbstractOption option = (AbstractOption) c;
       if (options.isNative(option)) {
-        return createScope(nativeOptionDescriptions.sources(option));
+        return nativeOptionDescriptions.scopeOf(option);
       }
     }
     if (c instanceof AbstractCustomOption) {
       AbstractCustomOption option = (AbstractCustomOption) c;
 
+      OptionType optionType = typeOf((AbstractOption) option);
       if (c instanceof GroupElement) {
         EObject container = c.eContainer();
         if (container instanceof Group) {
-          OptionType optionType = OptionType.findOptionTypeForLevelOf(container.eContainer());
-          return createScope(optionType != null 
-              ? modelElementFinder.find(option, customOptionFinderDelegate, optionType)
-              : Collections.<IEObjectDescription>emptySet());
+          optionType = OptionType.findOptionTypeForLevelOf(container.eContainer());
         }
       }
-
-      return createScope(potentialSourcesFor(option));
+      if (optionType == null) {
+        return createEmptyScope();
+      }
+      return findScope(option, customOptionFinderDelegate, optionType);
     }
     Set<IEObjectDescription> descriptions = emptySet();
     return createScope(descriptions);
@@ -207,22 +235,14 @@ public class ProtobufScopeProvider extends AbstractDeclarativeScopeProvider impl
 
   @SuppressWarnings("unused")
   public IScope scope_OptionField_target(OptionField field, EReference r) {
-    return createScope(allPossibleSourcesOf(field));
-  }
-
-  private Collection<IEObjectDescription> allPossibleSourcesOf(OptionField field) {
-    if (field == null) {
-      return emptySet();
-    }
-    EObject container = field.eContainer();
-    if (container instanceof AbstractCustomOption) {
-      AbstractCustomOption option = (AbstractCustomOption) container;
+    if (field != null && field.eContainer() instanceof AbstractCustomOption) {
+      AbstractCustomOption option = (AbstractCustomOption) field.eContainer();
       if (field instanceof MessageOptionField) {
-        return customOptionFieldFinder.findOptionFields(option, messageFieldFinderDelegate, field);
+        return customOptionFieldFinder.findOptionFieldScope(option, messageFieldFinderDelegate, field);
       }
-      return customOptionFieldFinder.findOptionFields(option, extensionFieldFinderDelegate, field);
+      return customOptionFieldFinder.findOptionFieldScope(option, extensionFieldFinderDelegate, field);
     }
-    return emptySet();
+    return createEmptyScope();
   }
 
   @Override public Collection<IEObjectDescription> potentialMessageFieldsFor(AbstractCustomOption option) {
@@ -268,12 +288,111 @@ public class ProtobufScopeProvider extends AbstractDeclarativeScopeProvider impl
     return customOptionFieldNameFinder.findFieldNamesSources(value, extensionFieldNameFinderDelegate);
   }
 
-  private static IScope createEmptyScope() {
+  /**
+   * Returns a scope with the descriptions <code>{@link ModelElementFinder}</code> finds from the given model object.
+   * Since those descriptions only depend on the container of the given model object, the scope (and its index) is
+   * cached per container until the resource changes.
+   */
+  private <T> IScope findScope(final EObject start, final ModelElementFinder.FinderStrategy<T> strategy,
+      final T criteria) {
+    EObject container = start.eContainer();
+    if (container == null) {
+      return createScope(modelElementFinder.find(start, strategy, criteria));
+    }
+    Object key = create(SCOPE_CACHE_KEY, container, pair(strategy, criteria));
+    return cachedScope(key, start.eResource(), new Provider<IScope>() {
+      @Override public IScope get() {
+        return createScope(modelElementFinder.find(start, strategy, criteria));
+      }
+    });
+  }
+
+  /*
+   * Scopes also contain the elements of imported files, which may change while the resource does not. A cached scope
+   * is only reused while the epoch of the import resolver and the state of the imported files are the ones it was
+   * created with.
+   */
+  private IScope cachedScope(Object key, Resource resource, Provider<IScope> scope) {
+    AtomicReference<ScopeOfImports> cached = cache.get(key, resource, new Provider<AtomicReference<ScopeOfImports>>() {
+      @Override public AtomicReference<ScopeOfImports> get() {
+        return new AtomicReference<>();
+      }
+    });
+    Object importsToken = pair(importResolver.epoch(), publicImportClosure.importsTokenOf(resource));
+    ScopeOfImports current = cached.get();
+    if (current != null && current.importsToken.equals(importsToken)) {
+      return current.scope;
+    }
+    current = new ScopeOfImports(scope.get(), importsToken);
+    cached.set(current);
+    return current.scope;
+  }
+
+  /**
+   * Creates a scope that resolves type names the way protoc does, looking them up by their fully-qualified name from
+   * the innermost scope of the given model object outwards. The scope is cached per container of the given model
+   * object, and the index of fully-qualified names is cached per resource, until the resource changes.
+   * @param context the model object containing the reference to resolve. It must not be a message or a group, so the
+   * names visible from it are the ones visible from its container.
+   * @param typeOfComplexType the type of the elements in the scope.
+   * @param allNames supplies a scope with all the names the elements in the scope can be referred to; only used if a
+   * name cannot be resolved from the fully-qualified names, or if all the elements in the scope are requested.
+   */
+  private IScope createOutwardResolvingScope(final EObject context,
+      final Class<? extends ComplexType> typeOfComplexType, final Supplier<IScope> allNames) {
+    if (useSimpleScopes()) {
+      return allNames.get();
+    }
+    EObject container = context.eContainer();
+    if (container == null) {
+      return newOutwardResolvingScope(context, typeOfComplexType, allNames);
+    }
+    Object key = create(SCOPE_CACHE_KEY, container, pair(OutwardResolvingScope.class, typeOfComplexType));
+    return cachedScope(key, context.eResource(), new Provider<IScope>() {
+      @Override public IScope get() {
+        return newOutwardResolvingScope(context, typeOfComplexType, allNames);
+      }
+    });
+  }
+
+  private IScope newOutwardResolvingScope(EObject context, Class<? extends ComplexType> typeOfComplexType,
+      Supplier<IScope> allNames) {
+    return new OutwardResolvingScope(searchPath.of(context), fullyQualifiedNamesScope(context, typeOfComplexType),
+        memoize(allNames));
+  }
+
+  private IScope fullyQualifiedNamesScope(EObject context, final Class<? extends ComplexType> typeOfComplexType) {
+    final Protobuf root = modelObjects.rootOf(context);
+    Object key = create(SCOPE_CACHE_KEY, root, pair(qualifiedComplexTypeFinderDelegate, typeOfComplexType));
+    return cachedScope(key, root.eResource(), new Provider<IScope>() {
+      @Override public IScope get() {
+        return createScope(modelElementFinder.find(root, qualifiedComplexTypeFinderDelegate, typeOfComplexType));
+      }
+    });
+  }
+
+  /**
+   * A scope, together with the state of the imported files it was created from.
+   */
+  private static class ScopeOfImports {
+    final IScope scope;
+    final Object importsToken;
+
+    ScopeOfImports(IScope scope, Object importsToken) {
+      this.scope = scope;
+      this.importsToken = importsToken;
+    }
+  }
+
+  static IScope createEmptyScope() {
     Set<IEObjectDescription> descriptions = emptySet();
     return createScope(descriptions);
   }
 
-  private static IScope createScope(Iterable<IEObjectDescription> descriptions) {
-    return new SimpleScope(descriptions, DO_NOT_IGNORE_CASE);
+  static IScope createScope(Iterable<IEObjectDescription> descriptions) {
+    if (useSimpleScopes()) {
+      return new SimpleScope(descriptions, DO_NOT_IGNORE_CASE);
+    }
+    return new ProtobufScope(descriptions);
   }
 }
@@ -0,0 +1,220 @@
+/*
+ * Copyright (c) 2016 Google Inc.
+ *
+ * All rights reserved. This program and the accompanying materials are made available under the terms of the Eclipse
+ * Public License v1.0 which accompanies this distribution, and is available at
+ *
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package com.google.eclipse.protobuf.scoping;
+
+import static java.util.Collections.unmodifiableList;
+
+import com.google.eclipse.protobuf.model.util.Imports;
+import com.google.eclipse.protobuf.model.util.Protobufs;
+import com.google.eclipse.protobuf.model.util.Resources;
+import com.google.eclipse.protobuf.protobuf.Import;
+import com.google.eclipse.protobuf.protobuf.Protobuf;
+import com.google.eclipse.protobuf.resource.ResourceSets;
+import com.google.inject.Inject;
+import com.google.inject.Provider;
+
+import org.eclipse.emf.common.util.URI;
+import org.eclipse.emf.ecore.EObject;
+import org.eclipse.emf.ecore.resource.Resource;
+import org.eclipse.emf.ecore.resource.ResourceSet;
+import org.eclipse.emf.ecore.util.EcoreUtil;
+import org.eclipse.xtext.util.IResourceScopeCache;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Resolves the transitive closure of the "import public" statements of a file.
+ * <p>
+ * The closure of a resource is cached in the resource itself. Each resource in the closure is marked with a token
+ * that is discarded, together with the rest of its cache, when that resource changes. A cached closure is only reused
+ * if every resource in it still carries its token, so a change to any file in the chain invalidates the closure. The
+ * closure refers to the files in it by URI, so it does not keep other resources in memory. Resources may be shared by
+ * several resource sets, so their caches are only reached through the <code>{@link IResourceScopeCache}</code>, which
+ * holds the lock of a shared resource while using its cache.
+ * </p>
+ */
+class PublicImportClosure {
+  private static final String CLOSURE_KEY = PublicImportClosure.class.getName() + ".closure";
+  private static final String TOKEN_KEY = PublicImportClosure.class.getName() + ".token";
+
+  @Inject private final IResourceScopeCache cache = IResourceScopeCache.NullImpl.INSTANCE;
+
+  @Inject private Imports imports;
+  @Inject private Protobufs protobufs;
+  @Inject private Resources resources;
+  @Inject private ResourceSets resourceSets;
+
+  /**
+   * Returns all the files reachable from the given resource through chains of "import public" statements, in
+   * breadth-first order. The given resource is not part of the closure. The same list is returned for as long as none
+   * of the files in the closure changes.
+   * @param resource the given resource.
+   * @return all the files publicly imported, directly or indirectly, by the given resource.
+   */
+  List<PubliclyImportedFile> closureOf(Resource resource) {
+    AtomicReference<Closure> cached = cache.get(CLOSURE_KEY, resource, new Provider<AtomicReference<Closure>>() {
+      @Override public AtomicReference<Closure> get() {
+        return new AtomicReference<>();
+      }
+    });
+    Closure closure = cached.get();
+    if (closure == null || !isValid(closure, resource.getResourceSet())) {
+      closure = computeClosure(resource);
+      cached.set(closure);
+    }
+    return closure.publicImports;
+  }
+
+  /**
+   * Returns a token of the current state of the files imported by the given resource: the files it imports and, for
+   * each of them, the files in its closure. Tokens are equal for as long as the imports of the given resource resolve
+   * to the same files and none of those files, or the files in their closures, changes.
+   * @param resource the given resource.
+   * @return a token of the current state of the files imported by the given resource.
+   */
+  List<Object> importsTokenOf(Resource resource) {
+    List<Object> token = new ArrayList<>();
+    Protobuf root = resources.rootOf(resource);
+    if (root == null) {
+      return token;
+    }
+    for (Import anImport : protobufs.importsIn(root)) {
+      if (imports.isImportingDescriptor(anImport)) {
+        continue;
+      }
+      URI resolvedUri = imports.resolvedUriOf(anImport);
+      Resource imported = (resolvedUri == null) ? null : resourceOf(resolvedUri, resource.getResourceSet());
+      token.add(resolvedUri);
+      if (imported != null) {
+        token.add(tokenOf(imported));
+        token.add(closureOf(imported));
+      }
+    }
+    return token;
+  }
+
+  private Closure computeClosure(Resource resource) {
+    Closure closure = new Closure();
+    Set<URI> visited = new HashSet<>();
+    visited.add(resource.getURI());
+    Deque<Resource> pending = new ArrayDeque<>();
+    pending.add(resource);
+    while (!pending.isEmpty()) {
+      Resource current = pending.poll();
+      Protobuf root = resources.rootOf(current);
+      if (!protobufs.hasKnownSyntax(root)) {
+        continue;
+      }
+      closure.addMember(current, tokenOf(current));
+      for (Import anImport : protobufs.publicImportsIn(root)) {
+        if (imports.isImportingDescriptor(anImport)) {
+          closure.publicImports.add(new PubliclyImportedFile(EcoreUtil.getURI(anImport), null));
+          continue;
+        }
+        URI resolvedUri = imports.resolvedUriOf(anImport);
+        if (resolvedUri == null || !visited.add(resolvedUri)) {
+          continue;
+        }
+        Resource imported = resourceSets.findResource(current.getResourceSet(), resolvedUri);
+        if (imported == null || !protobufs.hasKnownSyntax(resources.rootOf(imported))) {
+          continue;
+        }
+        closure.publicImports.add(new PubliclyImportedFile(EcoreUtil.getURI(anImport), imported.getURI()));
+        pending.add(imported);
+      }
+    }
+    closure.publicImports = unmodifiableList(closure.publicImports);
+    return closure;
+  }
+
+  private boolean isValid(Closure closure, ResourceSet resourceSet) {
+    for (int i = 0; i < closure.memberUris.size(); i++) {
+      Resource member = resourceOf(closure.memberUris.get(i), resourceSet);
+      if (member == null) {
+        return false;
+      }
+      if (tokenOf(member) != closure.memberTokens.get(i)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  // The token of a resource lives as long as its cache: it is replaced when the resource changes.
+  private Object tokenOf(Resource resource) {
+    return cache.get(TOKEN_KEY, resource, new Provider<Object>() {
+      @Override public Object get() {
+        return new Object();
+      }
+    });
+  }
+
+  /**
+   * Returns the resource of the given publicly imported file.
+   * @param file the publicly imported file.
+   * @param resourceSet the resource set of the file whose closure contains the given one.
+   * @return the resource of the given file, or {@code null} if it cannot be loaded anymore.
+   */
+  Resource resourceOf(PubliclyImportedFile file, ResourceSet resourceSet) {
+    return file.isImportingDescriptor() ? null : resourceOf(file.uri, resourceSet);
+  }
+
+  private Resource resourceOf(URI uri, ResourceSet resourceSet) {
+    return (resourceSet == null) ? null : resourceSets.findResource(resourceSet, uri);
+  }
+
+  /**
+   * Returns the "import public" statement through which the given file was reached.
+   * @param file the publicly imported file.
+   * @param resourceSet the resource set of the file whose closure contains the given one.
+   * @return the "import public" statement, or {@code null} if it cannot be found anymore.
+   */
+  Import importOf(PubliclyImportedFile file, ResourceSet resourceSet) {
+    Resource importer = resourceOf(file.importUri.trimFragment(), resourceSet);
+    EObject anImport = (importer == null) ? null : importer.getEObject(file.importUri.fragment());
+    return (anImport instanceof Import) ? (Import) anImport : null;
+  }
+
+  /**
+   * A file reached through an "import public" statement.
+   */
+  static class PubliclyImportedFile {
+    final URI importUri;
+    final URI uri;
+
+    PubliclyImportedFile(URI importUri, URI uri) {
+      this.importUri = importUri;
+      this.uri = uri;
+    }
+
+    /**
+     * Indicates whether this import refers to descriptor.proto, which does not have a resource of its own.
+     */
+    boolean isImportingDescriptor() {
+      return uri == null;
+    }
+  }
+
+  private static class Closure {
+    List<PubliclyImportedFile> publicImports = new ArrayList<>();
+    final List<URI> memberUris = new ArrayList<>();
+    final List<Object> memberTokens = new ArrayList<>();
+
+    void addMember(Resource member, Object token) {
+      memberUris.add(member.getURI());
+      memberTokens.add(token);
+    }
+  }
+}
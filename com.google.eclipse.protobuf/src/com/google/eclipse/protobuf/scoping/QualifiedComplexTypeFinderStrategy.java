@@ -0,0 +1,84 @@
+/*
+ * Copyright (c) 2016 Google Inc.
+ *
+ * All rights reserved. This program and the accompanying materials are made available under the terms of the Eclipse
+ * Public License v1.0 which accompanies this distribution, and is available at
+ *
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package com.google.eclipse.protobuf.scoping;
+
+import static java.util.Collections.emptySet;
+import static java.util.Collections.singleton;
+
+import static org.eclipse.xtext.resource.EObjectDescription.create;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import org.eclipse.core.resources.IProject;
+import org.eclipse.emf.ecore.EClass;
+import org.eclipse.emf.ecore.EObject;
+import org.eclipse.xtext.naming.QualifiedName;
+import org.eclipse.xtext.resource.IEObjectDescription;
+
+import com.google.eclipse.protobuf.model.util.Imports;
+import com.google.eclipse.protobuf.naming.IProtobufQualifiedNameProvider;
+import com.google.eclipse.protobuf.naming.NormalNamingStrategy;
+import com.google.eclipse.protobuf.protobuf.ComplexType;
+import com.google.eclipse.protobuf.protobuf.Import;
+import com.google.eclipse.protobuf.protobuf.Package;
+import com.google.eclipse.protobuf.util.EResources;
+import com.google.inject.Inject;
+
+/**
+ * Finds types by their fully-qualified name only. Unlike <code>{@link ComplexTypeFinderStrategy}</code>, it does not
+ * describe a type with every partial name it could be referred to; resolving those is left to
+ * <code>{@link OutwardResolvingScope}</code>.
+ */
+class QualifiedComplexTypeFinderStrategy implements ModelElementFinder.FinderStrategy<Class<? extends ComplexType>> {
+  @Inject private ComplexTypeFinderStrategy complexTypeFinderDelegate;
+  @Inject private ProtoDescriptorProvider descriptorProvider;
+  @Inject private IProtobufQualifiedNameProvider nameProvider;
+  @Inject private NormalNamingStrategy namingStrategy;
+  @Inject private Imports imports;
+
+  @Override public EClass importedElementType(Class<? extends ComplexType> typeOfComplexType) {
+    return complexTypeFinderDelegate.importedElementType(typeOfComplexType);
+  }
+
+  @Override public Collection<IEObjectDescription> imported(Package fromImporter, Package fromImported, Object target,
+      Class<? extends ComplexType> typeOfComplexType) {
+    return fullyQualifiedName(target, typeOfComplexType);
+  }
+
+  @Override public Collection<IEObjectDescription> inDescriptor(Import anImport,
+      Class<? extends ComplexType> typeOfComplexType) {
+    IProject project = EResources.getProjectOf(anImport.eResource());
+    ProtoDescriptor descriptor = descriptorProvider.descriptor(project, imports.getPath(anImport));
+    List<IEObjectDescription> descriptions = new ArrayList<>();
+    for (ComplexType complexType : descriptor.allTypes()) {
+      descriptions.addAll(fullyQualifiedName(complexType, typeOfComplexType));
+    }
+    return descriptions;
+  }
+
+  @Override public Collection<IEObjectDescription> local(Object target, Class<? extends ComplexType> typeOfComplexType,
+      int level) {
+    return fullyQualifiedName(target, typeOfComplexType);
+  }
+
+  private Collection<IEObjectDescription> fullyQualifiedName(Object target,
+      Class<? extends ComplexType> typeOfComplexType) {
+    if (!typeOfComplexType.isInstance(target)) {
+      return emptySet();
+    }
+    EObject e = (EObject) target;
+    QualifiedName fqn = nameProvider.getFullyQualifiedName(e, namingStrategy);
+    if (fqn == null) {
+      return emptySet();
+    }
+    return singleton(create(fqn, e));
+  }
+}
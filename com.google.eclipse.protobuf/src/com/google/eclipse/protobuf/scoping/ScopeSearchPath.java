@@ -0,0 +1,60 @@
+/*
+ * Copyright (c) 2016 Google Inc.
+ *
+ * All rights reserved. This program and the accompanying materials are made available under the terms of the Eclipse
+ * Public License v1.0 which accompanies this distribution, and is available at
+ *
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package com.google.eclipse.protobuf.scoping;
+
+import static java.util.Collections.unmodifiableList;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.eclipse.emf.ecore.EObject;
+import org.eclipse.xtext.naming.QualifiedName;
+
+import com.google.eclipse.protobuf.model.util.ModelObjects;
+import com.google.eclipse.protobuf.model.util.Packages;
+import com.google.eclipse.protobuf.naming.IProtobufQualifiedNameProvider;
+import com.google.eclipse.protobuf.naming.NormalNamingStrategy;
+import com.google.eclipse.protobuf.protobuf.Group;
+import com.google.eclipse.protobuf.protobuf.Message;
+import com.google.inject.Inject;
+
+/**
+ * Computes the scopes a name is looked up in, following protoc's rules.
+ */
+class ScopeSearchPath {
+  @Inject private ModelObjects modelObjects;
+  @Inject private IProtobufQualifiedNameProvider nameProvider;
+  @Inject private NormalNamingStrategy namingStrategy;
+  @Inject private Packages packages;
+
+  /**
+   * Returns the fully-qualified names of the scopes visible from the given model object, innermost first: each of the
+   * messages (or groups) containing the given object, each of the segments of the package of the file, and finally
+   * the root package (<code>{@link QualifiedName#EMPTY}</code>.)
+   * @param context the given model object.
+   * @return the fully-qualified names of the scopes visible from the given model object.
+   */
+  List<QualifiedName> of(EObject context) {
+    List<QualifiedName> searchPath = new ArrayList<>();
+    for (EObject current = context; current != null; current = current.eContainer()) {
+      if (current instanceof Message || current instanceof Group) {
+        QualifiedName fqn = nameProvider.getFullyQualifiedName(current, namingStrategy);
+        if (fqn != null) {
+          searchPath.add(fqn);
+        }
+      }
+    }
+    List<String> packageSegments = packages.segmentsOf(modelObjects.packageOf(context));
+    for (int i = packageSegments.size(); i > 0; i--) {
+      searchPath.add(QualifiedName.create(packageSegments.subList(0, i)));
+    }
+    searchPath.add(QualifiedName.EMPTY);
+    return unmodifiableList(searchPath);
+  }
+}
@@ -8,29 +8,40 @@
  */
 package com.google.eclipse.protobuf.scoping;
 
-import static com.google.common.collect.Maps.newHashMap;
+import static com.google.common.collect.Maps.newLinkedHashMap;
 
 import java.util.Collection;
 import java.util.Map;
 
+import org.eclipse.xtext.naming.QualifiedName;
 import org.eclipse.xtext.resource.IEObjectDescription;
 
 /**
+ * Descriptions indexed by name. When more than one description has the same name, only the first one is kept.
+ *
  * @author alruiz@google.com (Alex Ruiz)
  */
 class UniqueDescriptions {
 
-  private final Map<String, IEObjectDescription> descriptionsByName = newHashMap();
+  private final Map<QualifiedName, IEObjectDescription> descriptionsByName = newLinkedHashMap();
 
-  void addAll(Collection<IEObjectDescription> descriptions) {
+  void addAll(Iterable<IEObjectDescription> descriptions) {
     for (IEObjectDescription description : descriptions) {
-      String name = description.getName().toString();
-      if (!descriptionsByName.containsKey(name)) {
-        descriptionsByName.put(name, description);
-      }
+      add(description);
+    }
+  }
+
+  void add(IEObjectDescription description) {
+    QualifiedName name = description.getName();
+    if (!descriptionsByName.containsKey(name)) {
+      descriptionsByName.put(name, description);
     }
   }
 
+  IEObjectDescription get(QualifiedName name) {
+    return descriptionsByName.get(name);
+  }
+
   Collection<IEObjectDescription> values() {
     return descriptionsByName.values();
   }
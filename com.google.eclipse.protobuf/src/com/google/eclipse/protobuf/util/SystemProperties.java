@@ -15,10 +15,44 @@ package com.google.eclipse.protobuf.util;
  */
 public final class SystemProperties {
   private static final String LINE_SEPARATOR = System.getProperty("line.separator");
+  private static final boolean USE_SIMPLE_SCOPES = Boolean.getBoolean("com.google.eclipse.protobuf.simpleScopes");
+  private static final boolean USE_BINARY_RESOURCE_STORAGE =
+      !"false".equals(System.getProperty("com.google.eclipse.protobuf.binaryResourceStorage"));
+  private static final long SHARED_RESOURCES_BUDGET =
+      Long.getLong("com.google.eclipse.protobuf.sharedResourcesBudget", 8 * 1024 * 1024);
 
   public static String lineSeparator() {
     return LINE_SEPARATOR;
   }
 
+  /**
+   * Indicates whether scoping should use Xtext's {@code SimpleScope} instead of protobuf-dt's own scope
+   * implementation. Enabled by setting the system property "com.google.eclipse.protobuf.simpleScopes" to "true," and
+   * meant only for comparing both implementations.
+   * @return {@code true} if scoping should use {@code SimpleScope}, {@code false} otherwise.
+   */
+  public static boolean useSimpleScopes() {
+    return USE_SIMPLE_SCOPES;
+  }
+
+  /**
+   * Returns the total length, in characters, of the source of the shared imported resources that can be kept loaded
+   * once no open editor or build uses them. Set with the system property
+   * "com.google.eclipse.protobuf.sharedResourcesBudget"; defaults to 8M characters.
+   * @return the maximum length of the source of the unused shared resources kept in memory.
+   */
+  public static long sharedResourcesBudget() {
+    return SHARED_RESOURCES_BUDGET;
+  }
+
+  /**
+   * Indicates whether parsed .proto files should be stored in binary form, to avoid parsing them again. Enabled unless
+   * the system property "com.google.eclipse.protobuf.binaryResourceStorage" is set to "false."
+   * @return {@code true} if parsed .proto files should be stored in binary form, {@code false} otherwise.
+   */
+  public static boolean useBinaryResourceStorage() {
+    return USE_BINARY_RESOURCE_STORAGE;
+  }
+
   private SystemProperties() {}
 }